@@ -0,0 +1,22 @@
+-- Adds the infobox and aliases columns to pages tables made before they were
+-- part of wikipediascript_clean.sql. CREATE TABLE IF NOT EXISTS leaves existing
+-- tables as they are, and the parser inserts into these columns.
+SET @OLD_SQL_MODE=@@SQL_MODE, SQL_MODE='TRADITIONAL';
+
+-- -----------------------------------------------------
+-- Table `wikipedia`.`pages_nl`
+-- -----------------------------------------------------
+ALTER TABLE `wikipedia_clean`.`pages_nl`
+  ADD COLUMN `infobox` VARCHAR(255) NULL AFTER `dp` ,
+  ADD COLUMN `aliases` TEXT NULL AFTER `infobox` ;
+
+
+-- -----------------------------------------------------
+-- Table `wikipedia`.`pages_en`
+-- -----------------------------------------------------
+ALTER TABLE `wikipedia_clean`.`pages_en`
+  ADD COLUMN `infobox` VARCHAR(255) NULL AFTER `dp` ,
+  ADD COLUMN `aliases` TEXT NULL AFTER `infobox` ;
+
+
+SET SQL_MODE=@OLD_SQL_MODE;
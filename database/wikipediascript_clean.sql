@@ -14,8 +14,9 @@ CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`pages_nl` (
   `en_link` TEXT NULL ,
   `entity_type` VARCHAR(10) NULL ,
   `dp` TINYINT(1)  NULL ,
-  PRIMARY KEY (`id`) ,
-  UNIQUE INDEX `id_UNIQUE` (`id` ASC) )
+  `infobox` VARCHAR(255) NULL ,
+  `aliases` TEXT NULL ,
+  PRIMARY KEY (`id`) )
 ENGINE = XtraDB;
 
 
@@ -29,8 +30,9 @@ CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`pages_en` (
   `en_link` TEXT NULL ,
   `entity_type` VARCHAR(10) NULL ,
   `dp` TINYINT(1)  NULL ,
-  PRIMARY KEY (`id`) ,
-  UNIQUE INDEX `id_UNIQUE` (`id` ASC) )
+  `infobox` VARCHAR(255) NULL ,
+  `aliases` TEXT NULL ,
+  PRIMARY KEY (`id`) )
 ENGINE = XtraDB;
 
 
@@ -54,14 +56,33 @@ CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`cats_en` (
 ENGINE = XtraDB;
 
 
+-- -----------------------------------------------------
+-- Table `wikipedia`.`redirects_nl`
+-- -----------------------------------------------------
+CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`redirects_nl` (
+  `title` VARCHAR(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL ,
+  `target` VARCHAR(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL ,
+  PRIMARY KEY (`title`) )
+ENGINE = XtraDB;
+
+
+-- -----------------------------------------------------
+-- Table `wikipedia`.`redirects_en`
+-- -----------------------------------------------------
+CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`redirects_en` (
+  `title` VARCHAR(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL ,
+  `target` VARCHAR(255) CHARACTER SET utf8 COLLATE utf8_bin NOT NULL ,
+  PRIMARY KEY (`title`) )
+ENGINE = XtraDB;
+
+
 -- -----------------------------------------------------
 -- Table `wikipedia`.`dictionary`
 -- -----------------------------------------------------
 CREATE  TABLE IF NOT EXISTS `wikipedia_clean`.`dictionary` (
   `id` INT UNSIGNED NOT NULL ,
   `name` VARCHAR(50) NOT NULL ,
-  PRIMARY KEY (`id`) ,
-  UNIQUE INDEX `id_UNIQUE` (`id` ASC) )
+  PRIMARY KEY (`id`) )
 ENGINE = InnoDB;
 
 
@@ -0,0 +1,479 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Decompresses bzip2 data. Concatenated streams (such as the wikipedia "multistream" dumps)
+ * are decompressed one after the other, as if they were a single stream.
+ *
+ * The decoder follows the format as written by bzip2 0.9.5 and later: Huffman coded MTF/RLE2
+ * symbols, an inverse Burrows-Wheeler transform and the final run length decoding. Block and
+ * stream checksums are verified. Randomised blocks (only written by very old versions) are
+ * rejected.
+ */
+public class BZip2InputStream extends InputStream {
+
+	private static final int RUNA = 0;
+	private static final int RUNB = 1;
+	private static final int MAX_GROUPS = 6;
+	private static final int GROUP_SIZE = 50;
+	private static final int MAX_ALPHA_SIZE = 258;
+	private static final int MAX_CODE_LENGTH = 23;
+	private static final int MAX_SELECTORS = 18002;
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_MAGIC = 0x177245385090L;
+	private static final int[] CRC_TABLE = createCrcTable();
+
+	private final InputStream in;
+	private final boolean multiStream;
+
+	// bit reader
+	private long bitBuffer;
+	private int bitCount;
+
+	// stream state
+	private int blockSize;
+	private int combinedCrc;
+	private boolean finished;
+
+	// block state
+	private int[] tt;
+	private boolean inBlock;
+	private int blockLength;
+	private int position;
+	private int tPos;
+	private int blockCrc;
+	private int crc;
+
+	// final run length decoding
+	private int lastByte;
+	private int run;
+	private int repeat;
+
+	// per block tables, kept to avoid re-allocating them for every block
+	private final boolean[] inUse = new boolean[256];
+	private final byte[] seqToUnseq = new byte[256];
+	private final byte[] selectors = new byte[MAX_SELECTORS];
+	private final int[][] limit = new int[MAX_GROUPS][MAX_CODE_LENGTH];
+	private final int[][] base = new int[MAX_GROUPS][MAX_CODE_LENGTH];
+	private final int[][] perm = new int[MAX_GROUPS][MAX_ALPHA_SIZE];
+	private final int[] minLength = new int[MAX_GROUPS];
+	private final int[] counts = new int[256];
+
+	/** Constructor: decompresses all concatenated streams.
+	 *
+	 * @param in the compressed data
+	 */
+	public BZip2InputStream(InputStream in) throws IOException {
+		this(in, true);
+	}
+
+	/** Constructor
+	 *
+	 * @param in the compressed data
+	 * @param multiStream true to continue with the next stream at the end of a stream
+	 */
+	public BZip2InputStream(InputStream in, boolean multiStream) throws IOException {
+		assert in != null;
+
+		this.in = in;
+		this.multiStream = multiStream;
+		if(!startStream()) {
+			throw new IOException("Not a bzip2 stream");
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		while(!finished) {
+			if(repeat > 0) {
+				--repeat;
+				return emit(lastByte);
+			}
+			if(position < blockLength) {
+				return decodeByte();
+			}
+			endBlock();
+		}
+		return -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		int n = 0;
+		while(n < len) {
+			int c = read();
+			if(c < 0) {
+				break;
+			}
+			b[off + n++] = (byte) c;
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/* Takes the next byte out of the inverse BWT, undoing the final run length encoding:
+	 * after four equal bytes the next value is the number of extra copies. */
+	private int decodeByte() throws IOException {
+		int b = nextFromBlock();
+
+		if(b == lastByte) {
+			++run;
+		} else {
+			lastByte = b;
+			run = 1;
+		}
+		if(run == 4) {
+			if(position >= blockLength) {
+				throw new IOException("bzip2 run length at end of block");
+			}
+			repeat = nextFromBlock();
+			run = 0;
+		}
+		return emit(b);
+	}
+
+	private int nextFromBlock() {
+		tPos = tt[tPos];
+		int b = tPos & 0xff;
+		tPos >>>= 8;
+		++position;
+		return b;
+	}
+
+	private int emit(int b) {
+		crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ b) & 0xff];
+		return b;
+	}
+
+	/* Checks the finished block and starts the next one, or the next stream. */
+	private void endBlock() throws IOException {
+		if(inBlock) {
+			if(~crc != blockCrc) {
+				throw new IOException("bzip2 block checksum error");
+			}
+			combinedCrc = (combinedCrc << 1 | combinedCrc >>> 31) ^ blockCrc;
+			inBlock = false;
+		}
+		while(!startBlock()) {
+			if(!multiStream || !startStream()) {
+				finished = true;
+				return;
+			}
+		}
+	}
+
+	/* Reads a stream header. Returns false at the end of the input. */
+	private boolean startStream() throws IOException {
+		int b = in.read();
+		if(b < 0) {
+			return false;
+		}
+		if(b != 'B' || in.read() != 'Z' || in.read() != 'h') {
+			throw new IOException("Not a bzip2 stream");
+		}
+		int level = in.read() - '0';
+		if(level < 1 || level > 9) {
+			throw new IOException("Invalid bzip2 block size");
+		}
+		if(tt == null || blockSize < level * 100000) {
+			tt = new int[level * 100000];
+		}
+		blockSize = level * 100000;
+		combinedCrc = 0;
+		bitBuffer = 0;
+		bitCount = 0;
+		blockLength = 0;
+		position = 0;
+		return true;
+	}
+
+	/* Reads and decodes the next block. Returns false at the end of the stream. */
+	private boolean startBlock() throws IOException {
+		long magic = ((long) bits(24) << 24) | bits(24);
+
+		if(magic == END_MAGIC) {
+			int streamCrc = bits32();
+			if(streamCrc != combinedCrc) {
+				throw new IOException("bzip2 stream checksum error");
+			}
+			bitCount = 0; // streams are padded to a whole byte
+			return false;
+		}
+		if(magic != BLOCK_MAGIC) {
+			throw new IOException("bzip2 block header expected");
+		}
+
+		blockCrc = bits32();
+		if(bits(1) != 0) {
+			throw new IOException("Randomised bzip2 blocks are not supported");
+		}
+		int origPtr = bits(24);
+
+		int alphaSize = readSymbolMap() + 2;
+		int groups = readTables(alphaSize);
+		decodeSymbols(alphaSize, groups);
+
+		if(origPtr < 0 || origPtr >= Math.max(blockLength, 1)) {
+			throw new IOException("Invalid bzip2 block origin");
+		}
+		inverseBwt(origPtr);
+
+		crc = 0xffffffff;
+		lastByte = -1;
+		run = 0;
+		repeat = 0;
+		inBlock = true;
+		return true;
+	}
+
+	/* Reads which byte values occur in the block. Returns how many. */
+	private int readSymbolMap() throws IOException {
+		int used16 = bits(16);
+		int n = 0;
+
+		for(int i = 0; i < 16; ++i) {
+			if((used16 & (0x8000 >>> i)) != 0) {
+				int used = bits(16);
+				for(int j = 0; j < 16; ++j) {
+					inUse[i * 16 + j] = (used & (0x8000 >>> j)) != 0;
+				}
+			} else {
+				for(int j = 0; j < 16; ++j) {
+					inUse[i * 16 + j] = false;
+				}
+			}
+		}
+		for(int i = 0; i < 256; ++i) {
+			if(inUse[i]) {
+				seqToUnseq[n++] = (byte) i;
+			}
+		}
+		if(n == 0) {
+			throw new IOException("Empty bzip2 symbol map");
+		}
+		return n;
+	}
+
+	/* Reads the selectors and the Huffman tables. Returns the number of tables. */
+	private int readTables(int alphaSize) throws IOException {
+		int groups = bits(3);
+		int selectorCount = bits(15);
+		if(groups < 2 || groups > MAX_GROUPS || selectorCount < 1) {
+			throw new IOException("Invalid bzip2 table header");
+		}
+
+		// selectors are move-to-front coded, in unary
+		byte[] mtf = new byte[groups];
+		for(int i = 0; i < groups; ++i) {
+			mtf[i] = (byte) i;
+		}
+		for(int i = 0; i < selectorCount; ++i) {
+			int j = 0;
+			while(bits(1) == 1) {
+				if(++j >= groups) {
+					throw new IOException("Invalid bzip2 selector");
+				}
+			}
+			byte selector = mtf[j];
+			for(; j > 0; --j) {
+				mtf[j] = mtf[j - 1];
+			}
+			mtf[0] = selector;
+			if(i < MAX_SELECTORS) {
+				selectors[i] = selector;
+			}
+		}
+
+		// code lengths are delta coded
+		int[] lengths = new int[alphaSize];
+		for(int t = 0; t < groups; ++t) {
+			int current = bits(5);
+			int min = 32;
+			int max = 0;
+			for(int i = 0; i < alphaSize; ++i) {
+				while(true) {
+					if(current < 1 || current > 20) {
+						throw new IOException("Invalid bzip2 code length");
+					}
+					if(bits(1) == 0) {
+						break;
+					}
+					current += bits(1) == 0 ? 1 : -1;
+				}
+				lengths[i] = current;
+				min = Math.min(min, current);
+				max = Math.max(max, current);
+			}
+			createDecodeTables(t, lengths, min, max, alphaSize);
+		}
+		return groups;
+	}
+
+	private void createDecodeTables(int t, int[] lengths, int min, int max, int alphaSize) {
+		int[] limitT = limit[t];
+		int[] baseT = base[t];
+		int[] permT = perm[t];
+
+		int pp = 0;
+		for(int i = min; i <= max; ++i) {
+			for(int j = 0; j < alphaSize; ++j) {
+				if(lengths[j] == i) {
+					permT[pp++] = j;
+				}
+			}
+		}
+		for(int i = 0; i < MAX_CODE_LENGTH; ++i) {
+			baseT[i] = 0;
+			limitT[i] = 0;
+		}
+		for(int i = 0; i < alphaSize; ++i) {
+			++baseT[lengths[i] + 1];
+		}
+		for(int i = 1; i < MAX_CODE_LENGTH; ++i) {
+			baseT[i] += baseT[i - 1];
+		}
+		int vec = 0;
+		for(int i = min; i <= max; ++i) {
+			vec += baseT[i + 1] - baseT[i];
+			limitT[i] = vec - 1;
+			vec <<= 1;
+		}
+		for(int i = min + 1; i <= max; ++i) {
+			baseT[i] = ((limitT[i - 1] + 1) << 1) - baseT[i];
+		}
+		minLength[t] = min;
+	}
+
+	/* Decodes the Huffman coded symbols, undoing the zero run length and move-to-front coding.
+	 * Fills tt with the block's bytes (in BWT order) and counts every byte value. */
+	private void decodeSymbols(int alphaSize, int groups) throws IOException {
+		int endOfBlock = alphaSize - 1;
+		byte[] mtf = new byte[256];
+		for(int i = 0; i < 256; ++i) {
+			mtf[i] = (byte) i;
+			counts[i] = 0;
+		}
+
+		int selector = 0;
+		int groupLeft = 0;
+		int t = 0;
+		int n = 0;
+		int runLength = 0;
+		int runWeight = 1;
+
+		while(true) {
+			if(groupLeft == 0) {
+				if(selector >= MAX_SELECTORS) {
+					throw new IOException("Too many bzip2 selectors");
+				}
+				t = selectors[selector++];
+				groupLeft = GROUP_SIZE;
+			}
+			--groupLeft;
+
+			// Huffman decode one symbol
+			int[] limitT = limit[t];
+			int length = minLength[t];
+			int code = bits(length);
+			while(code > limitT[length]) {
+				if(++length > 20) {
+					throw new IOException("Invalid bzip2 code");
+				}
+				code = (code << 1) | bits(1);
+			}
+			int symbol = perm[t][code - base[t][length]];
+
+			if(symbol == RUNA || symbol == RUNB) {
+				runLength += (symbol == RUNA ? 1 : 2) * runWeight;
+				runWeight <<= 1;
+				if(runLength > blockSize) {
+					throw new IOException("bzip2 run too long");
+				}
+				continue;
+			}
+
+			if(runLength > 0) {
+				int b = seqToUnseq[mtf[0] & 0xff] & 0xff;
+				if(n + runLength > blockSize) {
+					throw new IOException("bzip2 block too long");
+				}
+				counts[b] += runLength;
+				while(runLength-- > 0) {
+					tt[n++] = b;
+				}
+				runLength = 0;
+				runWeight = 1;
+			}
+
+			if(symbol == endOfBlock) {
+				break;
+			}
+
+			int index = symbol - 1;
+			byte value = mtf[index];
+			System.arraycopy(mtf, 0, mtf, 1, index);
+			mtf[0] = value;
+
+			int b = seqToUnseq[value & 0xff] & 0xff;
+			if(n >= blockSize) {
+				throw new IOException("bzip2 block too long");
+			}
+			++counts[b];
+			tt[n++] = b;
+		}
+		blockLength = n;
+	}
+
+	private void inverseBwt(int origPtr) {
+		int[] start = new int[256];
+		int sum = 0;
+		for(int i = 0; i < 256; ++i) {
+			start[i] = sum;
+			sum += counts[i];
+		}
+		for(int i = 0; i < blockLength; ++i) {
+			int b = tt[i] & 0xff;
+			tt[start[b]++] |= i << 8;
+		}
+		tPos = tt[origPtr] >>> 8;
+		position = 0;
+	}
+
+	private int bits(int n) throws IOException {
+		while(bitCount < n) {
+			int b = in.read();
+			if(b < 0) {
+				throw new IOException("Unexpected end of bzip2 stream");
+			}
+			bitBuffer = (bitBuffer << 8) | b;
+			bitCount += 8;
+		}
+		bitCount -= n;
+		return (int) (bitBuffer >>> bitCount) & ((1 << n) - 1);
+	}
+
+	private int bits32() throws IOException {
+		return (bits(16) << 16) | bits(16);
+	}
+
+	private static int[] createCrcTable() {
+		int[] table = new int[256];
+		for(int i = 0; i < 256; ++i) {
+			int c = i << 24;
+			for(int j = 0; j < 8; ++j) {
+				c = (c & 0x80000000) != 0 ? (c << 1) ^ 0x04c11db7 : c << 1;
+			}
+			table[i] = c;
+		}
+		return table;
+	}
+}
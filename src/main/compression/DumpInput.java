@@ -0,0 +1,123 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package compression;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.log4j.Logger;
+
+/** Opens wikipedia dumps as they are downloaded, so they do not have to be decompressed to disk
+ * first. The format is chosen by the file name:
+ * <ul>
+ * <li><code>.gz</code> is read with the JDK's gzip support,</li>
+ * <li><code>.bz2</code> is read with BZip2InputStream. If the multistream index
+ * (<code>...-multistream-index.txt.bz2</code> next to <code>...-multistream.xml.bz2</code>)
+ * exists, the streams are decompressed in parallel by MultistreamBZip2InputStream,</li>
+ * <li>anything else is read as it is.</li>
+ * </ul>
+ */
+public class DumpInput {
+
+	public static final String GZIP_SUFFIX = ".gz";
+	public static final String BZIP2_SUFFIX = ".bz2";
+	public static final String INDEX_SUFFIX = "-index.txt.bz2";
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static Logger logger = Logger.getLogger(DumpInput.class);
+
+	/** Checks if a dump is compressed, in which case it can only be read as a stream. */
+	public static boolean isCompressed(String fileName) {
+		return fileName.endsWith(GZIP_SUFFIX) || fileName.endsWith(BZIP2_SUFFIX);
+	}
+
+	/** Opens a dump, decompressing with one thread per processor.
+	 *
+	 * @param fileName the dump
+	 * @return the uncompressed xml
+	 */
+	public static InputStream open(String fileName) throws IOException {
+		return open(fileName, Runtime.getRuntime().availableProcessors());
+	}
+
+	/** Opens a dump.
+	 *
+	 * @param fileName the dump
+	 * @param threads how many threads may decompress a multistream bzip2 dump
+	 * @return the uncompressed xml
+	 */
+	public static InputStream open(String fileName, int threads) throws IOException {
+		assert fileName != null;
+
+		if(fileName.endsWith(GZIP_SUFFIX)) {
+			return new GZIPInputStream(new FileInputStream(fileName), BUFFER_SIZE);
+		}
+		if(fileName.endsWith(BZIP2_SUFFIX)) {
+			File index = indexFile(fileName);
+			if(threads > 1 && index.exists()) {
+				logger.info("Decompressing " + fileName + " with " + threads +
+						" threads, using stream index " + index);
+				return new MultistreamBZip2InputStream(fileName, readStreamOffsets(index), threads);
+			}
+			return new BZip2InputStream(new BufferedInputStream(new FileInputStream(fileName),
+					BUFFER_SIZE));
+		}
+		return new FileInputStream(fileName);
+	}
+
+	/** Reads the stream offsets from a multistream index. Every line of the index is
+	 * <code>offset:page id:title</code>, with one line per page, so offsets repeat.
+	 *
+	 * @param index the index file, bzip2 compressed or plain
+	 * @return the distinct offsets, in order
+	 */
+	static long[] readStreamOffsets(File index) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(index), BUFFER_SIZE);
+		if(index.getName().endsWith(BZIP2_SUFFIX)) {
+			in = new BZip2InputStream(in);
+		}
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+
+		try {
+			long[] offsets = new long[1024];
+			int size = 0;
+			String line;
+			while((line = reader.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if(colon <= 0) {
+					continue;
+				}
+				long offset = Long.parseLong(line.substring(0, colon));
+				if(size > 0 && offsets[size - 1] == offset) {
+					continue;
+				}
+				if(size == offsets.length) {
+					long[] larger = new long[size * 2];
+					System.arraycopy(offsets, 0, larger, 0, size);
+					offsets = larger;
+				}
+				offsets[size++] = offset;
+			}
+
+			long[] result = new long[size];
+			System.arraycopy(offsets, 0, result, 0, size);
+			return result;
+		} finally {
+			reader.close();
+		}
+	}
+
+	/* enwiki-...-multistream.xml.bz2 has its index in enwiki-...-multistream-index.txt.bz2 */
+	private static File indexFile(String fileName) {
+		String base = fileName.substring(0, fileName.length() - BZIP2_SUFFIX.length());
+		if(base.endsWith(".xml")) {
+			base = base.substring(0, base.length() - ".xml".length());
+		}
+		return new File(base + INDEX_SUFFIX);
+	}
+}
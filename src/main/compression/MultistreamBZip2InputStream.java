@@ -0,0 +1,184 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/** Decompresses a multistream bzip2 dump with several threads. Wikipedia's
+ * <code>pages-articles-multistream</code> dumps consist of independent bzip2 streams of about
+ * 100 pages each, and the accompanying index lists the byte offset of each stream. Every stream
+ * is decompressed on its own by a pool of threads, while the stream is read in the original order.
+ *
+ * To bound memory, only a few streams per thread are decompressed ahead of the reader.
+ */
+public class MultistreamBZip2InputStream extends InputStream {
+
+	private static final int READ_AHEAD = 2;
+
+	/* Daemon threads, so that a stream that is never closed does not keep the JVM alive */
+	private static final ThreadFactory DAEMONS = new ThreadFactory() {
+		private final ThreadFactory threads = Executors.defaultThreadFactory();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = threads.newThread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long[] boundaries;
+	private final ExecutorService pool;
+	private final LinkedList<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+
+	private int nextStream;
+	private byte[] buffer = new byte[0];
+	private int position;
+
+	/** Constructor
+	 *
+	 * @param fileName the compressed dump
+	 * @param streamOffsets ascending byte offsets at which a bzip2 stream starts
+	 * @param threads how many threads decompress
+	 */
+	public MultistreamBZip2InputStream(String fileName, long[] streamOffsets, int threads)
+			throws IOException {
+		assert fileName != null;
+		assert streamOffsets != null;
+		assert threads > 0;
+
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		boundaries = boundaries(streamOffsets, channel.size());
+		pool = Executors.newFixedThreadPool(threads, DAEMONS);
+
+		for(int i = 0; i < threads * READ_AHEAD; ++i) {
+			submitNext();
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(!fill()) {
+			return -1;
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		if(!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, buffer.length - position);
+		System.arraycopy(buffer, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		pool.shutdownNow();
+		file.close();
+	}
+
+	/* Makes sure there is something left in the buffer. Returns false at the end of the dump. */
+	private boolean fill() throws IOException {
+		while(position == buffer.length) {
+			if(pending.isEmpty()) {
+				return false;
+			}
+			buffer = get(pending.removeFirst());
+			position = 0;
+			submitNext();
+		}
+		return true;
+	}
+
+	private void submitNext() {
+		if(nextStream < boundaries.length - 1) {
+			pending.add(pool.submit(new StreamDecompression(boundaries[nextStream],
+					boundaries[nextStream + 1])));
+			++nextStream;
+		}
+	}
+
+	/* The data before the first indexed stream (the siteinfo header) is a stream as well,
+	 * and the last one ends at the end of the file. Duplicate offsets are dropped. */
+	private static long[] boundaries(long[] streamOffsets, long size) {
+		long[] result = new long[streamOffsets.length + 2];
+		int n = 0;
+		result[n++] = 0;
+		for(long offset : streamOffsets) {
+			if(offset > result[n - 1] && offset < size) {
+				result[n++] = offset;
+			}
+		}
+		if(size > result[n - 1]) {
+			result[n++] = size;
+		}
+		long[] trimmed = new long[n];
+		System.arraycopy(result, 0, trimmed, 0, n);
+		return trimmed;
+	}
+
+	private static byte[] get(Future<byte[]> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decompressing");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/** Decompresses the streams in one byte range of the file. */
+	private class StreamDecompression implements Callable<byte[]> {
+
+		private final long from;
+		private final long to;
+
+		StreamDecompression(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		public byte[] call() throws IOException {
+			ByteBuffer compressed = ByteBuffer.allocate((int) (to - from));
+			while(compressed.hasRemaining()) {
+				if(channel.read(compressed, from + compressed.position()) < 0) {
+					throw new IOException("Unexpected end of file at byte " + from);
+				}
+			}
+
+			InputStream in = new BZip2InputStream(new ByteArrayInputStream(compressed.array()));
+			ByteArrayOutputStream out = new ByteArrayOutputStream(compressed.capacity() * 4);
+			byte[] b = new byte[65536];
+			int n;
+			while((n = in.read(b, 0, b.length)) > 0) {
+				out.write(b, 0, n);
+			}
+			return out.toByteArray();
+		}
+	}
+}
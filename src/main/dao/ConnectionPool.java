@@ -0,0 +1,135 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.log4j.Logger;
+
+/** The pool of database connections shared by all Daos of a JVM, so that the number of connections
+ * is set here and not by the number of threads. Connections are validated when they are borrowed,
+ * and their prepared statements are pooled with them.
+ *
+ * The shared pool is sized by the system property <code>dao.maxConnections</code> (default 8).
+ * Daos keep their connection until they are closed, so a program with more Daos open at once
+ * reserves room for them (see reserve). A borrower waits at most <code>dao.maxWait</code>
+ * milliseconds (default 60000) for a connection, and then gets a SQLException instead of hanging.
+ * DBCP needs commons-pool 1.5 on the class path (libs/commons-pool-1.5.6-bin).
+ */
+public final class ConnectionPool {
+
+	public static final String URL = "jdbc:mysql://localhost/wikipedia_clean";
+	public static final String USER = "root";
+	public static final String PASSWORD = "Saw4rea51";
+	public static final String MAX_CONNECTIONS_PROPERTY = "dao.maxConnections";
+	public static final String MAX_WAIT_PROPERTY = "dao.maxWait";
+
+	private static Logger logger = Logger.getLogger(ConnectionPool.class);
+	private static ConnectionPool sharedPool;
+
+	private final BasicDataSource dataSource;
+	private final AtomicLong borrowed = new AtomicLong();
+	private final AtomicLong waitNanos = new AtomicLong();
+
+	/** Constructor
+	 *
+	 * @param url jdbc url of the database
+	 * @param userName
+	 * @param password
+	 * @param maxConnections the most connections that are open at once
+	 */
+	public ConnectionPool(String url, String userName, String password, int maxConnections) {
+		dataSource = new BasicDataSource();
+		dataSource.setDriverClassName("com.mysql.jdbc.Driver");
+		dataSource.setUrl(url);
+		dataSource.setUsername(userName);
+		dataSource.setPassword(password);
+		// lets the driver send a batch of inserts as multi-row inserts
+		dataSource.addConnectionProperty("rewriteBatchedStatements", "true");
+		dataSource.setDefaultAutoCommit(false);
+		dataSource.setMaxActive(maxConnections);
+		dataSource.setMaxIdle(maxConnections);
+		dataSource.setMaxWait(Long.getLong(MAX_WAIT_PROPERTY, 60 * 1000));
+		dataSource.setPoolPreparedStatements(true);
+		dataSource.setMaxOpenPreparedStatements(100);
+		dataSource.setValidationQuery("SELECT 1");
+		dataSource.setTestOnBorrow(true);
+	}
+
+	/** Gets the pool of the wikipedia database, which all Daos share by default */
+	public static synchronized ConnectionPool getShared() {
+		if(sharedPool == null) {
+			sharedPool = new ConnectionPool(URL, USER, PASSWORD, Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 8));
+			logger.info("Connection pool of at most " + sharedPool.dataSource.getMaxActive() + " connections");
+		}
+		return sharedPool;
+	}
+
+	/** Makes room for a number of connections in use at once, such as those of Daos that keep
+	 * theirs for a whole run. The pool only grows.
+	 *
+	 * @param connections the number of connections needed at once
+	 */
+	public synchronized void reserve(int connections) {
+		if(dataSource.getMaxActive() < connections) {
+			logger.info("Connection pool grown from " + dataSource.getMaxActive() + " to " + connections + " connections");
+			dataSource.setMaxActive(connections);
+			dataSource.setMaxIdle(connections);
+		}
+	}
+
+	/** Gets the pooled data source */
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	/** Borrows a connection, waiting while all connections are in use. Closing the connection
+	 * returns it to the pool.
+	 */
+	public Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection = dataSource.getConnection();
+		waitNanos.addAndGet(System.nanoTime() - start);
+		borrowed.incrementAndGet();
+		return connection;
+	}
+
+	/** Gets the number of connections in use */
+	public int getActiveCount() {
+		return dataSource.getNumActive();
+	}
+
+	/** Gets the number of open connections not in use */
+	public int getIdleCount() {
+		return dataSource.getNumIdle();
+	}
+
+	/** Gets the number of times a connection was borrowed */
+	public long getBorrowedCount() {
+		return borrowed.get();
+	}
+
+	/** Gets the total time spent waiting for connections, in milliseconds */
+	public long getWaitMillis() {
+		return waitNanos.get() / 1000000;
+	}
+
+	/** Logs the use of the pool */
+	public void logStatistics() {
+		logger.info("Connections: " + getActiveCount() + " active, " + getIdleCount() + " idle, " +
+				getBorrowedCount() + " borrowed, " + getWaitMillis() + " ms waited");
+	}
+
+	/** Closes the connections not in use, and those in use when they are returned */
+	public void close() {
+		try {
+			dataSource.close();
+		} catch (SQLException e) {
+			logger.warn("Could not close connection pool", e);
+		}
+	}
+}
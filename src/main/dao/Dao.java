@@ -10,17 +10,30 @@ import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import org.apache.log4j.*;
 
+import com.google.common.base.Joiner;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 
+import model.Language;
+import model.LanguageProfile;
 import model.Page;
 import model.Pair;
 
@@ -32,31 +45,83 @@ import model.Pair;
  */
 public class Dao implements IDao {
 	
-	private Connection conn;
+	private final ConnectionPool pool;
+	private Connection conn; // borrowed when first needed, returned by close()
 	
 	private static Logger logger = Logger.getLogger(Dao.class);
 	
-	private String userName;
-	private String password;
-	private String url;
+	/** Separates the aliases of a page in the aliases column; titles cannot contain it */
+	public static final String ALIAS_SEPARATOR = "|";
+	
+	/** Columns of the pages and categories tables */
+	static final String[] PAGE_COLUMNS =
+		{"id", "title", "body", "en_link", "entity_type", "dp", "infobox", "aliases"};
+	static final String[] CATEGORY_COLUMNS = {"page_id", "cat_name"};
+	
+	/** Number of keys in the IN list of a multi-get query */
+	private static final int IN_SIZE = 250;
+	
+	private final Map<String, PreparedStatement> statements = Maps.newHashMap();
+	private boolean bulkLoad;
 	
+	/** Constructor for a Dao of the shared connection pool */
 	public Dao() {
-		conn = null;
-        try
-        {
-            userName = "root";
-            password = "Saw4rea51";
-            url = "jdbc:mysql://localhost/wikipedia_clean";
-            Class.forName ("com.mysql.jdbc.Driver").newInstance ();
-            conn = DriverManager.getConnection (url, userName, password);
-            System.out.println ("Database connection established"); //change to logger
-            conn.setAutoCommit(false);
-        } catch (SQLException e) {
-        	logger.error("Cannot connect to database server", e);
-        } catch (Exception e) {
-        	logger.warn("Unidentified exception", e);
-        }
-		
+		this(ConnectionPool.getShared());
+	}
+	
+	/** Constructor. The Dao borrows a connection from the pool when it first needs one, and
+	 * keeps it until it is closed.
+	 * 
+	 * @param pool the pool to borrow from
+	 */
+	public Dao(ConnectionPool pool) {
+		this.pool = pool;
+	}
+	
+	/** Constructor for a Dao with a pool of its own. Batched inserts are rewritten to multi-row
+	 * inserts, unless the url sets rewriteBatchedStatements itself.
+	 * 
+	 * @param url jdbc url of the database
+	 * @param userName
+	 * @param password
+	 */
+	public Dao(String url, String userName, String password) {
+		this(new ConnectionPool(url, userName, password, 1));
+	}
+	
+	/* Gets the connection of this Dao, borrowing it if needed */
+	private Connection connection() throws SQLException {
+		if(conn == null) {
+			conn = pool.getConnection();
+			conn.setAutoCommit(false);
+		}
+		return conn;
+	}
+	
+	/* Returns the connection and its statements to the pool. A bulk load that was not finished
+	 * is finished first, as the checks it switched off belong to the connection.
+	 * 
+	 * (non-Javadoc)
+	 * @see dao.IDao#close()
+	 */
+	public void close() {
+		finishBulkLoad();
+		for(PreparedStatement statement : statements.values()) {
+			try {
+				statement.close();
+			} catch(SQLException e) {
+				logger.warn("Could not close statement", e);
+			}
+		}
+		statements.clear();
+		if(conn != null) {
+			try {
+				conn.close();
+			} catch(SQLException e) {
+				logger.warn("Could not return connection", e);
+			}
+			conn = null;
+		}
 	}
 	
 	/* Updates the body (main text) of a page. It does not update any other fields.
@@ -71,8 +136,8 @@ public class Dao implements IDao {
 		PreparedStatement updatePage = null;
 		
 		try {
-			updatePage = conn.prepareStatement(
-					"UPDATE PAGES_" + langAbbrev + " SET body = ? WHERE id = ? LIMIT 1");
+			updatePage = prepare(
+					"UPDATE " + LanguageProfile.forCode(langAbbrev).getPagesTable() + " SET body = ? WHERE id = ? LIMIT 1");
 			
 		} catch(SQLException s) {
 			logger.warn("Could not make prepared statements", s);
@@ -83,7 +148,7 @@ public class Dao implements IDao {
 			updatePage.setBinaryStream(1, is);//, page.getBody().length());
 			updatePage.setLong(2, page.getId());
 			updatePage.execute();
-			conn.commit();
+			connection().commit();
 			
 		} catch(SQLException s) {
 			logger.warn("Could not insert data", s);
@@ -92,6 +157,39 @@ public class Dao implements IDao {
 		}
 	}
 	
+	/* Prepares a statement once per connection; later calls return the same statement, so a
+	 * ResultSet of a query is valid until the next call of the same query. */
+	private PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement statement = statements.get(sql);
+		if(statement == null) {
+			statement = connection().prepareStatement(sql);
+			statements.put(sql, statement);
+		}
+		return statement;
+	}
+	
+	/* Drops what is left of a failed batch, so that it is not sent with the next one */
+	private static void clearBatch(PreparedStatement statement) {
+		try {
+			if(statement != null) {
+				statement.clearBatch();
+			}
+		} catch(SQLException e) {
+			logger.warn("Could not clear batch", e);
+		}
+	}
+	
+	/* Rolls back what a failed batch has written, so that it is not committed with the next one */
+	private void rollback() {
+		try {
+			if(conn != null) {
+				conn.rollback();
+			}
+		} catch(SQLException e) {
+			logger.warn("Could not roll back", e);
+		}
+	}
+	
 	/** Updates all pages' entityType in the database.
 	 * 
 	 * @param articles A map containing the pages to be updated
@@ -104,10 +202,12 @@ public class Dao implements IDao {
 		
 		//first try to make prepared statements
 		try {
-			updatePageNL = conn.prepareStatement(
-					"UPDATE PAGES_NL SET entity_type = ? WHERE id = ? LIMIT 1");
-			updatePageEN = conn.prepareStatement(
-					"UPDATE PAGES_EN SET entity_type = ? WHERE id = ? LIMIT 1");
+			updatePageNL = prepare(
+					"UPDATE " + LanguageProfile.forLanguage(Language.DUTCH).getPagesTable() +
+					" SET entity_type = ? WHERE id = ? LIMIT 1");
+			updatePageEN = prepare(
+					"UPDATE " + LanguageProfile.forLanguage(Language.ENGLISH).getPagesTable() +
+					" SET entity_type = ? WHERE id = ? LIMIT 1");
 			
 		} catch(SQLException s) {
 			logger.warn("Could not make prepared statements");
@@ -128,7 +228,7 @@ public class Dao implements IDao {
 					updatePageEN.execute();
 				}
 			}
-			conn.commit();
+			connection().commit();
 		} catch(SQLException e) {
 			logger.warn("Could not insert data");
 		} catch (Exception e) {
@@ -138,6 +238,8 @@ public class Dao implements IDao {
 	}
 	
 	/* 
+	 * Pages and categories are each sent as one batch, which the driver rewrites to multi-row
+	 * inserts.
 	 * 
 	 * Note: The page ids must be new and unique.
 	 * 
@@ -149,15 +251,20 @@ public class Dao implements IDao {
 		assert pages != null;
 		assert !(pages.isEmpty());
 		
+		if(bulkLoad) {
+			loadBatch(langAbbrev, pages);
+			return;
+		}
+		
 		PreparedStatement insertPages = null;
 		PreparedStatement insertCategories = null;
 		
 		//first try to make prepared statements
 		try {
-			insertPages = conn.prepareStatement(
-					"INSERT INTO PAGES_" + langAbbrev + " (id, title, body, en_link, dp) VALUES (?, ?, ?, ?, ?)");
-			insertCategories = conn.prepareStatement(
-					"INSERT INTO CATS_" + langAbbrev + " VALUES (?, ?)");
+			insertPages = prepare(
+					"INSERT INTO " + LanguageProfile.forCode(langAbbrev).getPagesTable() + " (id, title, body, en_link, dp, infobox, aliases) VALUES (?, ?, ?, ?, ?, ?, ?)");
+			insertCategories = prepare(
+					"INSERT INTO " + LanguageProfile.forCode(langAbbrev).getCategoriesTable() + " VALUES (?, ?)");
 		} catch(SQLException s) {
 			logger.warn("Could not make prepared statements");
 		}
@@ -168,10 +275,7 @@ public class Dao implements IDao {
 			for(Page p : pages) {
 				insertPages.setLong(1, p.getId());
 				insertPages.setString(2, p.getTitle());
-				InputStream is = null;
-			
-				is = new ByteArrayInputStream(p.getBody().getBytes("UTF-8"));
-				insertPages.setBinaryStream(3, is);//, p.getBody().length());
+				insertPages.setBytes(3, p.getBody().getBytes("UTF-8"));
 				
 				if(p.getEnglishLink() != null && p.getEnglishLink().length()>0) {
 					insertPages.setString(4, p.getEnglishLink());
@@ -179,23 +283,200 @@ public class Dao implements IDao {
 					insertPages.setString(4, "");
 				}
 				insertPages.setBoolean(5, p.isDisambiguation());
-				insertCategories.setLong(1, p.getId());
-				insertPages.execute(); //record whether success or not
+				insertPages.setString(6, p.getInfobox());
+				insertPages.setString(7, p.getAliases().isEmpty() ? null : Joiner.on(ALIAS_SEPARATOR).join(p.getAliases()));
+				insertPages.addBatch();
 				
-				//now try to add categories for the current page
+				//now add categories for the current page
+				insertCategories.setLong(1, p.getId());
 				for(String s : p.getCategories()){
 					insertCategories.setString(2, s);
-					insertCategories.execute();	
+					insertCategories.addBatch();
 				}
 			}
-			conn.commit();
+			insertPages.executeBatch();
+			insertCategories.executeBatch();
+			connection().commit();
 			
 		} catch (SQLException e) {
 			logger.warn("Problem with database", e);
+			clearBatch(insertPages);
+			clearBatch(insertCategories);
+			rollback();
 		} catch (UnsupportedEncodingException u) {
 			logger.warn("Conversion to UTF-8 failed", u);
+			clearBatch(insertPages);
+			clearBatch(insertCategories);
+			rollback();
+		}
+	
+	}
+	
+	/* Loads pages and their categories with LOAD DATA LOCAL, streaming the rows to the driver.
+	 * Rows with a key that is already stored are skipped, as LOCAL implies IGNORE.
+	 */
+	private void loadBatch(String langAbbrev, final List<Page> pages) {
+		LanguageProfile language = LanguageProfile.forCode(langAbbrev);
+		
+		try {
+			Statement statement = connection().createStatement();
+			try {
+				com.mysql.jdbc.Statement mysqlStatement = statement.unwrap(com.mysql.jdbc.Statement.class);
+				
+				mysqlStatement.setLocalInfileInputStream(new RowInputStream() {
+					private final Iterator<Page> iterator = pages.iterator();
+					
+					@Override
+					protected boolean nextRow() {
+						if(!iterator.hasNext()) {
+							return false;
+						}
+						Page p = iterator.next();
+						field(p.getId());
+						field(p.getTitle());
+						field(p.getBody());
+						field(p.getEnglishLink() == null ? "" : p.getEnglishLink());
+						field(p.isDisambiguation());
+						field(p.getInfobox());
+						field(p.getAliases().isEmpty() ? null : Joiner.on(ALIAS_SEPARATOR).join(p.getAliases()));
+						return true;
+					}
+				});
+				statement.execute("LOAD DATA LOCAL INFILE 'pages' INTO TABLE " + language.getPagesTable() +
+						" CHARACTER SET utf8 (id, title, body, en_link, dp, infobox, aliases)");
+				
+				mysqlStatement.setLocalInfileInputStream(new RowInputStream() {
+					private final Iterator<Page> pageIterator = pages.iterator();
+					private Page page;
+					private Iterator<String> categories = Iterators.emptyIterator();
+					
+					@Override
+					protected boolean nextRow() {
+						while(!categories.hasNext()) {
+							if(!pageIterator.hasNext()) {
+								return false;
+							}
+							page = pageIterator.next();
+							categories = page.getCategories().iterator();
+						}
+						field(page.getId());
+						field(categories.next());
+						return true;
+					}
+				});
+				statement.execute("LOAD DATA LOCAL INFILE 'categories' INTO TABLE " + language.getCategoriesTable() +
+						" CHARACTER SET utf8 (page_id, cat_name)");
+				
+				mysqlStatement.setLocalInfileInputStream(null);
+			} finally {
+				statement.close();
+			}
+			connection().commit();
+		} catch (SQLException e) {
+			logger.warn("Problem with database", e);
+			rollback();
+		}
+	}
+	
+	/* Switches off unique and foreign key checks for this connection, and loads batches with
+	 * LOAD DATA instead of inserts.
+	 * 
+	 * (non-Javadoc)
+	 * @see dao.IDao#startBulkLoad()
+	 */
+	public void startBulkLoad() {
+		try {
+			Statement statement = connection().createStatement();
+			statement.execute("SET UNIQUE_CHECKS = 0");
+			statement.execute("SET FOREIGN_KEY_CHECKS = 0");
+			statement.close();
+			bulkLoad = true;
+			logger.info("Bulk load started");
+		} catch (SQLException e) {
+			logger.warn("Could not start bulk load, inserting instead", e);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see dao.IDao#finishBulkLoad()
+	 */
+	public void finishBulkLoad() {
+		if(!bulkLoad) {
+			return;
+		}
+		bulkLoad = false;
+		try {
+			Statement statement = connection().createStatement();
+			statement.execute("SET UNIQUE_CHECKS = 1");
+			statement.execute("SET FOREIGN_KEY_CHECKS = 1");
+			statement.close();
+			logger.info("Bulk load finished");
+		} catch (SQLException e) {
+			logger.warn("Could not switch checks back on", e);
+		}
+	}
+	
+	/* 
+	 * Redirects that are already stored are ignored.
+	 * 
+	 * (non-Javadoc)
+	 * @see dao.IDao#processRedirects(java.lang.String, java.util.List)
+	 */
+	public void processRedirects(String langAbbrev, List<Page> redirects) {
+		assert redirects != null;
+		
+		PreparedStatement insertRedirect = null;
+		
+		try {
+			insertRedirect = prepare(
+					"INSERT IGNORE INTO " + LanguageProfile.forCode(langAbbrev).getRedirectsTable() + " (title, target) VALUES (?, ?)");
+		} catch(SQLException s) {
+			logger.warn("Could not make prepared statements", s);
+		}
+		
+		try {
+			for(Page p : redirects) {
+				if(p.getRedirectTarget() == null || p.getRedirectTarget().length() == 0) {
+					continue; // target unknown
+				}
+				insertRedirect.setString(1, p.getTitle());
+				insertRedirect.setString(2, p.getRedirectTarget());
+				insertRedirect.addBatch();
+			}
+			insertRedirect.executeBatch();
+			connection().commit();
+		} catch (SQLException e) {
+			logger.warn("Problem with database", e);
+			clearBatch(insertRedirect);
+			rollback();
 		}
+	}
 	
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrieveRedirectTarget(java.lang.String, java.lang.String)
+	 */
+	public String retrieveRedirectTarget(String langAbbrev, String title) {
+		assert langAbbrev != null;
+		assert title != null;
+		
+		PreparedStatement extractTarget = null;
+		try {
+			extractTarget = prepare(
+					"SELECT target FROM " + LanguageProfile.forCode(langAbbrev).getRedirectsTable() + " WHERE title = ? LIMIT 1");
+		} catch (SQLException e) {
+			logger.warn("Could not create PreparedStatement", e);
+		}
+		
+		try {
+			extractTarget.setString(1, title);
+			ResultSet results = extractTarget.executeQuery();
+			if(results.first()) {
+				return results.getString(1);
+			}
+		} catch (SQLException e) {
+			logger.warn("Could not successfully execute query", e);
+		}
+		return null;
 	}
 	
 	/* (non-Javadoc)
@@ -207,7 +488,7 @@ public class Dao implements IDao {
 		
 		//first try to make prepared statements
 		try {
-			insertWord = conn.prepareStatement(
+			insertWord = prepare(
 					"INSERT INTO DICTIONARY VALUES (?, ?)");
 			
 		} catch(SQLException s) {
@@ -224,7 +505,7 @@ public class Dao implements IDao {
 				counter++;
 			}
 			
-			conn.commit();
+			connection().commit();
 		} catch(SQLException e) {
 			logger.warn("Could not insert data");
 		}
@@ -242,8 +523,8 @@ public class Dao implements IDao {
 		PreparedStatement extractPage = null;
 		
 		try {
-			extractPage = conn.prepareStatement(
-					"SELECT * FROM PAGES_" + langAbbrev + " WHERE id = ? LIMIT 1");
+			extractPage = prepare(
+					"SELECT * FROM " + LanguageProfile.forCode(langAbbrev).getPagesTable() + " WHERE id = ? LIMIT 1");
 		} catch (SQLException e) {
 			logger.warn("Could not create PreparedStatement", e);
 			e.printStackTrace();
@@ -261,18 +542,61 @@ public class Dao implements IDao {
 	
 	}
 	
-	/* (non-Javadoc)
+	/** Reads the titles and ids of all pages of a language into a TitleDictionary, which all Daos
+	 * then use to look up titles. Reading the titles of the English wikipedia takes a while, and
+	 * some hundreds of megabytes.
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 */
+	public void loadTitleDictionary(String langAbbrev) {
+		long start = System.currentTimeMillis();
+		TitleDictionary.Builder builder = new TitleDictionary.Builder();
+		try {
+			Statement statement = connection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			try {
+				statement.setFetchSize(Integer.MIN_VALUE); // makes the driver stream the rows
+				ResultSet results = statement.executeQuery(
+						"SELECT id, title FROM " + LanguageProfile.forCode(langAbbrev).getPagesTable());
+				while(results.next()) {
+					builder.add(results.getLong(1), results.getString(2));
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			logger.warn("Could not read titles", e);
+			return;
+		}
+		TitleDictionary dictionary = builder.build();
+		TitleDictionary.register(langAbbrev, dictionary);
+		logger.info("Read " + dictionary.size() + " titles of " + langAbbrev + " in " +
+				(System.currentTimeMillis() - start) + " ms, " + (dictionary.getByteCount() >> 20) + " MB");
+	}
+	
+	/* Looks the title up in the TitleDictionary of the language, if one is loaded: then the page is
+	 * read by id, and a title without page costs no query.
+	 * 
+	 * (non-Javadoc)
 	 * @see dao.IDao#retrievePageByTitle(java.lang.String, java.lang.String)
 	 */
 	public ResultSet retrievePage(String langAbbrev, String title) {
 		assert langAbbrev != null;
 		assert title != null;
 		
+		TitleDictionary dictionary = TitleDictionary.forLanguage(langAbbrev);
+		if(dictionary != null) {
+			long id = dictionary.resolve(title);
+			if(id < 0) {
+				return RowResultSet.of(PAGE_COLUMNS, Collections.<Object[]>emptyList());
+			}
+			return retrievePage(langAbbrev, id);
+		}
+		
 		PreparedStatement extractPage = null;
 		try {
-			extractPage = conn.prepareStatement(
+			extractPage = prepare(
 					//"SELECT * FROM PAGES_" + langAbbrev + " WHERE title LIKE ? COLLATE utf8_general_ci LIMIT 1");
-					"SELECT * FROM PAGES_" + langAbbrev + " WHERE title LIKE ? COLLATE utf8_bin LIMIT 1");//COLLATE utf8_general_cs
+					"SELECT * FROM " + LanguageProfile.forCode(langAbbrev).getPagesTable() + " WHERE title LIKE ? COLLATE utf8_bin LIMIT 1");//COLLATE utf8_general_cs
 		} catch (SQLException e) {
 			logger.warn("Could not create PreparedStatement", e);
 		}
@@ -282,12 +606,7 @@ public class Dao implements IDao {
 			for(int attempt = 0; attempt < 2 && (results == null || !results.first()); ++attempt) {
 				title.trim();
 				if(attempt > 0) {
-					if(title.charAt(0) != title.toLowerCase().charAt(0)) {
-						title = title.toLowerCase();
-					}
-					else {
-						title = title.substring(0, 1).toUpperCase() + title.substring(1).toLowerCase();
-					}
+					title = TitleDictionary.otherCase(title);
 				}
 				extractPage.setString(1, title);
 				results = extractPage.executeQuery();
@@ -309,8 +628,8 @@ public class Dao implements IDao {
 		
 		PreparedStatement extractCats = null;
 		try {
-			extractCats = conn.prepareStatement(
-					"SELECT * FROM CATS_" + langAbbrev + " WHERE page_id = ?");
+			extractCats = prepare(
+					"SELECT * FROM " + LanguageProfile.forCode(langAbbrev).getCategoriesTable() + " WHERE page_id = ?");
 		} catch (SQLException e) {
 			logger.warn("Could not create PreparedStatement", e);
 			e.printStackTrace();
@@ -332,15 +651,278 @@ public class Dao implements IDao {
 	}
 
 	/* (non-Javadoc)
+	 * @see dao.IDao#retrievePages(java.lang.String, java.util.Collection)
+	 */
+	public Map<Long, Page> retrievePages(String langAbbrev, Collection<Long> ids) {
+		assert langAbbrev != null;
+		
+		final Map<Long, Page> pages = Maps.newLinkedHashMap();
+		LanguageProfile language = LanguageProfile.forCode(langAbbrev);
+		try {
+			selectIn("SELECT * FROM " + language.getPagesTable() + " WHERE id IN ", Lists.newArrayList(ids),
+					new RowReader() {
+						public void read(ResultSet results) throws SQLException {
+							Page page = readPage(results);
+							pages.put(page.getId(), page);
+						}
+					});
+			readCategories(language, pages);
+		} catch (SQLException e) {
+			logger.warn("Could not successfully execute query", e);
+			return null;
+		}
+		return pages;
+	}
+	
+	/* Titles are found by the TitleDictionary if there is one, or else compared exactly, like
+	 * retrievePage(String, String) does; the titles not found are tried with other case.
+	 * 
+	 * (non-Javadoc)
+	 * @see dao.IDao#retrievePagesByTitle(java.lang.String, java.util.Collection)
+	 */
+	public Map<String, Page> retrievePagesByTitle(String langAbbrev, Collection<String> titles) {
+		assert langAbbrev != null;
+		
+		Map<String, Page> found = Maps.newLinkedHashMap();
+		TitleDictionary dictionary = TitleDictionary.forLanguage(langAbbrev);
+		if(dictionary != null) {
+			Map<String, Long> ids = Maps.newLinkedHashMap();
+			for(String title : titles) {
+				long id = dictionary.resolve(title);
+				if(id >= 0) {
+					ids.put(title, id);
+				}
+			}
+			Map<Long, Page> pages = retrievePages(langAbbrev, ids.values());
+			if(pages == null) {
+				return null;
+			}
+			for(Map.Entry<String, Long> id : ids.entrySet()) {
+				if(pages.containsKey(id.getValue())) {
+					found.put(id.getKey(), pages.get(id.getValue()));
+				}
+			}
+			return found;
+		}
+		
+		LanguageProfile language = LanguageProfile.forCode(langAbbrev);
+		final Map<String, Page> byTitle = Maps.newHashMap();
+		RowReader reader = new RowReader() {
+			public void read(ResultSet results) throws SQLException {
+				Page page = readPage(results);
+				byTitle.put(page.getTitle(), page);
+			}
+		};
+		String select = "SELECT * FROM " + language.getPagesTable() + " WHERE title COLLATE utf8_bin IN ";
+		try {
+			selectIn(select, Lists.newArrayList(titles), reader);
+			List<String> otherCase = Lists.newArrayList();
+			for(String title : titles) {
+				if(!byTitle.containsKey(title) && title.length() > 0) {
+					otherCase.add(TitleDictionary.otherCase(title));
+				}
+			}
+			selectIn(select, otherCase, reader);
+			
+			Map<Long, Page> pages = Maps.newHashMap();
+			for(Page page : byTitle.values()) {
+				pages.put(page.getId(), page);
+			}
+			readCategories(language, pages);
+		} catch (SQLException e) {
+			logger.warn("Could not successfully execute query", e);
+			return null;
+		}
+		for(String title : titles) {
+			Page page = byTitle.get(title);
+			if(page == null && title.length() > 0) {
+				page = byTitle.get(TitleDictionary.otherCase(title));
+			}
+			if(page != null) {
+				found.put(title, page);
+			}
+		}
+		return found;
+	}
+	
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrieveRedirectTargets(java.lang.String, java.util.Collection)
+	 */
+	public Map<String, String> retrieveRedirectTargets(String langAbbrev, Collection<String> titles) {
+		assert langAbbrev != null;
+		
+		final Map<String, String> targets = Maps.newLinkedHashMap();
+		try {
+			selectIn("SELECT title, target FROM " + LanguageProfile.forCode(langAbbrev).getRedirectsTable() +
+					" WHERE title IN ", Lists.newArrayList(titles), new RowReader() {
+						public void read(ResultSet results) throws SQLException {
+							targets.put(results.getString(1), results.getString(2));
+						}
+					});
+		} catch (SQLException e) {
+			logger.warn("Could not successfully execute query", e);
+			return null;
+		}
+		return targets;
+	}
+	
+	/* Reads the rows of a query */
+	private interface RowReader {
+		void read(ResultSet results) throws SQLException;
+	}
+	
+	/* Runs a query for keys IN_SIZE at a time. The last IN list is filled up with its last key, so
+	 * that all queries use the same prepared statement. */
+	private void selectIn(String select, List<?> keys, RowReader reader) throws SQLException {
+		if(keys.isEmpty()) {
+			return;
+		}
+		StringBuilder in = new StringBuilder("(?");
+		for(int i = 1; i < IN_SIZE; ++i) {
+			in.append(", ?");
+		}
+		PreparedStatement statement = prepare(select + in.append(')'));
+		for(int from = 0; from < keys.size(); from += IN_SIZE) {
+			for(int i = 0; i < IN_SIZE; ++i) {
+				statement.setObject(i + 1, keys.get(Math.min(from + i, keys.size() - 1)));
+			}
+			ResultSet results = statement.executeQuery();
+			while(results.next()) {
+				reader.read(results);
+			}
+			results.close();
+		}
+	}
+	
+	/* Adds their categories to pages */
+	private void readCategories(LanguageProfile language, final Map<Long, Page> pages) throws SQLException {
+		selectIn("SELECT page_id, cat_name FROM " + language.getCategoriesTable() + " WHERE page_id IN ",
+				Lists.newArrayList(pages.keySet()), new RowReader() {
+					public void read(ResultSet results) throws SQLException {
+						pages.get(results.getLong(1)).getCategories().add(results.getString(2));
+					}
+				});
+	}
+	
+	/* Reads a page from a row of a pages table */
+	private static Page readPage(ResultSet results) throws SQLException {
+		Page page = new Page();
+		page.setId(results.getLong(1));
+		page.setTitle(results.getString(2));
+		byte[] body = results.getBytes(3);
+		try {
+			page.setBody(body == null ? null : new String(body, "UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+		page.setEnglishLink(results.getString(4));
+		page.setEntityType(results.getString(5));
+		page.setDisambiguation(results.getBoolean(6));
+		readScannedFeatures(results, page);
+		return page;
+	}
+	
+	/** Reads the features the PageScanner found when a page was parsed (its infobox and aliases)
+	 * from a row of a pages table. Tables made before these columns were added (see
+	 * database/wikipediascript_add_scanned_features.sql) do not have them, and then the page gets
+	 * none, instead of the read failing.
+	 * 
+	 * @param results the row
+	 * @param page the page to set the features of
+	 */
+	public static void readScannedFeatures(ResultSet results, Page page) throws SQLException {
+		ResultSetMetaData columns = results.getMetaData();
+		for(int column = 1; column <= columns.getColumnCount(); ++column) {
+			String label = columns.getColumnLabel(column);
+			if(label.equalsIgnoreCase("infobox")) {
+				page.setInfobox(results.getString(column));
+			}
+			else if(label.equalsIgnoreCase("aliases")) {
+				String aliases = results.getString(column);
+				if(aliases != null) {
+					page.getAliases().addAll(Arrays.asList(aliases.split(Pattern.quote(ALIAS_SEPARATOR))));
+				}
+			}
+		}
+	}
+	
+	/* Streams the ids, as loadTitleDictionary streams the titles.
+	 * 
+	 * (non-Javadoc)
+	 * @see dao.IDao#retrievePageIds(java.lang.String)
+	 */
+	public long[] retrievePageIds(String langAbbrev) {
+		assert langAbbrev != null;
+		
+		long[] ids = new long[1024];
+		int n = 0;
+		try {
+			Statement statement = connection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			try {
+				statement.setFetchSize(Integer.MIN_VALUE); // makes the driver stream the rows
+				ResultSet results = statement.executeQuery(
+						"SELECT id FROM " + LanguageProfile.forCode(langAbbrev).getPagesTable() + " ORDER BY id");
+				while(results.next()) {
+					if(n == ids.length) {
+						ids = Arrays.copyOf(ids, 2 * n);
+					}
+					ids[n++] = results.getLong(1);
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			logger.warn("Could not read page ids", e);
+		}
+		return Arrays.copyOf(ids, n);
+	}
+	
+	/** Reads the words of the dictionary table into a NounDictionary, which all Daos then use to
+	 * check nouns.
+	 */
+	public void loadNounDictionary() {
+		long start = System.currentTimeMillis();
+		NounDictionary.Builder builder = new NounDictionary.Builder();
+		try {
+			Statement statement = connection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			try {
+				statement.setFetchSize(Integer.MIN_VALUE); // makes the driver stream the rows
+				ResultSet results = statement.executeQuery("SELECT name FROM DICTIONARY");
+				while(results.next()) {
+					if(results.getString(1) != null) {
+						builder.add(results.getString(1));
+					}
+				}
+			} finally {
+				statement.close();
+			}
+		} catch (SQLException e) {
+			logger.warn("Could not read dictionary", e);
+			return;
+		}
+		NounDictionary dictionary = builder.build();
+		NounDictionary.setShared(dictionary);
+		logger.info("Read " + dictionary.size() + " nouns in " + (System.currentTimeMillis() - start) + " ms, " +
+				(dictionary.getByteCount() >> 10) + " kB");
+	}
+	
+	/* Checks the NounDictionary, if one is loaded, and else the dictionary table.
+	 * 
+	 * (non-Javadoc)
 	 * @see dao.IDao#selectNoun(java.lang.String)
 	 */
 	public boolean selectNoun(String s) {
 		assert s != null;
 		
+		NounDictionary dictionary = NounDictionary.getShared();
+		if(dictionary != null) {
+			return dictionary.contains(s);
+		}
+		
 		PreparedStatement extractNoun = null;
 		boolean hasResults = false;
 		try {
-			extractNoun = conn.prepareStatement(
+			extractNoun = prepare(
 					"SELECT * FROM DICTIONARY" + " WHERE name = ? COLLATE utf8_general_ci LIMIT 1");
 		} catch (SQLException e) {
 			logger.warn("Could not create PreparedStatement", e);
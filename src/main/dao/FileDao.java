@@ -0,0 +1,652 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+import model.Pair;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/** An IDao that keeps everything in files in a directory, without a database server: for runs on
+ * one machine, tests and benchmarks.
+ *
+ * Each language has a directory of its own (named by its code) with:
+ * <ul>
+ * <li>the pages, with their categories, in append-only segment files (see Segments); an update
+ * appends a new version of a page,</li>
+ * <li>a memory-mapped array from page id to the address of its latest version (see IdIndex),</li>
+ * <li>a memory-mapped hash table from title to page id (see HashIndex),</li>
+ * <li>the redirects in segment files of their own, with a hash table from title to address.</li>
+ * </ul>
+ * The dictionary is a text file with a word per line, read into memory when it is first used.
+ *
+ * Retrieved pages and categories are returned as ResultSets with the columns of the tables of Dao.
+ * The methods are synchronized, and one FileDao should be shared by all users of a directory:
+ * two FileDaos writing to the same directory corrupt it. Problems with the files are logged, as
+ * Dao does with database problems.
+ */
+public class FileDao implements IDao {
+
+	/** Size at which a new segment file is started */
+	public static final long SEGMENT_SIZE = 1L << 30;
+
+	private static final String DICTIONARY = "dictionary.txt";
+	private static final int TITLE_OFFSET = 8; // in a page record, after the id
+
+	private static Logger logger = Logger.getLogger(FileDao.class);
+
+	private final File directory;
+	private final Map<String, Store> stores = Maps.newHashMap();
+	private Set<String> dictionary;
+	private boolean bulkLoad;
+
+	/** Constructor. Files are opened (and made if needed) when they are first used.
+	 *
+	 * @param directory where the files are kept
+	 */
+	public FileDao(File directory) {
+		this.directory = directory;
+	}
+
+	/** The files of one language */
+	private static class Store {
+
+		private final Segments pages;
+		private final IdIndex ids;
+		private final HashIndex titles;
+		private final Segments redirects;
+		private final HashIndex redirectTitles;
+
+		Store(File directory) throws IOException {
+			if(!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not make " + directory);
+			}
+			pages = new Segments(directory, "pages", SEGMENT_SIZE);
+			ids = new IdIndex(new File(directory, "ids.idx"));
+			titles = new HashIndex(new File(directory, "titles.idx"));
+			redirects = new Segments(directory, "redirects", SEGMENT_SIZE);
+			redirectTitles = new HashIndex(new File(directory, "redirects.idx"));
+		}
+
+		/* Gets the latest version of a page, or null */
+		Page get(long id) throws IOException {
+			long address = ids.get(id);
+			return address < 0 ? null : decode(pages.read(address));
+		}
+
+		/* Gets the title of the latest version of a page, or null, reading only the title */
+		String title(long id) throws IOException {
+			long address = ids.get(id);
+			if(address < 0) {
+				return null;
+			}
+			int length = ByteBuffer.wrap(pages.read(address, TITLE_OFFSET, 4)).getInt();
+			return length < 0 ? null : new String(pages.read(address, TITLE_OFFSET + 4, length), "UTF-8");
+		}
+
+		/* Gets the id of the page with a title, or -1 */
+		long find(String title) throws IOException {
+			long hash = HashIndex.hash(title);
+			for(int slot = titles.find(hash, -1); slot >= 0; slot = titles.find(hash, slot)) {
+				long id = titles.value(slot);
+				if(title.equals(title(id))) {
+					return id;
+				}
+			}
+			return -1;
+		}
+
+		/* Stores a page, or a new version of it */
+		void put(Page page) throws IOException {
+			boolean known = ids.get(page.getId()) >= 0;
+			ids.put(page.getId(), pages.append(encode(page)));
+			if(known) {
+				return; // updates keep the title
+			}
+			long hash = HashIndex.hash(page.getTitle());
+			for(int slot = titles.find(hash, -1); slot >= 0; slot = titles.find(hash, slot)) {
+				String other = title(titles.value(slot));
+				if(other == null || other.equals(page.getTitle())) {
+					titles.set(slot, page.getId());
+					return;
+				}
+			}
+			titles.add(hash, page.getId());
+		}
+
+		/* Gets the address of the redirect with a title, or -1 */
+		long findRedirect(String title) throws IOException {
+			long hash = HashIndex.hash(title);
+			for(int slot = redirectTitles.find(hash, -1); slot >= 0; slot = redirectTitles.find(hash, slot)) {
+				if(readRedirect(redirectTitles.value(slot)).getFirst().equals(title)) {
+					return redirectTitles.value(slot);
+				}
+			}
+			return -1;
+		}
+
+		Pair<String, String> readRedirect(long address) throws IOException {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(redirects.read(address)));
+			String title = readString(in);
+			return new Pair<String, String>(title, readString(in));
+		}
+
+		/* Stores a redirect, unless its title is known: the first target is kept */
+		void putRedirect(String title, String target) throws IOException {
+			if(findRedirect(title) >= 0) {
+				return;
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			writeString(out, title);
+			writeString(out, target);
+			redirectTitles.add(HashIndex.hash(title), redirects.append(bytes.toByteArray()));
+		}
+
+		void force() throws IOException {
+			pages.force();
+			ids.force();
+			titles.force();
+			redirects.force();
+			redirectTitles.force();
+		}
+
+		void close() throws IOException {
+			pages.close();
+			ids.close();
+			titles.close();
+			redirects.close();
+			redirectTitles.close();
+		}
+	}
+
+	/* Gets the files of a language, opening them if needed */
+	private Store store(String langAbbrev) throws IOException {
+		String code = LanguageProfile.forCode(langAbbrev).getCode();
+		Store store = stores.get(code);
+		if(store == null) {
+			store = new Store(new File(directory, code));
+			stores.put(code, store);
+		}
+		return store;
+	}
+
+	/* Writes the files of all languages to disk, unless in a bulk load */
+	private void commit() throws IOException {
+		if(!bulkLoad) {
+			for(Store store : stores.values()) {
+				store.force();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#updatePage(model.Page, java.lang.String)
+	 */
+	public synchronized void updatePage(Page page, String langAbbrev) {
+		assert page != null;
+		assert langAbbrev != null;
+
+		try {
+			Store store = store(langAbbrev);
+			Page stored = store.get(page.getId());
+			if(stored != null) {
+				stored.setBody(page.getBody());
+				store.put(stored);
+				commit();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not update page " + page.getId(), e);
+		}
+	}
+
+	/* Updates the entity types, the Dutch pages first and the English pages second in each pair
+	 * (like Dao).
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#updatePages(java.util.Map)
+	 */
+	public synchronized void updatePages(Map<String, Pair<Page, Page>> articles) {
+		try {
+			for(Pair<Page, Page> pagePair : articles.values()) {
+				updateEntityType(Language.DUTCH, pagePair.getFirst());
+				updateEntityType(Language.ENGLISH, pagePair.getSecond());
+			}
+			commit();
+		} catch (IOException e) {
+			logger.warn("Could not update pages", e);
+		}
+	}
+
+	private void updateEntityType(Language language, Page page) throws IOException {
+		if(page == null || page.getEntityType() == null || page.getEntityType().equals("")) {
+			return;
+		}
+		Store store = store(language.abbreviation());
+		Page stored = store.get(page.getId());
+		if(stored != null) {
+			stored.setEntityType(page.getEntityType());
+			store.put(stored);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#processBatch(java.lang.String, java.util.List)
+	 */
+	public synchronized void processBatch(String langAbbrev, List<Page> pages) {
+		assert pages != null;
+
+		try {
+			Store store = store(langAbbrev);
+			for(Page p : pages) {
+				store.put(p);
+			}
+			commit();
+		} catch (IOException e) {
+			logger.warn("Problem with page files", e);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#processRedirects(java.lang.String, java.util.List)
+	 */
+	public synchronized void processRedirects(String langAbbrev, List<Page> redirects) {
+		assert redirects != null;
+
+		try {
+			Store store = store(langAbbrev);
+			for(Page p : redirects) {
+				if(p.getRedirectTarget() == null || p.getRedirectTarget().length() == 0) {
+					continue; // target unknown
+				}
+				store.putRedirect(p.getTitle(), p.getRedirectTarget());
+			}
+			commit();
+		} catch (IOException e) {
+			logger.warn("Problem with redirect files", e);
+		}
+	}
+
+	/* Until finishBulkLoad, files are not forced to disk after every batch.
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#startBulkLoad()
+	 */
+	public synchronized void startBulkLoad() {
+		bulkLoad = true;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#finishBulkLoad()
+	 */
+	public synchronized void finishBulkLoad() {
+		if(!bulkLoad) {
+			return;
+		}
+		bulkLoad = false;
+		try {
+			commit();
+		} catch (IOException e) {
+			logger.warn("Could not write files", e);
+		}
+	}
+
+	/* Closes all files; they are opened again when used.
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#close()
+	 */
+	public synchronized void close() {
+		finishBulkLoad();
+		for(Store store : stores.values()) {
+			try {
+				store.close();
+			} catch (IOException e) {
+				logger.warn("Could not close files", e);
+			}
+		}
+		stores.clear();
+		dictionary = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrieveRedirectTarget(java.lang.String, java.lang.String)
+	 */
+	public synchronized String retrieveRedirectTarget(String langAbbrev, String title) {
+		assert langAbbrev != null;
+		assert title != null;
+
+		try {
+			Store store = store(langAbbrev);
+			long address = store.findRedirect(title);
+			if(address >= 0) {
+				return store.readRedirect(address).getSecond();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read redirect " + title, e);
+		}
+		return null;
+	}
+
+	/* Appends the words to the dictionary file.
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#processDictionary(java.util.Set)
+	 */
+	public synchronized void processDictionary(Set<String> words) {
+		try {
+			if(!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Could not make " + directory);
+			}
+			Writer out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(new File(directory, DICTIONARY), true), "UTF-8"));
+			try {
+				for(String word : words) {
+					out.write(word);
+					out.write('\n');
+				}
+			} finally {
+				out.close();
+			}
+			if(dictionary != null) {
+				for(String word : words) {
+					dictionary.add(word.toLowerCase());
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not write dictionary", e);
+		}
+	}
+
+	/* Looks the noun up ignoring case, like the collation of the dictionary table.
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#selectNoun(java.lang.String)
+	 */
+	public synchronized boolean selectNoun(String noun) {
+		assert noun != null;
+
+		if(dictionary == null) {
+			dictionary = Sets.newHashSet();
+			File file = new File(directory, DICTIONARY);
+			if(file.exists()) {
+				try {
+					BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+					try {
+						String line;
+						while((line = in.readLine()) != null) {
+							dictionary.add(line.toLowerCase());
+						}
+					} finally {
+						in.close();
+					}
+				} catch (IOException e) {
+					logger.warn("Could not read dictionary", e);
+				}
+			}
+		}
+		return dictionary.contains(noun.toLowerCase());
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrievePage(java.lang.String, long)
+	 */
+	public synchronized ResultSet retrievePage(String langAbbrev, long id) {
+		assert langAbbrev != null;
+		assert id > 0;
+
+		try {
+			return pageRows(store(langAbbrev).get(id));
+		} catch (IOException e) {
+			logger.warn("Could not read page " + id, e);
+		}
+		return null;
+	}
+
+	/* If the title is not found, it is tried once more with other case, as Dao does.
+	 *
+	 * (non-Javadoc)
+	 * @see dao.IDao#retrievePage(java.lang.String, java.lang.String)
+	 */
+	public synchronized ResultSet retrievePage(String langAbbrev, String title) {
+		assert langAbbrev != null;
+		assert title != null;
+
+		try {
+			Store store = store(langAbbrev);
+			long id = store.find(title);
+			if(id < 0 && title.length() > 0) {
+				id = store.find(TitleDictionary.otherCase(title));
+			}
+			return pageRows(id < 0 ? null : store.get(id));
+		} catch (IOException e) {
+			logger.warn("Could not read page " + title, e);
+		}
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrievePages(java.lang.String, java.util.Collection)
+	 */
+	public synchronized Map<Long, Page> retrievePages(String langAbbrev, Collection<Long> ids) {
+		assert langAbbrev != null;
+
+		Map<Long, Page> pages = Maps.newLinkedHashMap();
+		try {
+			Store store = store(langAbbrev);
+			for(Long id : ids) {
+				Page page = store.get(id);
+				if(page != null) {
+					pages.put(id, page);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read pages", e);
+			return null;
+		}
+		return pages;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrievePagesByTitle(java.lang.String, java.util.Collection)
+	 */
+	public synchronized Map<String, Page> retrievePagesByTitle(String langAbbrev, Collection<String> titles) {
+		assert langAbbrev != null;
+
+		Map<String, Page> pages = Maps.newLinkedHashMap();
+		try {
+			Store store = store(langAbbrev);
+			for(String title : titles) {
+				long id = store.find(title);
+				if(id < 0 && title.length() > 0) {
+					id = store.find(TitleDictionary.otherCase(title));
+				}
+				Page page = id < 0 ? null : store.get(id);
+				if(page != null) {
+					pages.put(title, page);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read pages", e);
+			return null;
+		}
+		return pages;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrieveRedirectTargets(java.lang.String, java.util.Collection)
+	 */
+	public synchronized Map<String, String> retrieveRedirectTargets(String langAbbrev, Collection<String> titles) {
+		assert langAbbrev != null;
+
+		Map<String, String> targets = Maps.newLinkedHashMap();
+		try {
+			Store store = store(langAbbrev);
+			for(String title : titles) {
+				long address = store.findRedirect(title);
+				if(address >= 0) {
+					targets.put(title, store.readRedirect(address).getSecond());
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read redirects", e);
+			return null;
+		}
+		return targets;
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrievePageIds(java.lang.String)
+	 */
+	public synchronized long[] retrievePageIds(String langAbbrev) {
+		assert langAbbrev != null;
+
+		long[] ids = new long[1024];
+		int n = 0;
+		try {
+			Store store = store(langAbbrev);
+			for(long id = 1, end = store.ids.getEnd(); id < end; ++id) {
+				if(store.ids.get(id) >= 0) {
+					if(n == ids.length) {
+						ids = Arrays.copyOf(ids, 2 * n);
+					}
+					ids[n++] = id;
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read page ids", e);
+		}
+		return Arrays.copyOf(ids, n);
+	}
+
+	/* (non-Javadoc)
+	 * @see dao.IDao#retrieveCategoriesPerPage(java.lang.String, long)
+	 */
+	public synchronized ResultSet retrieveCategoriesPerPage(String langAbbrev, long id) {
+		assert langAbbrev != null;
+		assert id > 0;
+
+		try {
+			Page page = store(langAbbrev).get(id);
+			List<Object[]> rows = Lists.newArrayList();
+			if(page != null) {
+				for(String category : page.getCategories()) {
+					rows.add(new Object[] {id, category});
+				}
+			}
+			return RowResultSet.of(Dao.CATEGORY_COLUMNS, rows);
+		} catch (IOException e) {
+			logger.warn("Could not read page " + id, e);
+		}
+		return null;
+	}
+
+	/* Makes a result with the columns of the pages tables, empty if there is no page */
+	private static ResultSet pageRows(Page page) {
+		if(page == null) {
+			return RowResultSet.of(Dao.PAGE_COLUMNS, Collections.<Object[]>emptyList());
+		}
+		String aliases = page.getAliases().isEmpty() ? null : Joiner.on(Dao.ALIAS_SEPARATOR).join(page.getAliases());
+		List<Object[]> rows = Lists.newArrayListWithCapacity(1);
+		rows.add(new Object[] {page.getId(), page.getTitle(), page.getBody(), page.getEnglishLink(),
+				page.getEntityType(), page.isDisambiguation(), page.getInfobox(), aliases});
+		return RowResultSet.of(Dao.PAGE_COLUMNS, rows);
+	}
+
+	/* A page record: id, title, body, English link, entity type, disambiguation, infobox, the
+	 * aliases and the categories. */
+	/* The title is written right after the id, so that Store.title can read it alone */
+	private static byte[] encode(Page page) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(page.getBody() == null ? 256 : page.getBody().length() + 256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeLong(page.getId());
+		writeString(out, page.getTitle());
+		writeString(out, page.getBody());
+		// like Dao, which stores an empty link for none
+		writeString(out, page.getEnglishLink() == null ? "" : page.getEnglishLink());
+		writeString(out, page.getEntityType());
+		out.writeBoolean(page.isDisambiguation());
+		writeString(out, page.getInfobox());
+		writeStrings(out, page.getAliases());
+		writeStrings(out, page.getCategories());
+		return bytes.toByteArray();
+	}
+
+	private static Page decode(byte[] record) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+		Page page = new Page();
+		page.setId(in.readLong());
+		page.setTitle(readString(in));
+		page.setBody(readString(in));
+		page.setEnglishLink(readString(in));
+		page.setEntityType(readString(in));
+		page.setDisambiguation(in.readBoolean());
+		page.setInfobox(readString(in));
+		readStrings(in, page.getAliases());
+		readStrings(in, page.getCategories());
+		return page;
+	}
+
+	/* Strings are written as their length in UTF-8 bytes, or -1 for null, and the bytes:
+	 * DataOutput.writeUTF only takes 64 kB. */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if(s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if(length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for(String s : strings) {
+			writeString(out, s);
+		}
+	}
+
+	private static void readStrings(DataInputStream in, Set<String> strings) throws IOException {
+		for(int n = in.readInt(); n > 0; --n) {
+			strings.add(readString(in));
+		}
+	}
+}
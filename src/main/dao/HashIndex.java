@@ -0,0 +1,145 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** A memory-mapped hash table from the 64 bit hash of a string to a long, with linear probing.
+ * The strings themselves are not stored: different strings may have the same hash, so a caller
+ * looks at each slot with the hash (see find) and checks the value against the string.
+ *
+ * The file starts with the capacity and the number of entries, followed by the slots (hash and
+ * value; hash 0 marks an empty slot). The table doubles when it is half full.
+ */
+final class HashIndex {
+
+	private static final int HEADER = 16;
+	private static final int SLOT = 16;
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	private static final int MAX_CAPACITY = 1 << 26; // the largest table that can be mapped in one buffer
+
+	private final File file;
+	private FileChannel channel;
+	private MappedByteBuffer table;
+	private int capacity;
+	private int size;
+
+	HashIndex(File file) throws IOException {
+		this.file = file;
+		boolean exists = file.length() > 0;
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		if(exists) {
+			table = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			capacity = table.getInt(0);
+			size = table.getInt(4);
+		}
+		else {
+			create(INITIAL_CAPACITY);
+		}
+	}
+
+	private void create(int newCapacity) throws IOException {
+		capacity = newCapacity;
+		table = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + (long) SLOT * capacity);
+		table.putInt(0, capacity);
+		table.putInt(4, size);
+	}
+
+	/** Hashes a string (64 bit FNV-1a over its chars), never to 0 */
+	static long hash(String s) {
+		long hash = 0xcbf29ce484222325L;
+		for(int i = 0; i < s.length(); ++i) {
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash == 0 ? 1 : hash;
+	}
+
+	/** Finds the next slot with a hash
+	 *
+	 * @param hash the hash
+	 * @param previous the slot found before, or -1 to start
+	 * @return the slot, or -1 if there are no more
+	 */
+	int find(long hash, int previous) {
+		int mask = capacity - 1;
+		int slot = previous < 0 ? (int) (hash ^ hash >>> 32) & mask : previous + 1 & mask;
+		for(long h; (h = table.getLong(offset(slot))) != 0; slot = slot + 1 & mask) {
+			if(h == hash) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/** Gets the value of a slot found with find */
+	long value(int slot) {
+		return table.getLong(offset(slot) + 8);
+	}
+
+	/** Changes the value of a slot found with find */
+	void set(int slot, long value) {
+		table.putLong(offset(slot) + 8, value);
+	}
+
+	/** Adds an entry, also if there is one with the same hash */
+	void add(long hash, long value) throws IOException {
+		if(2 * (size + 1) > capacity) {
+			grow();
+		}
+		insert(table, capacity, hash, value);
+		table.putInt(4, ++size);
+	}
+
+	private static int offset(int slot) {
+		return HEADER + SLOT * slot;
+	}
+
+	private static void insert(MappedByteBuffer table, int capacity, long hash, long value) {
+		int mask = capacity - 1;
+		int slot = (int) (hash ^ hash >>> 32) & mask;
+		while(table.getLong(offset(slot)) != 0) {
+			slot = slot + 1 & mask;
+		}
+		table.putLong(offset(slot), hash);
+		table.putLong(offset(slot) + 8, value);
+	}
+
+	/* Doubles the capacity: the entries are read into memory, and inserted again in the table,
+	 * mapped anew with twice the size. Mapped files cannot be deleted everywhere, so the same
+	 * file is reused. */
+	private void grow() throws IOException {
+		if(capacity >= MAX_CAPACITY) {
+			throw new IOException("Hash index " + file + " is full");
+		}
+		long[] hashes = new long[size];
+		long[] values = new long[size];
+		int n = 0;
+		for(int slot = 0; slot < capacity; ++slot) {
+			long hash = table.getLong(offset(slot));
+			if(hash != 0) {
+				hashes[n] = hash;
+				values[n++] = table.getLong(offset(slot) + 8);
+				table.putLong(offset(slot), 0);
+			}
+		}
+		create(capacity * 2);
+		for(int i = 0; i < n; ++i) {
+			insert(table, capacity, hashes[i], values[i]);
+		}
+	}
+
+	/** Writes the table to disk */
+	void force() {
+		table.force();
+	}
+
+	/** Closes the file. The table stays mapped until it is garbage collected. */
+	void close() throws IOException {
+		force();
+		channel.close();
+	}
+}
@@ -6,6 +6,7 @@ package dao;
  */
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -34,6 +35,33 @@ public interface IDao {
 	 */
 	void processBatch(String langAbbrev, List<Page> pages); 
 	
+	/** Inserts redirects (title and target only) to the redirect table of a language. 
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param redirects the redirect pages
+	 */
+	void processRedirects(String langAbbrev, List<Page> redirects);
+	
+	/** Starts a bulk load: until finishBulkLoad, processBatch loads pages the fastest way the
+	 * database allows, and may skip checks that inserts do (such as unique checks).
+	 */
+	void startBulkLoad();
+	
+	/** Finishes a bulk load, and switches checks that were skipped back on. */
+	void finishBulkLoad();
+	
+	/** Releases the database connection. The IDao may be used again afterwards, and then takes
+	 * a new connection. */
+	void close();
+	
+	/** Finds the target of a redirect
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param title the redirect's title
+	 * @return the target title, or null if the title is no redirect
+	 */
+	String retrieveRedirectTarget(String langAbbrev, String title);
+	
 	
 	/** Inserts a set of words to the database.
 	 * 
@@ -64,6 +92,38 @@ public interface IDao {
 	 */
 	ResultSet retrieveCategoriesPerPage(String langAbbrev, long id);
 	
+	/** Finds many pages, with their categories, at once
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param ids the page ids
+	 * @return the pages found, by id, or null if the store could not be read
+	 */
+	Map<Long, Page> retrievePages(String langAbbrev, Collection<Long> ids);
+	
+	/** Finds many pages, with their categories, by title at once. Titles are looked up as by
+	 * retrievePage(String, String); redirects are not followed.
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param titles the titles
+	 * @return the pages found, by the title they were found with, or null if the store could not be read
+	 */
+	Map<String, Page> retrievePagesByTitle(String langAbbrev, Collection<String> titles);
+	
+	/** Finds the targets of many redirects at once
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param titles the titles of the redirects
+	 * @return the targets, by the titles that are redirects, or null if the store could not be read
+	 */
+	Map<String, String> retrieveRedirectTargets(String langAbbrev, Collection<String> titles);
+	
+	/** Gets the ids of all pages of a language
+	 * 
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @return the ids, in ascending order
+	 */
+	long[] retrievePageIds(String langAbbrev);
+	
 	/** Searches for a noun in a dictionary
 	 * 
 	 * @param s the noun to look up
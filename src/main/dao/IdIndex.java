@@ -0,0 +1,91 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/** A memory-mapped array from page id to record address: the address of id <i>n</i> is the long at
+ * byte 8<i>n</i> of the file. The file is mapped in chunks, which are only mapped (and so only
+ * take disk space) once an id in them is read or written; page ids are dense enough for that.
+ */
+final class IdIndex {
+
+	private static final int CHUNK_IDS = 1 << 20;
+	private static final long CHUNK_BYTES = 8L * CHUNK_IDS;
+	private static final long NONE = -1;
+
+	private final FileChannel channel;
+	private final List<MappedByteBuffer> chunks = Lists.newArrayList();
+
+	IdIndex(File file) throws IOException {
+		channel = new RandomAccessFile(file, "rw").getChannel();
+	}
+
+	/** Gets the address of a page
+	 *
+	 * @return the address, or -1 if the id is unknown
+	 */
+	long get(long id) throws IOException {
+		MappedByteBuffer chunk = chunk(id, false);
+		if(chunk == null) {
+			return NONE;
+		}
+		return chunk.getLong(slot(id)) - 1; // 0 in the file means unknown
+	}
+
+	/** Gets an id past the last one stored */
+	long getEnd() throws IOException {
+		return channel.size() / 8;
+	}
+
+	/** Sets the address of a page */
+	void put(long id, long address) throws IOException {
+		assert address >= 0;
+		chunk(id, true).putLong(slot(id), address + 1);
+	}
+
+	private static int slot(long id) {
+		return (int) (id % CHUNK_IDS) * 8;
+	}
+
+	/* Gets the mapped chunk of an id, mapping it if needed. When not for writing, chunks past the
+	 * end of the file are not made. */
+	private MappedByteBuffer chunk(long id, boolean write) throws IOException {
+		assert id >= 0;
+		int number = (int) (id / CHUNK_IDS);
+		MappedByteBuffer chunk = number < chunks.size() ? chunks.get(number) : null;
+		if(chunk == null) {
+			if(!write && (number + 1) * CHUNK_BYTES > channel.size()) {
+				return null;
+			}
+			while(chunks.size() <= number) {
+				chunks.add(null);
+			}
+			chunk = channel.map(FileChannel.MapMode.READ_WRITE, number * CHUNK_BYTES, CHUNK_BYTES);
+			chunks.set(number, chunk);
+		}
+		return chunk;
+	}
+
+	/** Writes the mapped chunks to disk */
+	void force() {
+		for(MappedByteBuffer chunk : chunks) {
+			if(chunk != null) {
+				chunk.force();
+			}
+		}
+	}
+
+	/** Closes the file. The chunks stay mapped until they are garbage collected. */
+	void close() throws IOException {
+		force();
+		chunks.clear();
+		channel.close();
+	}
+}
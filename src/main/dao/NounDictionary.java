@@ -0,0 +1,110 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/** The common nouns of the dictionary table, in memory, so that checking a word needs no query.
+ * The words are kept lower case in a TitleDictionary, with a Bloom filter in front of it: most
+ * words checked are names, not nouns, and the filter turns nearly all of them away without a
+ * search.
+ *
+ * Words are compared ignoring case, like the collation of the dictionary table, but not ignoring
+ * accents, which that collation also does. The dictionary is loaded once (see
+ * Dao#loadNounDictionary) and shared by all Daos.
+ */
+public final class NounDictionary {
+
+	private static final int BITS_PER_WORD = 10;
+	private static final int HASHES = 7; // about 1% false positives with 10 bits a word
+
+	private static NounDictionary shared;
+
+	private final TitleDictionary words;
+	private final long[] bits;
+	private final int bitCount;
+
+	private NounDictionary(TitleDictionary words) {
+		this.words = words;
+		bitCount = Math.max(64, BITS_PER_WORD * words.size());
+		bits = new long[(bitCount + 63) / 64];
+	}
+
+	/** Gets the dictionary
+	 *
+	 * @return the dictionary, or null if none is loaded
+	 */
+	public static synchronized NounDictionary getShared() {
+		return shared;
+	}
+
+	/** Sets the dictionary, used by all Daos from now on */
+	public static synchronized void setShared(NounDictionary dictionary) {
+		shared = dictionary;
+	}
+
+	/** Checks whether a word is a common noun, ignoring case */
+	public boolean contains(String word) {
+		String key = word.toLowerCase();
+		long hash = HashIndex.hash(key);
+		for(int i = 0; i < HASHES; ++i) {
+			if(!get(bit(hash, i))) {
+				return false;
+			}
+		}
+		return words.find(key) >= 0;
+	}
+
+	/** Gets the number of words */
+	public int size() {
+		return words.size();
+	}
+
+	/** Gets the memory the dictionary takes, about */
+	public long getByteCount() {
+		return words.getByteCount() + 8L * bits.length;
+	}
+
+	/* The i-th bit of a word, from the two halves of its hash */
+	private int bit(long hash, int i) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		return ((h1 + i * h2) & 0x7fffffff) % bitCount;
+	}
+
+	private boolean get(int bit) {
+		return (bits[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	private void set(int bit) {
+		bits[bit >>> 6] |= 1L << bit;
+	}
+
+	/** Collects words, in any order, to build a dictionary of them */
+	public static final class Builder {
+
+		private final TitleDictionary.Builder words = new TitleDictionary.Builder();
+		private final List<String> added = Lists.newArrayList();
+
+		public Builder add(String word) {
+			String key = word.trim().toLowerCase();
+			if(key.length() > 0) {
+				added.add(key);
+				words.add(added.size(), key);
+			}
+			return this;
+		}
+
+		public NounDictionary build() {
+			NounDictionary dictionary = new NounDictionary(words.build());
+			for(String word : added) {
+				long hash = HashIndex.hash(word);
+				for(int i = 0; i < HASHES; ++i) {
+					dictionary.set(dictionary.bit(hash, i));
+				}
+			}
+			return dictionary;
+		}
+	}
+}
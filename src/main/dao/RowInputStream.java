@@ -0,0 +1,108 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/** Tab separated rows for <code>LOAD DATA</code>, in UTF-8 and with the default escapes (backslash,
+ * and <code>\N</code> for null). Rows are made one at a time, when the driver reads them, so a load
+ * needs neither a file nor a copy of all rows in memory.
+ */
+abstract class RowInputStream extends InputStream {
+
+	private final StringBuilder row = new StringBuilder();
+	private boolean firstField;
+	private byte[] buffer = new byte[0];
+	private int position;
+
+	/** Adds the fields of the next row, with the field methods.
+	 *
+	 * @return false if there are no more rows
+	 */
+	protected abstract boolean nextRow();
+
+	protected void field(long value) {
+		separate();
+		row.append(value);
+	}
+
+	protected void field(boolean value) {
+		field(value ? 1 : 0);
+	}
+
+	protected void field(String value) {
+		separate();
+		if(value == null) {
+			row.append("\\N");
+			return;
+		}
+		for(int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			switch(c) {
+			case '\\':
+				row.append("\\\\");
+				break;
+			case '\t':
+				row.append("\\t");
+				break;
+			case '\n':
+				row.append("\\n");
+				break;
+			case '\r':
+				row.append("\\r");
+				break;
+			case '\0':
+				row.append("\\0");
+				break;
+			default:
+				row.append(c);
+			}
+		}
+	}
+
+	private void separate() {
+		if(!firstField) {
+			row.append('\t');
+		}
+		firstField = false;
+	}
+
+	/* Makes the next row. Returns false if there are no more rows. */
+	private boolean fill() throws IOException {
+		row.setLength(0);
+		firstField = true;
+		if(!nextRow()) {
+			return false;
+		}
+		row.append('\n');
+		buffer = row.toString().getBytes("UTF-8");
+		position = 0;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(position == buffer.length && !fill()) {
+			return -1;
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) {
+			return 0;
+		}
+		int n = 0;
+		while(n < len) {
+			if(position == buffer.length && !fill()) {
+				break;
+			}
+			int count = Math.min(len - n, buffer.length - position);
+			System.arraycopy(buffer, position, b, off + n, count);
+			position += count;
+			n += count;
+		}
+		return n == 0 ? -1 : n;
+	}
+}
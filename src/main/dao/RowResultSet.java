@@ -0,0 +1,169 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.List;
+
+/** A read-only, scrollable ResultSet over rows in memory, for IDaos that do not use JDBC. It
+ * supports what the callers of IDao use: moving with first, next and beforeFirst, and the getters
+ * for strings, numbers, booleans, bytes and binary streams, by column index or label, and the
+ * column count and labels of getMetaData. Other methods throw SQLFeatureNotSupportedException.
+ */
+final class RowResultSet implements InvocationHandler {
+
+	private final List<String> labels;
+	private final List<Object[]> rows;
+	private int row = -1;
+	private boolean wasNull;
+
+	private RowResultSet(String[] labels, List<Object[]> rows) {
+		this.labels = Arrays.asList(labels);
+		this.rows = rows;
+	}
+
+	/** Makes a ResultSet
+	 *
+	 * @param labels the column labels
+	 * @param rows the rows, with a value (or null) for each column
+	 */
+	static ResultSet of(String[] labels, List<Object[]> rows) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class<?>[] {ResultSet.class}, new RowResultSet(labels, rows));
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String name = method.getName();
+		if(name.equals("next")) {
+			return move(row + 1);
+		}
+		if(name.equals("first")) {
+			return move(0);
+		}
+		if(name.equals("beforeFirst")) {
+			move(-1);
+			return null;
+		}
+		if(name.equals("isBeforeFirst")) {
+			return row < 0 && !rows.isEmpty();
+		}
+		if(name.equals("getRow")) {
+			return row >= 0 && row < rows.size() ? row + 1 : 0;
+		}
+		if(name.equals("wasNull")) {
+			return wasNull;
+		}
+		if(name.equals("findColumn")) {
+			return column(args[0]) + 1;
+		}
+		if(name.equals("close")) {
+			return null;
+		}
+		if(name.equals("isClosed")) {
+			return false;
+		}
+		if(name.equals("getMetaData")) {
+			return metaData();
+		}
+		if(name.startsWith("get") && args != null && args.length == 1) {
+			return get(name.substring(3), value(args[0]));
+		}
+		if(method.getDeclaringClass() == Object.class) {
+			if(name.equals("equals")) {
+				return proxy == args[0];
+			}
+			if(name.equals("hashCode")) {
+				return System.identityHashCode(proxy);
+			}
+			return "RowResultSet" + labels;
+		}
+		throw new SQLFeatureNotSupportedException(name);
+	}
+
+	/* The column count and labels, as ResultSetMetaData */
+	private ResultSetMetaData metaData() {
+		return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+				new Class<?>[] {ResultSetMetaData.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if(name.equals("getColumnCount")) {
+							return labels.size();
+						}
+						if(name.equals("getColumnLabel") || name.equals("getColumnName")) {
+							return labels.get(column(args[0]));
+						}
+						throw new SQLFeatureNotSupportedException(name);
+					}
+				});
+	}
+
+	private boolean move(int to) {
+		row = Math.max(-1, Math.min(to, rows.size()));
+		return row >= 0 && row < rows.size();
+	}
+
+	private int column(Object indexOrLabel) throws SQLException {
+		int column = indexOrLabel instanceof Integer ? (Integer) indexOrLabel - 1
+				: labels.indexOf(((String) indexOrLabel).toLowerCase());
+		if(column < 0 || column >= labels.size()) {
+			throw new SQLException("No column " + indexOrLabel);
+		}
+		return column;
+	}
+
+	private Object value(Object indexOrLabel) throws SQLException {
+		if(row < 0 || row >= rows.size()) {
+			throw new SQLException("Not on a row");
+		}
+		Object value = rows.get(row)[column(indexOrLabel)];
+		wasNull = value == null;
+		return value;
+	}
+
+	/* Converts a value the way the getter of a type does */
+	private static Object get(String type, Object value) throws SQLException, UnsupportedEncodingException {
+		if(type.equals("String")) {
+			return value == null ? null : value instanceof Boolean ? ((Boolean) value ? "1" : "0") : value.toString();
+		}
+		if(type.equals("Object")) {
+			return value;
+		}
+		if(type.equals("Boolean")) {
+			return value instanceof Boolean ? (Boolean) value : value != null && number(value) != 0;
+		}
+		if(type.equals("Long")) {
+			return value == null ? 0L : number(value);
+		}
+		if(type.equals("Int")) {
+			return value == null ? 0 : (int) number(value);
+		}
+		if(type.equals("Bytes") || type.equals("BinaryStream")) {
+			byte[] bytes = value == null ? null : value instanceof byte[] ? (byte[]) value
+					: value.toString().getBytes("UTF-8");
+			return type.equals("Bytes") || bytes == null ? bytes : new ByteArrayInputStream(bytes);
+		}
+		throw new SQLFeatureNotSupportedException("get" + type);
+	}
+
+	private static long number(Object value) throws SQLException {
+		if(value instanceof Number) {
+			return ((Number) value).longValue();
+		}
+		if(value instanceof Boolean) {
+			return (Boolean) value ? 1 : 0;
+		}
+		try {
+			return Long.parseLong(value.toString().trim());
+		} catch (NumberFormatException e) {
+			throw new SQLException("Not a number: " + value);
+		}
+	}
+}
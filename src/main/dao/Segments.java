@@ -0,0 +1,115 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/** Append-only records in a series of segment files (<code>name-0000.seg</code>, ...). A record is
+ * only ever written once; a new version of a record is appended, and the old one stays as garbage.
+ *
+ * The address of a record is its segment number in the high 32 bits and its position in the low
+ * 32 bits. A record is stored as its length (4 bytes) followed by its bytes.
+ */
+final class Segments {
+
+	private final File directory;
+	private final String name;
+	private final long segmentSize;
+	private final List<FileChannel> channels = Lists.newArrayList();
+	private long end; // position in the last segment where the next record goes
+
+	/** Opens the segments in a directory, creating the first if there are none.
+	 *
+	 * @param directory where the segments are
+	 * @param name prefix of the segment file names
+	 * @param segmentSize size after which a new segment is started (at most 2 GB)
+	 */
+	Segments(File directory, String name, long segmentSize) throws IOException {
+		assert segmentSize > 0 && segmentSize <= Integer.MAX_VALUE;
+
+		this.directory = directory;
+		this.name = name;
+		this.segmentSize = segmentSize;
+		for(int i = 0; i == 0 || segment(i).exists(); ++i) {
+			channels.add(new RandomAccessFile(segment(i), "rw").getChannel());
+		}
+		end = last().size();
+	}
+
+	private File segment(int number) {
+		return new File(directory, String.format("%s-%04d.seg", name, number));
+	}
+
+	private FileChannel last() {
+		return channels.get(channels.size() - 1);
+	}
+
+	/** Appends a record
+	 *
+	 * @return the address of the record
+	 */
+	long append(byte[] record) throws IOException {
+		if(end > 0 && end + 4 + record.length > segmentSize) {
+			last().force(false);
+			channels.add(new RandomAccessFile(segment(channels.size()), "rw").getChannel());
+			end = 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+		buffer.putInt(record.length).put(record).flip();
+		long address = ((long) (channels.size() - 1) << 32) | end;
+		while(buffer.hasRemaining()) {
+			end += last().write(buffer, end);
+		}
+		return address;
+	}
+
+	/** Reads the record at an address */
+	byte[] read(long address) throws IOException {
+		FileChannel channel = channels.get((int) (address >>> 32));
+		long position = address & 0xffffffffL;
+		ByteBuffer length = ByteBuffer.allocate(4);
+		readFully(channel, length, position);
+		ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+		readFully(channel, record, position + 4);
+		return record.array();
+	}
+
+	/** Reads part of the record at an address
+	 *
+	 * @param address the address of the record
+	 * @param offset where the part starts in the record
+	 * @param length the number of bytes of the part
+	 */
+	byte[] read(long address, int offset, int length) throws IOException {
+		FileChannel channel = channels.get((int) (address >>> 32));
+		ByteBuffer part = ByteBuffer.allocate(length);
+		readFully(channel, part, (address & 0xffffffffL) + 4 + offset);
+		return part.array();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Record past the end of its segment");
+			}
+		}
+	}
+
+	/** Writes appended records to disk */
+	void force() throws IOException {
+		last().force(false);
+	}
+
+	void close() throws IOException {
+		for(FileChannel channel : channels) {
+			channel.close();
+		}
+		channels.clear();
+	}
+}
@@ -0,0 +1,222 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+/** The titles and ids of all pages of a language, in memory, so that looking up a title needs no
+ * query, and a title without page needs no database at all. The titles are kept as sorted UTF-8
+ * bytes in one array, with arrays of offsets and ids, and are found by binary search: about the
+ * size of the titles themselves plus 8 bytes a page.
+ *
+ * Dictionaries are loaded once (see Dao#loadTitleDictionary) and shared by all Daos.
+ */
+public final class TitleDictionary {
+
+	private static final Map<String, TitleDictionary> dictionaries = Maps.newHashMap();
+
+	private final byte[] bytes;
+	private final int[] offsets; // of title i in bytes, and the end of the last title
+	private final int[] ids;
+
+	private TitleDictionary(byte[] bytes, int[] offsets, int[] ids) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+		this.ids = ids;
+	}
+
+	/** Gets the dictionary of a language
+	 *
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @return the dictionary, or null if none is loaded
+	 */
+	public static synchronized TitleDictionary forLanguage(String langAbbrev) {
+		return dictionaries.get(langAbbrev.toUpperCase());
+	}
+
+	/** Sets the dictionary of a language, used by all Daos from now on */
+	public static synchronized void register(String langAbbrev, TitleDictionary dictionary) {
+		dictionaries.put(langAbbrev.toUpperCase(), dictionary);
+	}
+
+	/** Finds a title the way Dao does: as it is, and if there is no such page with other case (see
+	 * otherCase).
+	 *
+	 * @return the page id, or -1 if there is no page with the title
+	 */
+	public long resolve(String title) {
+		long id = find(title);
+		if(id < 0 && title.length() > 0) {
+			id = find(otherCase(title));
+		}
+		return id;
+	}
+
+	/** Finds a title exactly
+	 *
+	 * @return the page id, or -1 if there is no page with the title
+	 */
+	public long find(String title) {
+		byte[] key = utf8(title);
+		int low = 0;
+		int high = ids.length - 1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			int c = compare(bytes, offsets[middle], offsets[middle + 1], key, 0, key.length);
+			if(c < 0) {
+				low = middle + 1;
+			}
+			else if(c > 0) {
+				high = middle - 1;
+			}
+			else {
+				return ids[middle] & 0xffffffffL;
+			}
+		}
+		return -1;
+	}
+
+	/** Gets the number of titles */
+	public int size() {
+		return ids.length;
+	}
+
+	/** Gets the memory the dictionary takes, about */
+	public long getByteCount() {
+		return bytes.length + 4L * (offsets.length + ids.length);
+	}
+
+	/** The second form of a title that Dao tries: all lower case if it starts with a capital, and
+	 * else with a capital and the rest lower case.
+	 */
+	static String otherCase(String title) {
+		if(title.charAt(0) != title.toLowerCase().charAt(0)) {
+			return title.toLowerCase();
+		}
+		return title.substring(0, 1).toUpperCase() + title.substring(1).toLowerCase();
+	}
+
+	private static byte[] utf8(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/* Compares bytes as unsigned, which orders UTF-8 as the code points */
+	private static int compare(byte[] a, int from, int to, byte[] b, int bFrom, int bTo) {
+		int n = Math.min(to - from, bTo - bFrom);
+		for(int i = 0; i < n; ++i) {
+			int c = (a[from + i] & 0xff) - (b[bFrom + i] & 0xff);
+			if(c != 0) {
+				return c;
+			}
+		}
+		return (to - from) - (bTo - bFrom);
+	}
+
+	/** Collects titles and ids, in any order, to build a dictionary of them */
+	public static final class Builder {
+
+		private byte[] bytes = new byte[1 << 16];
+		private int length;
+		private int[] offsets = new int[1 << 12];
+		private int[] ids = new int[1 << 12];
+		private int count;
+
+		public Builder add(long id, String title) {
+			assert id > 0 && id <= 0xffffffffL;
+			byte[] title8 = utf8(title);
+			if(length + title8.length > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, length + title8.length));
+			}
+			if(count + 1 >= offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+				ids = Arrays.copyOf(ids, 2 * ids.length);
+			}
+			System.arraycopy(title8, 0, bytes, length, title8.length);
+			offsets[count] = length;
+			ids[count++] = (int) id;
+			length += title8.length;
+			return this;
+		}
+
+		/** Sorts the titles; of titles added twice, the first is kept */
+		public TitleDictionary build() {
+			offsets[count] = length;
+			int[] order = new int[count];
+			for(int i = 0; i < count; ++i) {
+				order[i] = i;
+			}
+			sort(order, 0, count - 1);
+
+			byte[] sortedBytes = new byte[length];
+			int[] sortedOffsets = new int[count + 1];
+			int[] sortedIds = new int[count];
+			int n = 0;
+			int position = 0;
+			for(int i = 0; i < count; ++i) {
+				int t = order[i];
+				if(i > 0 && same(t, order[i - 1])) {
+					continue; // equal titles are sorted in the order they were added
+				}
+				int titleLength = offsets[t + 1] - offsets[t];
+				System.arraycopy(bytes, offsets[t], sortedBytes, position, titleLength);
+				sortedOffsets[n] = position;
+				sortedIds[n++] = ids[t];
+				position += titleLength;
+			}
+			sortedOffsets[n] = position;
+			return new TitleDictionary(Arrays.copyOf(sortedBytes, position), Arrays.copyOf(sortedOffsets, n + 1),
+					Arrays.copyOf(sortedIds, n));
+		}
+
+		/* Compares titles t and u, and equal titles in the order they were added; the titles are
+		 * stored one after the other, so offsets[t + 1] is the end of title t */
+		private int compare(int t, int u) {
+			int c = TitleDictionary.compare(bytes, offsets[t], offsets[t + 1], bytes, offsets[u], offsets[u + 1]);
+			return c != 0 ? c : t - u;
+		}
+
+		private boolean same(int t, int u) {
+			return TitleDictionary.compare(bytes, offsets[t], offsets[t + 1], bytes, offsets[u], offsets[u + 1]) == 0;
+		}
+
+		/* Merge sort of title numbers */
+		private void sort(int[] order, int low, int high) {
+			if(high - low < 16) {
+				for(int i = low + 1; i <= high; ++i) {
+					int t = order[i];
+					int j = i - 1;
+					while(j >= low && compare(order[j], t) > 0) {
+						order[j + 1] = order[j];
+						--j;
+					}
+					order[j + 1] = t;
+				}
+				return;
+			}
+			int middle = (low + high) >>> 1;
+			sort(order, low, middle);
+			sort(order, middle + 1, high);
+			int[] merged = new int[high - low + 1];
+			int i = low;
+			int j = middle + 1;
+			int k = 0;
+			while(i <= middle && j <= high) {
+				merged[k++] = compare(order[i], order[j]) <= 0 ? order[i++] : order[j++];
+			}
+			while(i <= middle) {
+				merged[k++] = order[i++];
+			}
+			while(j <= high) {
+				merged[k++] = order[j++];
+			}
+			System.arraycopy(merged, 0, order, low, merged.length);
+		}
+	}
+}
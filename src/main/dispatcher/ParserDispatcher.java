@@ -12,15 +12,39 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
+import com.google.common.collect.Lists;
+
+import dao.ConnectionPool;
+import dao.Dao;
+import dao.IDao;
+
+import wikipediaparser.Parser;
+import wikipediaparser.SyntaxStripper;
+
 import model.Language;
+import model.LanguageProfile;
 
 /** Creates (sequentially) multiple java processes, specifically for the Wikipedia Parser. It executes
  * the process and keeps a timer, terminating the process if it takes longer than 50 minutes. 
  * 
+ * In pool mode (<code>-m pool</code>) no processes are started: the files are parsed by a fixed
+ * number of threads in this JVM. All Parsers share one SyntaxStripper, every thread keeps its own
+ * database connection for all of its files, and a file that takes longer than the timeout is 
+ * cancelled by interrupting its thread. 
+ * 
  * @author Jessica Anderson
  *
  */
@@ -31,7 +55,7 @@ public class ParserDispatcher {
 	
 	private static String directory;
 	private static long commitInterval;
-	private static Language language;
+	private static LanguageProfile language;
 	private String filename;
 	private static Logger logger = Logger.getLogger(ParserDispatcher.class);
 	private FileWriter fstream;
@@ -39,13 +63,29 @@ public class ParserDispatcher {
 	private FileWriter fstreamOutofTime;
 	private BufferedWriter outofTime;
 	private Date now;
+	
+	private static boolean poolMode;
+	private static int threads;
+	private static long timeoutMinutes;
 
+	/**
+	 * Possible arguments are:
+	 * -d directory holding the xml files
+	 * -c commit size
+	 * -l language (english, dutch, or any other name or code in languages.properties)
+	 * -m process (default, one JVM per file) or pool (threads in this JVM)
+	 * -t number of threads in pool mode (defaults to the number of processors)
+	 * -timeout minutes per file (default 50)
+	 */
 	public static void main(String[] args) {
 
 		PropertyConfigurator.configure("log4j.properties");
 		directory = "C:\\eclipse\\workspace\\XML_EN";
 		commitInterval = 100;
-		language = Language.ENGLISH;
+		language = LanguageProfile.forLanguage(Language.ENGLISH);
+		poolMode = false;
+		threads = Runtime.getRuntime().availableProcessors();
+		timeoutMinutes = 50;
 		
 		for(int i = 0; i < args.length; ++i) {
 			if (args[i].equalsIgnoreCase("-d")) {
@@ -56,7 +96,16 @@ public class ParserDispatcher {
 			}
 			if (args[i].equalsIgnoreCase("-l")) {
 				String lang = (args[i+1]);
-				language = Language.valueOf(lang.toUpperCase());
+				language = LanguageProfile.forName(lang);
+			}
+			if (args[i].equalsIgnoreCase("-m")) {
+				poolMode = args[i+1].equalsIgnoreCase("pool");
+			}
+			if (args[i].equalsIgnoreCase("-t")) {
+				threads = Integer.parseInt(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-timeout")) {
+				timeoutMinutes = Long.parseLong(args[i+1]);
 			}
 		}
 		
@@ -81,6 +130,11 @@ public class ParserDispatcher {
 	 * 
 	 */
 	public void run() throws IOException {
+		if(poolMode) {
+			runPool();
+			return;
+		}
+		
 		final File dir = new File(directory);
 		
 		String[] children = dir.list();
@@ -95,7 +149,7 @@ public class ParserDispatcher {
 
 	        if(filename.endsWith(".xml")) {
 	        	builder = new ProcessBuilder("C:\\Program Files\\Java\\jre6\\bin\\javaw.exe", "-Xmx1024M", "-Dfile.encoding=Cp1252", "-classpath", "C:\\eclipse\\workspace\\Scriptie\\bin;C:\\Java\\apache-log4j-1.2.15\\log4j-1.2.15.jar;C:\\Java\\google-collect-1.0\\google-collect-1.0.jar;C:\\Java\\mysql-connector-java-5.1.12\\mysql-connector-java-5.1.12-bin.jar", "wikipediaparser.Parser",
-	        			"-f", directory+filename,"-c", commitInterval+"", "-l",language.name());
+	        			"-f", directory+filename,"-c", commitInterval+"", "-l",language.getName());
 	        	builder.redirectErrorStream(true);
 	        	//builder = new ProcessBuilder("java", "Parser", "-f", directory+filename,"-c", commitInterval+"", "-l",language);
 	        	DoIt();
@@ -153,4 +207,115 @@ public class ParserDispatcher {
 			logger.error("An interrupt occured", e);
 		}
 	}
+	
+	/** Parses all xml files of the directory on a pool of threads, waiting until all are done.
+	 * 
+	 */
+	private void runPool() throws IOException {
+		final File dir = new File(directory);
+		
+		String[] children = dir.list();
+		if (children == null) {
+		   logger.info("No files to process - exiting");
+		   return;
+		}
+		
+		Parser.setLanguage(language);
+		SyntaxStripper stripper = new SyntaxStripper(language, true);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+		List<FutureTask<Object>> tasks = Lists.newArrayList();
+		
+		logger.info("Parsing " + children.length + " files with " + threads + " threads");
+		try {
+			for (String child : children) {
+				if(child.endsWith(".xml")) {
+					FutureTask<Object> task = new ParseTask(new File(dir, child).getPath(), 
+							stripper, watchdog);
+					tasks.add(task);
+					pool.execute(task);
+				}
+			}
+			
+			for (FutureTask<Object> task : tasks) {
+				try {
+					task.get();
+				} catch (CancellationException e) {
+					// logged by the watchdog
+				} catch (ExecutionException e) {
+					logger.warn("Parsing failed", e.getCause());
+				} catch (InterruptedException e) {
+					logger.error("An interrupt occured", e);
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+			watchdog.shutdownNow();
+			ConnectionPool.getShared().logStatistics();
+			out.close();
+			outofTime.close();
+		}
+	}
+	
+	private synchronized void log(BufferedWriter writer, String message) {
+		try {
+			writer.write(message);
+			writer.newLine();
+			writer.flush();
+		} catch (IOException e) {
+			logger.warn("Occured an exception while writing to logfile", e);
+		}
+	}
+	
+	/** Parses one file in pool mode. The timeout starts when the file is taken up by a thread,
+	 * not when it is queued. 
+	 */
+	private class ParseTask extends FutureTask<Object> {
+		
+		private final String file;
+		private final ScheduledExecutorService watchdog;
+		
+		ParseTask(final String file, final SyntaxStripper stripper, ScheduledExecutorService watchdog) {
+			super(new Callable<Object>() {
+				public Object call() throws Exception {
+					// connections are pooled, so a file only holds one while it is parsed
+					IDao dao = new Dao();
+					try {
+						Parser parser = new Parser(dao, stripper);
+						parser.setSourceDocument(file);
+						parser.setCommitSize(commitInterval);
+						parser.setRecyclePages(true);
+						parser.parseFile();
+					} finally {
+						dao.close();
+					}
+					return null;
+				}
+			});
+			this.file = file;
+			this.watchdog = watchdog;
+		}
+		
+		@Override
+		public void run() {
+			log(out, "Processing file: " + file + " timestamp: " + new Date());
+			ScheduledFuture<?> timeout = watchdog.schedule(new Runnable() {
+				public void run() {
+					if(cancel(true)) {
+						log(outofTime, "File: " + file + " ran out of time before finishing. Timestamp: " 
+								+ new Date());
+						logger.info("Parsing " + file + " took too long, cancelled");
+					}
+				}
+			}, timeoutMinutes, TimeUnit.MINUTES);
+			
+			try {
+				super.run();
+			} finally {
+				timeout.cancel(false);
+			}
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+
+import model.CategoryGraph;
+
+import org.apache.log4j.Logger;
+
+import wikipediaparser.CategoryMatcher;
+
+/** The entity type votes of every category of a CategoryGraph, worked out once, so that typing a
+ * page takes a lookup per category instead of fetching category pages up the hierarchy.
+ *
+ * A category votes for the type of the rule its name matches (see CategoryMatcher), and its
+ * votes include those of its ancestors up to LEVELS links up, as findType looks that far. A page
+ * gets a type when its categories together give it at least THRESHOLD votes, and more than any
+ * other type. The votes cannot be changed once worked out, so they can be shared by all threads.
+ */
+public final class CategoryTypes {
+
+	/** How far up the hierarchy votes are collected */
+	public static final int LEVELS = 3;
+	/** Votes a page needs for a type */
+	public static final int THRESHOLD = 3;
+
+	/** File the category graph of the English wikipedia is read from (see Parser, option -g) */
+	public static final String GRAPH_FILE = "categoryGraph.txt";
+	/** File the category graph of the Dutch wikipedia is read from (see Parser, option -g) */
+	public static final String DUTCH_GRAPH_FILE = "categoryGraph_nl.txt";
+
+	private static final String[] TYPES = {"PER", "ORG", "LOC", "MISC"};
+	private static Logger logger = Logger.getLogger(CategoryTypes.class);
+
+	private final CategoryGraph graph;
+	private final CategoryMatcher matcher;
+	private final int[] votes; // TYPES.length per category
+
+	/** Constructor, works out the votes of all categories
+	 *
+	 * @param graph the categories and their parents
+	 * @param matcher the rules for the types of category names
+	 */
+	public CategoryTypes(CategoryGraph graph, CategoryMatcher matcher) {
+		this.graph = graph;
+		this.matcher = matcher;
+		int[] own = new int[TYPES.length * graph.size()];
+		for(int id = 0; id < graph.size(); ++id) {
+			int type = typeIndex(matcher.match(graph.name(id)));
+			if(type >= 0) {
+				own[id * TYPES.length + type] = 1;
+			}
+		}
+		votes = graph.propagate(own, TYPES.length, LEVELS);
+	}
+
+	/** Reads a category graph and works out its votes
+	 *
+	 * @return the votes, or null if the file does not exist or cannot be read
+	 */
+	public static CategoryTypes load(File graphFile, CategoryMatcher matcher) {
+		CategoryGraph graph = loadGraph(graphFile);
+		return graph == null ? null : new CategoryTypes(graph, matcher);
+	}
+
+	/** Reads a category graph. Without one, types are found by fetching category pages, which is
+	 * far slower, so that is logged as a warning.
+	 *
+	 * @return the graph, or null if the file does not exist or cannot be read
+	 */
+	public static CategoryGraph loadGraph(File graphFile) {
+		if(!graphFile.exists()) {
+			logger.warn("No category graph in " + graphFile + ", category pages are fetched instead" +
+					" (write one with Parser -g)");
+			return null;
+		}
+		try {
+			long start = System.currentTimeMillis();
+			CategoryGraph graph = CategoryGraph.read(graphFile);
+			logger.info("Read " + graph.size() + " categories with " + graph.getEdgeCount() +
+					" parents in " + (System.currentTimeMillis() - start) + " ms");
+			return graph;
+		} catch (IOException e) {
+			logger.warn("Could not read category graph " + graphFile + ", category pages are fetched instead", e);
+			return null;
+		}
+	}
+
+	/** Finds the entity type of a page by its categories
+	 *
+	 * @param categories the names of the categories of the page
+	 * @return PER, ORG, LOC or MISC, or null if no type wins
+	 */
+	public String typeOf(Collection<String> categories) {
+		int[] counts = new int[TYPES.length];
+		for(String category : categories) {
+			int id = graph.id(category);
+			if(id >= 0) {
+				for(int k = 0; k < TYPES.length; ++k) {
+					counts[k] += votes[id * TYPES.length + k];
+				}
+			}
+			else {
+				int type = typeIndex(matcher.match(category)); // a category without page
+				if(type >= 0) {
+					++counts[type];
+				}
+			}
+		}
+		for(int k = 0; k < TYPES.length; ++k) {
+			boolean wins = counts[k] >= THRESHOLD;
+			for(int other = 0; other < TYPES.length && wins; ++other) {
+				wins = other == k || counts[k] > counts[other];
+			}
+			if(wins) {
+				return TYPES[k];
+			}
+		}
+		return null;
+	}
+
+	/* The vote of the entity type of a rule, or -1 for none */
+	private static int typeIndex(String type) {
+		if(type == null) {
+			return -1;
+		}
+		if(type.equalsIgnoreCase("PERSON")) {
+			return 0;
+		}
+		if(type.equalsIgnoreCase("ORGANIZATION")) {
+			return 1;
+		}
+		if(type.equalsIgnoreCase("GPE") || type.equalsIgnoreCase("FACILITY") || type.equalsIgnoreCase("LOCATION")) {
+			return 2;
+		}
+		return 3;
+	}
+}
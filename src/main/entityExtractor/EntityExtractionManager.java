@@ -6,14 +6,21 @@
  */
 package entityExtractor;
 
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.ConcurrentMap;
 
+import model.CategoryGraph;
+import model.Language;
+
+import org.apache.log4j.Logger;
+
+import wikipediaparser.CategoryMatcher;
 import wikipediaparser.CategoryParser;
 
 import com.google.common.collect.MapMaker;
-import com.google.common.collect.Maps;
 
+import dao.ConnectionPool;
 import dao.Dao;
 
 /**
@@ -23,12 +30,35 @@ import dao.Dao;
  */
 public class EntityExtractionManager {
 
+	/** File the pages done are saved in, to resume from */
+	public static final String CHECKPOINT_FILE = "extraction.checkpoint";
+	
+	private static Logger logger = Logger.getLogger(EntityExtractionManager.class);
+
 	/**
-	 * @param args
+	 * Possible arguments are:
+	 * -r resume from the checkpoint of a run that did not finish, instead of starting over
 	 */
-	public static void main(String[] args) {
+	public static void main(String[] args) throws InterruptedException {
 		
 		final int NR_THREADS = 8;
+		boolean resume = false;
+		for(int i = 0; i < args.length; ++i) {
+			if (args[i].equalsIgnoreCase("-r")) {
+				resume = true;
+			}
+		}
+		
+		File checkpointFile = new File(CHECKPOINT_FILE);
+		ExtractionCheckpoint checkpoint = new ExtractionCheckpoint(checkpointFile);
+		if(resume) {
+			try {
+				checkpoint = ExtractionCheckpoint.resume(checkpointFile);
+			} catch (IOException e) {
+				logger.fatal("Could not read checkpoint " + checkpointFile, e);
+				System.exit(1);
+			}
+		}
 
 		ConcurrentMap<String,String> cachedPageTypes = new MapMaker()
 		.concurrencyLevel(NR_THREADS)
@@ -38,34 +68,56 @@ public class EntityExtractionManager {
 		.makeMap();
 		//Maps.newHashMapWithExpectedSize(5000000);
 		
-		Map<String,String> categoryMap = Maps.newHashMap();
 		CategoryParser parser = new CategoryParser("C:\\eclipse\\workspace\\Scriptie\\categoryClasses.txt");
-		categoryMap = parser.parse();
+		CategoryMatcher categoryMatcher = parser.parseMatcher(); // compiled once, for all threads
+		CategoryTypes categoryTypes = CategoryTypes.load(new File(CategoryTypes.GRAPH_FILE), categoryMatcher);
+		CategoryGraph dutchCategoryGraph = CategoryTypes.loadGraph(new File(CategoryTypes.DUTCH_GRAPH_FILE));
+		
+		// titles and nouns are looked up all the time, so all of them are read at once
+		Dao dao = new Dao();
+		dao.loadTitleDictionary(Language.DUTCH.abbreviation());
+		dao.loadTitleDictionary(Language.ENGLISH.abbreviation());
+		dao.loadNounDictionary();
+		// the threads take chunks of the pages that exist until all are done
+		ExtractionScheduler scheduler = ExtractionScheduler.forPages(dao, Language.DUTCH.abbreviation(), 3000, NR_THREADS,
+				checkpoint);
+		dao.close();
 
+		// each thread keeps a connection until it is done
+		ConnectionPool.getShared().reserve(NR_THREADS);
 		EntityExtractionThread eet[] = new EntityExtractionThread[NR_THREADS];
 
 		for(int i = 0; i < NR_THREADS; ++i) {
-			eet[i] = new EntityExtractionThread(categoryMap, i, NR_THREADS, cachedPageTypes);
+			eet[i] = new EntityExtractionThread(categoryMatcher, categoryTypes, dutchCategoryGraph, scheduler, i, cachedPageTypes);
 			eet[i].start();
-		}		
+		}
+		for(int i = 0; i < NR_THREADS; ++i) {
+			eet[i].join();
+		}
+		checkpoint.save();
 	}
 }
 
 /** Creates a new instance (new thread), and it's own version of EntityUtil, Dao, and ExtractEntities. 
  * This keeps everything atomic and allows for faster database processing (multiple connections). 
+ * The pages to extract are taken from a scheduler shared by all threads.
  *
  */
 class EntityExtractionThread extends Thread {
 	
-	Map<String,String> categoryMap;
+	CategoryMatcher categoryMatcher;
+	CategoryTypes categoryTypes;
+	CategoryGraph dutchCategoryGraph;
 	ConcurrentMap<String,String> cachedPageTypes;
+	ExtractionScheduler scheduler;
 	int threadNr;
-	int numberOfThreads;
 	
-	public EntityExtractionThread(Map<String,String> categoryMap, int threadNr, int numberOfThreads, ConcurrentMap<String,String> cachedPageTypes) {
-		this.categoryMap = categoryMap;
+	public EntityExtractionThread(CategoryMatcher categoryMatcher, CategoryTypes categoryTypes, CategoryGraph dutchCategoryGraph, ExtractionScheduler scheduler, int threadNr, ConcurrentMap<String,String> cachedPageTypes) {
+		this.categoryMatcher = categoryMatcher;
+		this.categoryTypes = categoryTypes;
+		this.dutchCategoryGraph = dutchCategoryGraph;
+		this.scheduler = scheduler;
 		this.threadNr = threadNr;
-		this.numberOfThreads = numberOfThreads;
 		this.cachedPageTypes = cachedPageTypes;
 	}
 	
@@ -73,10 +125,19 @@ class EntityExtractionThread extends Thread {
 	 * 
 	 */
 	public void run() {
-		EntityUtil util = new EntityUtil(new Dao(), categoryMap);
+		Dao dao = new Dao();
+		try {
+			EntityUtil util = new EntityUtil(dao, categoryMatcher);
+			util.setCategoryTypes(categoryTypes);
+			util.setDutchCategoryGraph(dutchCategoryGraph);
 
-		ExtractEntities entity = new ExtractEntities(util,3000,numberOfThreads,cachedPageTypes);
-		entity.executeFirstPass(threadNr);
+			ExtractEntities entity = new ExtractEntities(util,cachedPageTypes);
+			entity.executeFirstPass(scheduler, threadNr);
+		} finally {
+			dao.close();
+			PageCache.getShared().logStatistics();
+			scheduler.logStatistics();
+		}
 	}
 	
 }
@@ -12,6 +12,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
@@ -20,9 +24,14 @@ import java.util.regex.Pattern;
 
 import org.apache.log4j.*;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import model.CategoryGraph;
+import model.LanguageProfile;
 import model.Page;
 import model.Pair;
+import wikipediaparser.CategoryMatcher;
 import dao.Dao;
 import dao.IDao;
 
@@ -36,33 +45,55 @@ public class EntityUtil {
 	public static final String CHARSET = "UTF-8";
 	
 	private IDao dao;
+	private PageCache cache;
 	private static Logger logger = Logger.getLogger(EntityUtil.class);
 	private static int maxDepthLimit = 3;
+	private static int maxRedirects = 2;
+	private static final Page FAILED = new Page(); // a lookup that failed, which is not cached
 	private Pattern entityPattern;
 	private Pattern simpleEntityPattern;
-	private Pattern redirectPattern;
 	private Matcher entityMatcher;
-	private Matcher redirectMatcher;
 	private int countPER;
 	private int countORG;
 	private int countLOC;
 	private int countMISC;
 	private int depthLimit;
-	private Map<String,String> categoryMap;
+	private CategoryMatcher categoryMatcher;
+	private CategoryTypes categoryTypes;
+	private CategoryGraph dutchCategoryGraph;
 	private static int typeThreshold = 3;
 	
-	/** Constructor
+	/** Constructor, for an EntityUtil with the shared page cache
 	 * 
 	 * @param dao Dao instantiation
 	 * @param categoryMap map of categories with their type
 	 */
 	public EntityUtil(Dao dao, Map<String,String> categoryMap) {
+		this(dao, new CategoryMatcher(categoryMap), PageCache.getShared());
+	}
+	
+	/** Constructor, for an EntityUtil with the shared page cache
+	 * 
+	 * @param dao Dao instantiation
+	 * @param categoryMatcher matcher of categories with their type, which may be shared
+	 */
+	public EntityUtil(Dao dao, CategoryMatcher categoryMatcher) {
+		this(dao, categoryMatcher, PageCache.getShared());
+	}
+	
+	/** Constructor
+	 * 
+	 * @param dao where pages are read
+	 * @param categoryMatcher matcher of categories with their type, which may be shared
+	 * @param cache cache of the pages read, which may be shared with other EntityUtils
+	 */
+	public EntityUtil(IDao dao, CategoryMatcher categoryMatcher, PageCache cache) {
 		this.dao = dao;
+		this.cache = cache;
 		entityPattern = Pattern.compile("(?i)\\[\\[([-/\\(\\)a-z0-9_\\s]+?)(\\|[-/\\(\\)a-z0-9_\\s]+?)?\\]\\]");
 		simpleEntityPattern = Pattern.compile("(?i)\\[\\[([-/\\(\\)a-z0-9_\\s]+?)\\]\\]");
-		redirectPattern = Pattern.compile("#(REDIRECT|DOORVERWIJZING)\\s?\\[\\[([-\\(\\)a-zA-Z0-9_\\s]+?)\\]\\]");
 		depthLimit = 1;
-		this.categoryMap = categoryMap;
+		this.categoryMatcher = categoryMatcher;
 		countPER = 0;
 		countORG = 0;
 		countLOC = 0;
@@ -70,6 +101,26 @@ public class EntityUtil {
 	}
 	
 
+	/** Sets the votes of the categories, worked out from the category graph. From then on,
+	 * findType looks a page's categories up there instead of fetching their category pages.
+	 * 
+	 * @param categoryTypes the votes, which may be shared
+	 */
+	public void setCategoryTypes(CategoryTypes categoryTypes) {
+		this.categoryTypes = categoryTypes;
+	}
+	
+	/** Sets the category graph of the Dutch wikipedia. From then on, findDutchType climbs to the
+	 * parents of the Dutch categories in the graph instead of fetching their category pages. The
+	 * pages of the categories themselves are still fetched, for their links to English categories,
+	 * which the graph does not have.
+	 * 
+	 * @param dutchCategoryGraph the graph, which may be shared
+	 */
+	public void setDutchCategoryGraph(CategoryGraph dutchCategoryGraph) {
+		this.dutchCategoryGraph = dutchCategoryGraph;
+	}
+	
 	/** Removes all common nouns from a set of words
 	 * 
 	 * @param entities the words to check
@@ -77,10 +128,9 @@ public class EntityUtil {
 	public void removeCommonNouns(Set<String> entities) {
 		assert(entities != null);
 		
-		for( String s : entities) {
-			s.trim();
-			if(dao.selectNoun(s)) {
-				entities.remove(s);
+		for(Iterator<String> i = entities.iterator(); i.hasNext(); ) {
+			if(dao.selectNoun(i.next().trim())) {
+				i.remove();
 			}
 		}
 	}
@@ -90,10 +140,9 @@ public class EntityUtil {
 	 * @param Pages the pages to check
 	 */
 	public void removeCommonNounPages(Set<Page> Pages) {
-		//
-		for( Page p : Pages) {
-			if(dao.selectNoun(p.getTitle())) {
-				Pages.remove(p);
+		for(Iterator<Page> i = Pages.iterator(); i.hasNext(); ) {
+			if(dao.selectNoun(i.next().getTitle())) {
+				i.remove();
 			}
 		}
 	}
@@ -105,6 +154,18 @@ public class EntityUtil {
 	 * @return the page (with given id)
 	 */
 	public Page extractPageById(String langAbbrev, long id) {
+		Page page = cache.get(langAbbrev, id);
+		if(page == null) {
+			page = readPageById(langAbbrev, id);
+			if(page.getId() > 0) {
+				cache.put(langAbbrev, page);
+			}
+		}
+		return page;
+	}
+	
+	/* Reads a page by id from the Dao */
+	private Page readPageById(String langAbbrev, long id) {
 		Page currentPage = new Page();
 		ResultSet resultsPage = dao.retrievePage(langAbbrev, id);
 		ResultSet resultsCats = dao.retrieveCategoriesPerPage(langAbbrev, id);
@@ -120,6 +181,7 @@ public class EntityUtil {
 				currentPage.setEnglishLink(resultsPage.getString(4));
 				currentPage.setEntityType(resultsPage.getString(5));
 				currentPage.setDisambiguation(resultsPage.getBoolean(6));
+				Dao.readScannedFeatures(resultsPage, currentPage);
 				
 				//next Cats info
 				boolean moreRows = resultsCats.first(); //positions to the first line
@@ -149,9 +211,30 @@ public class EntityUtil {
 	 * @return the page (with given title)
 	 */
 	public Page extractPageByTitle(String langAbbrev, String title) {
+		Page page = title == null ? null : cache.get(langAbbrev, title);
+		if(page == null) {
+			page = extractPageByTitle(langAbbrev, title, maxRedirects);
+			if(page == FAILED) {
+				return null; // not cached, so it is tried again
+			}
+			if(title != null) {
+				cache.put(langAbbrev, title, page);
+			}
+		}
+		else if(page.getId() == 0) {
+			return null; // cached as not found
+		}
+		return page;
+	}
+	
+	/* Finds a page by title, following at most redirectsLeft redirects from the redirect table.
+	 * Returns null if there is no such page, and FAILED if the store could not be read. */
+	private Page extractPageByTitle(String langAbbrev, String title, int redirectsLeft) {
 		Page page = new Page();
 		ResultSet resultsPage = dao.retrievePage(langAbbrev, title);
-		assert(resultsPage != null);
+		if(resultsPage == null) {
+			return FAILED; // logged by the dao
+		}
 		
 		try {
 			//first Page info
@@ -163,6 +246,17 @@ public class EntityUtil {
 				page.setEnglishLink(resultsPage.getString(4));
 				page.setEntityType(resultsPage.getString(5));
 				page.setDisambiguation(resultsPage.getBoolean(6));
+				Dao.readScannedFeatures(resultsPage, page);
+			}
+			else if(redirectsLeft > 0) {
+				// redirects are not stored as pages, but in their own table
+				Map<String, String> targets = dao.retrieveRedirectTargets(langAbbrev, Collections.singletonList(title));
+				if(targets == null) {
+					return FAILED;
+				}
+				if(targets.containsKey(title)) {
+					return extractPageByTitle(langAbbrev, targets.get(title), redirectsLeft - 1);
+				}
 			}
 			else {
 				//logger.warn("No results for title " + title + " in language '"+langAbbrev+"'.");
@@ -170,16 +264,19 @@ public class EntityUtil {
 		} catch (SQLException e) {
 			logger.warn("Could not successfully grab results", e);
 			e.printStackTrace();
+			return FAILED;
 		} catch (Exception n) {
 			logger.warn("Could not convert InputStream to String", n);
 			n.printStackTrace();
+			return FAILED;
 		}
 		
-		assert(page.getId() > 0);
+		if(page.getId() == 0) {
+			return null;
+		}
 		ResultSet resultsCats = dao.retrieveCategoriesPerPage(langAbbrev, page.getId());
-		//assert(resultsCats != null);
 		if (resultsCats == null) {
-			return null;
+			return FAILED;
 		}
 		try {
 			//next Cats info
@@ -192,13 +289,80 @@ public class EntityUtil {
 		} catch(SQLException e) {
 			logger.warn("Could not successfully grab results", e);
 			e.printStackTrace();
+			return FAILED;
 		}
-		if(page.getId() == 0) {
+		return page;
+	}
+	
+	/** Finds pages from data source based on their titles, with a few queries for all of them
+	 * instead of some for each (see extractPageByTitle)
+	 * 
+	 * @param langAbbrev the pages' language, abbreviated (EN or NL)
+	 * @param titles page titles; null titles are skipped
+	 * @return the page found for each title that has one
+	 */
+	public Map<String, Page> extractPagesByTitle(String langAbbrev, Collection<String> titles) {
+		Map<String, Page> pages = Maps.newHashMap();
+		Set<String> wanted = Sets.newLinkedHashSet();
+		for(String title : titles) {
+			if(title == null) {
+				continue;
+			}
+			Page page = cache.get(langAbbrev, title);
+			if(page == null) {
+				wanted.add(title);
+			}
+			else if(page.getId() > 0) {
+				pages.put(title, page);
+			}
+		}
+		if(!wanted.isEmpty()) {
+			Map<String, Page> read = extractPagesByTitle(langAbbrev, wanted, maxRedirects);
+			if(read == null) {
+				return pages; // not cached, so they are tried again
+			}
+			for(String title : wanted) {
+				cache.put(langAbbrev, title, read.get(title));
+			}
+			pages.putAll(read);
+		}
+		return pages;
+	}
+	
+	/* Finds pages by title, following at most redirectsLeft redirects from the redirect table.
+	 * Returns null if the store could not be read. */
+	private Map<String, Page> extractPagesByTitle(String langAbbrev, Collection<String> titles, int redirectsLeft) {
+		Map<String, Page> found = dao.retrievePagesByTitle(langAbbrev, titles);
+		if(found == null) {
 			return null;
 		}
-		else {
-			return page;
+		Map<String, Page> pages = Maps.newHashMap(found);
+		if(redirectsLeft > 0 && pages.size() < titles.size()) {
+			List<String> missing = Lists.newArrayList();
+			for(String title : titles) {
+				if(!pages.containsKey(title)) {
+					missing.add(title);
+				}
+			}
+			Map<String, String> targets = dao.retrieveRedirectTargets(langAbbrev, missing);
+			if(targets == null) {
+				return null;
+			}
+			if(!targets.isEmpty()) {
+				Map<String, Page> redirected = extractPagesByTitle(langAbbrev, Sets.newHashSet(targets.values()),
+						redirectsLeft - 1);
+				if(redirected == null) {
+					return null;
+				}
+				for(Map.Entry<String, String> target : targets.entrySet()) {
+					Page page = redirected.get(target.getValue());
+					if(page != null) {
+						pages.put(target.getKey(), page);
+					}
+				}
+			}
 		}
+		return pages;
 	}
 	
 	/** Finds (matches) entities in a given page text
@@ -231,6 +395,15 @@ public class EntityUtil {
 		return extractPageByTitle("NL", entity);
 	}
 	
+	/** Finds the Dutch articles of many entities at once
+	 * 
+	 * @param entities the names (titles) of the entities
+	 * @return the page found for each entity that has one
+	 */
+	public Map<String, Page> findArticles(Collection<String> entities) {
+		return extractPagesByTitle("NL", entities);
+	}
+	
 	/** Finds an English page equivalent to a given Dutch page
 	 * NB: useswikipedia provided inter-wiki link.
 	 * 
@@ -266,11 +439,10 @@ public class EntityUtil {
 	 */
 	public Page findAlternateEnglishEquivalent(Page page) {
 		
-		redirectMatcher = redirectPattern.matcher(page.getBody());
+		String redirectTarget = page.getRedirectTarget();
 		
-		if(redirectMatcher.find()) {
-			// Extract page by group 1
-			Page nlRedirect = extractPageByTitle("NL",redirectMatcher.group(1));
+		if(redirectTarget != null && redirectTarget.length() > 0) {
+			Page nlRedirect = extractPageByTitle("NL",redirectTarget);
 			if(nlRedirect == null) {
 				return null;
 			}
@@ -282,13 +454,14 @@ public class EntityUtil {
 			return enByRedirect;
 		}
 		
-		Pattern boldPattern = Pattern.compile("'''(.+?)'''");
-		
-		Matcher boldMatcher = boldPattern.matcher(page.getBody());
+		// the bold names of the introduction, found when the page was parsed
 		Page enPage = null;
 		
-		while(boldMatcher.find() && enPage == null) {
-			enPage = extractPageByTitle("EN",boldMatcher.group(1));
+		for(String alias : page.getAliases()) {
+			enPage = extractPageByTitle("EN",alias);
+			if(enPage != null) {
+				break;
+			}
 		}
 				
 		return enPage;
@@ -372,6 +545,10 @@ public class EntityUtil {
 			return cachedPageTypes.get(p.getTitle().toLowerCase());
 		}
 		
+		if(categoryTypes != null) {
+			return categoryTypes.typeOf(p.getCategories()); // the hierarchy is already walked
+		}
+		
 		if(setDepth) {
 			depthLimit = 1;
 		}
@@ -386,11 +563,8 @@ public class EntityUtil {
 			countMISC = 0;
 		}
 		
-		Set<String> keys = categoryMap.keySet();
 		String type = "";
 
-
-		// Also: keys is empty!!! CategoryMap is empty!!!
 		for(String cat : p.getCategories()) {
 			if(cachedPageTypes.containsKey(cat.toLowerCase())){
 				logger.debug("Hit!");
@@ -411,30 +585,19 @@ public class EntityUtil {
 				}
 			}
 			else {
-				for(String key : keys) {
-					String originalKey = key;
-					key.trim();
-					if(!key.contains("^")) {
-						key = ".*" + key;
+				type = categoryMatcher.match(cat);
+				if(type != null) {
+					if(type.equalsIgnoreCase("PERSON")){
+						++countPER;
 					}
-					if(!key.contains("$"))
-						key = key.concat(".*");
-					
-					if(cat.matches(key)){
-						type = categoryMap.get(originalKey);
-						if(type != null && type.equalsIgnoreCase("PERSON")){
-							++countPER;
-						}
-						else if(type != null && type.equalsIgnoreCase("ORGANIZATION")){
-							++countORG;
-						}
-						else if(type != null && (type.equalsIgnoreCase("GPE") || (type.equalsIgnoreCase("FACILITY")))){
-							++countLOC;
-						}
-						else {
-							++countMISC;
-						}
-						break;
+					else if(type.equalsIgnoreCase("ORGANIZATION")){
+						++countORG;
+					}
+					else if(type.equalsIgnoreCase("GPE") || (type.equalsIgnoreCase("FACILITY"))){
+						++countLOC;
+					}
+					else {
+						++countMISC;
 					}
 				}
 			}
@@ -845,9 +1008,11 @@ public class EntityUtil {
 	 */
 	public boolean isRedirect(Page currentPage) {
 		
-		redirectMatcher = redirectPattern.matcher(currentPage.getBody());
-		
-		if(redirectMatcher.find()) {
+		if(currentPage.isRedirect()) {
+			return true;
+		}
+		// pages stored before redirects got their own table
+		if(LanguageProfile.findRedirectTarget(currentPage.getBody()) != null) {
 			
 			return true;
 		}
@@ -866,11 +1031,15 @@ public class EntityUtil {
 		
 		assert(currentPage != null);
 		
-		redirectMatcher = redirectPattern.matcher(currentPage.getBody());
+		if(currentPage.getRedirectTarget() != null && currentPage.getRedirectTarget().length() > 0) {
+			return extractPageByTitle(langAbbrev, currentPage.getRedirectTarget());
+		}
+		
+		String redirectTarget = LanguageProfile.findRedirectTarget(currentPage.getBody());
 		
-		if(redirectMatcher.find()) {
+		if(redirectTarget != null) {
 			
-			return extractPageByTitle(langAbbrev,redirectMatcher.group(2));
+			return extractPageByTitle(langAbbrev,redirectTarget);
 		}
 		
 		return null;
@@ -932,15 +1101,26 @@ public class EntityUtil {
 				insufficientCategories = false; // exit loop
 			}
 			else {
-				// Clear the workingSet to refill at a higher level.
-				workingSet.clear();
-				
-				// For each category page in the dutchCats collection, find the list of supercategories
-				// For each of these, add its categories to the workingset.
-				for(Page dutchCategory : dutchCats) {
-					for(Page workingPage : findSuperCategories(dutchCategory)) {
-						if(workingPage != null) {
-							workingSet.addAll(workingPage.getCategories());
+				if(dutchCategoryGraph != null) {
+					// Refill the workingSet with the parents of its categories, from the graph.
+					Set<String> parents = Sets.newHashSet();
+					for(String cat : workingSet) {
+						parents.addAll(dutchCategoryGraph.parents(cat));
+					}
+					workingSet.clear();
+					workingSet.addAll(parents);
+				}
+				else {
+					// Clear the workingSet to refill at a higher level.
+					workingSet.clear();
+					
+					// For each category page in the dutchCats collection, find the list of supercategories
+					// For each of these, add its categories to the workingset.
+					for(Page dutchCategory : dutchCats) {
+						for(Page workingPage : findSuperCategories(dutchCategory)) {
+							if(workingPage != null) {
+								workingSet.addAll(workingPage.getCategories());
+							}
 						}
 					}
 				}
@@ -6,6 +6,8 @@
  */
 package entityExtractor;
 
+import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
@@ -14,6 +16,7 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 
+import wikipediaparser.CategoryMatcher;
 import wikipediaparser.CategoryParser;
 
 import dao.Dao;
@@ -23,6 +26,7 @@ import model.Language;
 import model.Page;
 import model.Pair;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.collect.MapMaker;
@@ -46,18 +50,19 @@ public class ExtractEntities {
 	private Map<String,Pair<Page,Page>> titlePageMap;
 	private EntityUtil util;
 	
-	private static int startId;
-	private int numberOfThreads;
-	private int extractionCounter;
-	
 	private static Logger logger = Logger.getLogger(ExtractEntities.class);
 	
 	public static void main(String args[]) {
-		Map<String,String> categoryMap = Maps.newHashMap();
 		CategoryParser parser = new CategoryParser("C:\\eclipse\\workspace\\Scriptie\\categoryClasses.txt");
-		categoryMap = parser.parse();
+		CategoryMatcher categoryMatcher = parser.parseMatcher();
 
-		EntityUtil util = new EntityUtil(new Dao(), categoryMap);
+		Dao dao = new Dao();
+		dao.loadTitleDictionary(Language.DUTCH.abbreviation());
+		dao.loadTitleDictionary(Language.ENGLISH.abbreviation());
+		dao.loadNounDictionary();
+		EntityUtil util = new EntityUtil(dao, categoryMatcher);
+		util.setCategoryTypes(CategoryTypes.load(new File(CategoryTypes.GRAPH_FILE), categoryMatcher));
+		util.setDutchCategoryGraph(CategoryTypes.loadGraph(new File(CategoryTypes.DUTCH_GRAPH_FILE)));
 
 		ConcurrentMap<String,String> cachedPTypes = new MapMaker()
 			.concurrencyLevel(1)
@@ -66,215 +71,210 @@ public class ExtractEntities {
 			.initialCapacity(1000000)
 			.makeMap();
 			//Maps.newHashMapWithExpectedSize(1000000);
-		ExtractEntities entity = new ExtractEntities(util,1500,1,cachedPTypes);
-		entity.executeFirstPass(0);
-		
+		ExtractEntities entity = new ExtractEntities(util,cachedPTypes);
+		entity.executeFirstPass(ExtractionScheduler.forPages(dao, Language.DUTCH.abbreviation(), 1500, 1), 0);
+		dao.close();
 	}
 	
 	/** Constructor.
 	 * 
 	 * @param util utility class
+	 * @param cachedPageTypes types found so far, shared by all workers
 	 */
-	public ExtractEntities(EntityUtil util, int startIdIn, int numberOfThreads, ConcurrentMap<String,String> cachedPageTypes) {
+	public ExtractEntities(EntityUtil util, ConcurrentMap<String,String> cachedPageTypes) {
 		this.util = util;
 		titlePageMap = Maps.newHashMap();
 		nlArticles = Sets.newHashSet();
 		enArticles = Sets.newHashSet();
 		this.cachedPageTypes = cachedPageTypes;
-		this.numberOfThreads = numberOfThreads;
 		PropertyConfigurator.configure("log4j.properties");
 
 		//logger.setLevel(Level.ERROR);
-		startId = startIdIn;
 	}
 	
-	/** Gets the next id to look up (sets extractionCounter)
+	/** Runs the entity extractor, orchestrating all necessary components, on the pages the
+	 * scheduler deals out to a worker
 	 * 
-	 * @param threadNr the thread's number
+	 * @param scheduler the scheduler of the pages of all workers
+	 * @param worker the number of the worker
 	 */
-	private void iterateId(int threadNr) {
-		while(++extractionCounter % numberOfThreads != threadNr) {} //for sharing between threads	
+	public void executeFirstPass(ExtractionScheduler scheduler, int worker) {
+		for(long[] chunk = scheduler.next(worker); chunk != null; chunk = scheduler.next(worker)) {
+			for(long id : chunk) {
+				executeFirstPass(id);
+			}
+		}
 	}
 	
-	/** Runs the entity extractor, orchestrating all necessary components
-	 * 
-	 */
-	public void executeFirstPass(int threadNr) {
-		extractionCounter = startId;
-
-		iterateId(threadNr);
+	/* Extracts and tags the entities of a page */
+	private void executeFirstPass(long id) {
 		
+		currentPage = util.extractPageById(Language.DUTCH.abbreviation(), id);
 		
-		while(extractionCounter <= 329020) { //while still more Dutch articles
-			
-			currentPage = util.extractPageById(Language.DUTCH.abbreviation(), extractionCounter);
-			
-			if(currentPage == null || currentPage.getBody() == null || currentPage.getTitle() == null) {
-				logger.info("ExtractEntities: extracted id unavailable:"+extractionCounter);
-				iterateId(threadNr);
-				continue;
-			}
-			
-			logger.info("ExtractEntities: extracted id available:"+extractionCounter);
+		if(currentPage == null || currentPage.getBody() == null || currentPage.getTitle() == null) {
+			logger.info("ExtractEntities: extracted id unavailable:"+id);
+			return;
+		}
+		
+		logger.info("ExtractEntities: extracted id available:"+id);
 
-			if(currentPage.isDisambiguation()) {
-				logger.info("ExtractEntities: page with id "+extractionCounter+" is disambiguation page. Skipping!");
-				iterateId(threadNr);
-				continue;
+		if(currentPage.isDisambiguation()) {
+			logger.info("ExtractEntities: page with id "+id+" is disambiguation page. Skipping!");
+			return;
+		}
+		
+		if(util.isRedirect(currentPage))
+		{
+			logger.info("ExtractEntities: page with id "+id+" is redirect. Skipping!");
+			return;
+		}
+		
+		/*TODO:
+		 * find all entities in currentPage, save stripped of [[|]]
+		 *compare EN and NL entities if applicable, 
+		 *look for matches, save these in enEntitiesFromLink 
+		
+		if(currentPage.englishLink != null && !currentPage.englishLink.equals("")) {
+			Page page = util.extractPageByTitle("EN", currentPage.englishLink);
+			if(page != null) {
+				enEntities = util.matchEntities(page);	// TODO: We do nothing with these entities?
+				util.removeCommonNouns(enEntities);		// TODO: We do nothing with these entities?
 			}
-			
-			if(util.isRedirect(currentPage))
-			{
-				logger.info("ExtractEntities: page with id "+extractionCounter+" is redirect. Skipping!");
-				iterateId(threadNr);
-				continue;
+		}
+		*/
+		
+		
+		nlEntities = util.matchEntities(currentPage); 
+		
+		List<String> linked = Lists.newArrayList();
+		for(String s : nlEntities){ //for all Dutch entities, find original linked Dutch Article
+			if(s != null && !cachedPageTypes.containsKey(s.toLowerCase())) {
+				linked.add(s);
 			}
-			
-			/*TODO:
-			 * find all entities in currentPage, save stripped of [[|]]
-			 *compare EN and NL entities if applicable, 
-			 *look for matches, save these in enEntitiesFromLink 
-			
-			if(currentPage.englishLink != null && !currentPage.englishLink.equals("")) {
-				Page page = util.extractPageByTitle("EN", currentPage.englishLink);
-				if(page != null) {
-					enEntities = util.matchEntities(page);	// TODO: We do nothing with these entities?
-					util.removeCommonNouns(enEntities);		// TODO: We do nothing with these entities?
-				}
+			else if(s != null) {
+				logger.debug("Hit!");
 			}
-			*/
-			
-			
-			nlEntities = util.matchEntities(currentPage); 
-			
-			for(String s : nlEntities){ //for all Dutch entities, find original linked Dutch Article
-				if(s != null && !cachedPageTypes.containsKey(s.toLowerCase())) {
-					nlArticles.add(util.findArticle(s)); 
-				}
-				else if(s != null) {
-					logger.debug("Hit!");
-				}
+		}
+		Map<String, Page> linkedArticles = util.findArticles(linked); // in a few queries
+		for(String s : linked) {
+			nlArticles.add(linkedArticles.get(s));
+		}
+		
+		/*for all Dutch articles, try to find English equivalent*/
+		for(Page p : nlArticles) { 
+			if(p == null) {
+				continue;
 			}
-			
-			/*for all Dutch articles, try to find English equivalent*/
-			for(Page p : nlArticles) { 
+			if(util.isRedirect(p)) {
+				p = util.followRedirect(p, "NL");
+				
 				if(p == null) {
 					continue;
 				}
-				if(util.isRedirect(p)) {
-					p = util.followRedirect(p, "NL");
-					
-					if(p == null) {
-						continue;
-					}
+			}
+			
+			if(!p.isDisambiguation()) { // Don't worry about disambiguation pages.
+				Page enPage = util.findEnglishEquivalent(p);
+				if(enPage != null) {
+					/* We found an English article by following an "en:" link directly from the dutch article
+					 or by retrieving an English article with precisely the same name. */
+					enArticles.add(enPage);
+					titlePageMap.put(p.getTitle().toLowerCase(), new Pair<Page,Page>(p,enPage));
 				}
-				
-				if(!p.isDisambiguation()) { // Don't worry about disambiguation pages.
-					Page enPage = util.findEnglishEquivalent(p);
+				else {
+					enPage = util.findAlternateEnglishEquivalent(p);
 					if(enPage != null) {
-						/* We found an English article by following an "en:" link directly from the dutch article
-						 or by retrieving an English article with precisely the same name. */
+						/* We found an English article by fetching an article name from the
+						 '''bolded''' words at the start of the article.
+						OR from following a #REDIRECT directive. */
 						enArticles.add(enPage);
 						titlePageMap.put(p.getTitle().toLowerCase(), new Pair<Page,Page>(p,enPage));
 					}
 					else {
-						enPage = util.findAlternateEnglishEquivalent(p);
-						if(enPage != null) {
-							/* We found an English article by fetching an article name from the
-							 '''bolded''' words at the start of the article.
-							OR from following a #REDIRECT directive. */
-							enArticles.add(enPage);
-							titlePageMap.put(p.getTitle().toLowerCase(), new Pair<Page,Page>(p,enPage));
-						}
-						else {
-							// No English articles.
-							titlePageMap.put(p.getTitle().toLowerCase(), new Pair<Page,Page>(p,null));
-						}
-					}	
-				}
-				else {
-					// Disambiguation page? Then we don't need the English equivalent, just use dutch cats
-					titlePageMap.put(p.getTitle(), new Pair<Page,Page>(p,null));
-				}
+						// No English articles.
+						titlePageMap.put(p.getTitle().toLowerCase(), new Pair<Page,Page>(p,null));
+					}
+				}	
+			}
+			else {
+				// Disambiguation page? Then we don't need the English equivalent, just use dutch cats
+				titlePageMap.put(p.getTitle(), new Pair<Page,Page>(p,null));
 			}
+		}
 
-			util.removeCommonNounPages(enArticles);
-			// Remove common nouns from the list of entities
-			
-			//for each English article, check if entityType already exists
-			//otherwise, try to find entity type and put it in nlArticles too.
-			
-			for(Map.Entry<String, Pair<Page,Page>> entry: titlePageMap.entrySet()) {
-				if(entry.getValue().getSecond() == null) {
-					if(entry.getValue().getFirst() != null && entry.getValue().getFirst().isDisambiguation()) {
-						entry.getValue().getFirst().setEntityType(util.findDisambiguationType(entry.getValue().getFirst(), 0, cachedPageTypes));
-					}
-					else if(entry.getValue().getFirst() != null){
-						entry.getValue().getFirst().setEntityType(util.findDutchType(entry.getValue().getFirst(), cachedPageTypes));
-					}
+		util.removeCommonNounPages(enArticles);
+		// Remove common nouns from the list of entities
+		
+		//for each English article, check if entityType already exists
+		//otherwise, try to find entity type and put it in nlArticles too.
+		
+		for(Map.Entry<String, Pair<Page,Page>> entry: titlePageMap.entrySet()) {
+			if(entry.getValue().getSecond() == null) {
+				if(entry.getValue().getFirst() != null && entry.getValue().getFirst().isDisambiguation()) {
+					entry.getValue().getFirst().setEntityType(util.findDisambiguationType(entry.getValue().getFirst(), 0, cachedPageTypes));
 				}
-				else if(entry.getValue().getSecond() != null && 
-						entry.getValue().getFirst() != null && 
-						(entry.getValue().getSecond().getEntityType() == null ||
-						 entry.getValue().getSecond().getEntityType().equals(""))) {
-					
-					String entityType = util.findType(entry.getValue().getSecond(), 0, true, cachedPageTypes);
-					entry.getValue().getFirst().setEntityType(entityType);
-					entry.getValue().getSecond().setEntityType(entityType);
+				else if(entry.getValue().getFirst() != null){
+					entry.getValue().getFirst().setEntityType(util.findDutchType(entry.getValue().getFirst(), cachedPageTypes));
 				}
+			}
+			else if(entry.getValue().getSecond() != null && 
+					entry.getValue().getFirst() != null && 
+					(entry.getValue().getSecond().getEntityType() == null ||
+					 entry.getValue().getSecond().getEntityType().equals(""))) {
 				
-				if( entry.getValue().getSecond() != null &&
-					entry.getValue().getSecond().getEntityType() != null) {
-				//	synchronized(cachedPageTypes) {
-						cachedPageTypes.put(entry.getValue().getSecond().getTitle().toLowerCase(), entry.getValue().getSecond().getEntityType());
-						logger.debug("Added # " + cachedPageTypes.size());
-				//	}
-				}
-				if( entry.getValue().getFirst() != null &&
-					entry.getValue().getFirst().getEntityType() != null) {
-				//	synchronized(cachedPageTypes) {
-						cachedPageTypes.put(entry.getValue().getFirst().getTitle().toLowerCase(), entry.getValue().getFirst().getEntityType());
-						logger.debug("Added # " + cachedPageTypes.size());
-				//	}
-				}
+				String entityType = util.findType(entry.getValue().getSecond(), 0, true, cachedPageTypes);
+				entry.getValue().getFirst().setEntityType(entityType);
+				entry.getValue().getSecond().setEntityType(entityType);
 			}
 			
-			
-			util.insertTypesIntoText(currentPage, titlePageMap, cachedPageTypes); 
-			
-			util.matchRecurringEntities(currentPage, titlePageMap, cachedPageTypes); 
-			util.save(currentPage, titlePageMap); 
-			
-			titlePageMap.clear();
-			nlEntities.clear();
-			nlArticles.clear();
-			enArticles.clear();
-			
-			iterateId(threadNr);
+			if( entry.getValue().getSecond() != null &&
+				entry.getValue().getSecond().getEntityType() != null) {
+			//	synchronized(cachedPageTypes) {
+					cachedPageTypes.put(entry.getValue().getSecond().getTitle().toLowerCase(), entry.getValue().getSecond().getEntityType());
+					logger.debug("Added # " + cachedPageTypes.size());
+			//	}
+			}
+			if( entry.getValue().getFirst() != null &&
+				entry.getValue().getFirst().getEntityType() != null) {
+			//	synchronized(cachedPageTypes) {
+					cachedPageTypes.put(entry.getValue().getFirst().getTitle().toLowerCase(), entry.getValue().getFirst().getEntityType());
+					logger.debug("Added # " + cachedPageTypes.size());
+			//	}
+			}
 		}
+		
+		
+		util.insertTypesIntoText(currentPage, titlePageMap, cachedPageTypes); 
+		
+		util.matchRecurringEntities(currentPage, titlePageMap, cachedPageTypes); 
+		util.save(currentPage, titlePageMap); 
+		
+		titlePageMap.clear();
+		nlEntities.clear();
+		nlArticles.clear();
+		enArticles.clear();
 	}
 	
-	/** Looks for missed entities by using n-grams
+	/** Looks for missed entities by using n-grams, in the pages the scheduler deals out to a worker
 	 * 
+	 * @param scheduler the scheduler of the pages of all workers
+	 * @param worker the number of the worker
 	 */
-	public void executeSecondPass() {
-		
-		extractionCounter = startId;
+	public void executeSecondPass(ExtractionScheduler scheduler, int worker) {
+		for(long[] chunk = scheduler.next(worker); chunk != null; chunk = scheduler.next(worker)) {
+			for(long id : chunk) {
+				currentPage = util.extractPageById(Language.DUTCH.abbreviation(), id);
 
-		while(extractionCounter <= 329020) { //while still more Dutch articles
+				//first check for more entities using nGrams
+				Set<String> twoGramEntities = util.findEntitiesUsingNGrams(currentPage, 2);
+				util.processNGrams(twoGramEntities, currentPage);
 
-			currentPage = util.extractPageById(Language.DUTCH.abbreviation(), extractionCounter);
+				Set<String> threeGramEntities = util.findEntitiesUsingNGrams(currentPage, 3);
+				util.processNGrams(threeGramEntities, currentPage);
 
-			//first check for more entities using nGrams
-			Set<String> twoGramEntities = util.findEntitiesUsingNGrams(currentPage, 2);
-			util.processNGrams(twoGramEntities, currentPage);
-			
-			Set<String> threeGramEntities = util.findEntitiesUsingNGrams(currentPage, 3);
-			util.processNGrams(threeGramEntities, currentPage);
-			
-			Set<String> fourGramEntities = util.findEntitiesUsingNGrams(currentPage, 4);
-			util.processNGrams(fourGramEntities, currentPage);
-			
+				Set<String> fourGramEntities = util.findEntitiesUsingNGrams(currentPage, 4);
+				util.processNGrams(fourGramEntities, currentPage);
+			}
 		}
 	}
 	
@@ -0,0 +1,143 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.log4j.Logger;
+
+/** The ids of the pages an extraction pass is done with, saved to a file every so often, so that
+ * a pass that dies can be resumed where it was.
+ *
+ * The ids are kept in a bitmap, and saved as the ranges of consecutive ids done: as pages are
+ * done in chunks, those are few. The file is written next to the old one and then put in its
+ * place, so a crash while saving leaves the old checkpoint. Pages are done when their results
+ * are stored, and a page that was being extracted during a crash is extracted again.
+ */
+public final class ExtractionCheckpoint {
+
+	/** Time between saves, in milliseconds */
+	public static final long SAVE_INTERVAL = 60 * 1000;
+
+	private static final int MAGIC = 0x45584350; // "EXCP"
+	private static Logger logger = Logger.getLogger(ExtractionCheckpoint.class);
+
+	private final File file;
+	private final BitSet done = new BitSet();
+	private long lastSave = System.currentTimeMillis();
+
+	/** Constructor, for a checkpoint with no pages done
+	 *
+	 * @param file where the checkpoint is saved
+	 */
+	public ExtractionCheckpoint(File file) {
+		this.file = file;
+	}
+
+	/** Reads the checkpoint saved in a file, to resume from
+	 *
+	 * @param file where the checkpoint is saved
+	 * @return the checkpoint, with no pages done if none was saved
+	 */
+	public static ExtractionCheckpoint resume(File file) throws IOException {
+		ExtractionCheckpoint checkpoint = new ExtractionCheckpoint(file);
+		if(file.exists()) {
+			checkpoint.read(file);
+		}
+		else if(temporary(file).exists()) {
+			try {
+				checkpoint.read(temporary(file)); // a crash between delete and rename
+			} catch (IOException e) {
+				logger.warn("Could not read checkpoint, starting over", e); // or while writing the first
+				checkpoint.done.clear();
+			}
+		}
+		logger.info("Resuming with " + checkpoint.getDoneCount() + " pages done");
+		return checkpoint;
+	}
+
+	private void read(File saved) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(saved)));
+		try {
+			if(in.readInt() != MAGIC) {
+				throw new IOException(saved + " is no checkpoint");
+			}
+			for(int ranges = in.readInt(); ranges > 0; --ranges) {
+				int from = in.readInt();
+				done.set(from, in.readInt());
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Checks whether a page is done */
+	public synchronized boolean isDone(long id) {
+		return done.get(index(id));
+	}
+
+	/** Gets the number of pages done */
+	public synchronized int getDoneCount() {
+		return done.cardinality();
+	}
+
+	/** Marks pages done, and saves the checkpoint if it is time */
+	public synchronized void markDone(long[] ids) {
+		for(long id : ids) {
+			done.set(index(id));
+		}
+		if(System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) {
+			save();
+		}
+	}
+
+	/** Saves the checkpoint. Failures are logged: the extraction goes on, and the next save may
+	 * work.
+	 */
+	public synchronized void save() {
+		lastSave = System.currentTimeMillis();
+		File next = temporary(file);
+		try {
+			FileOutputStream stream = new FileOutputStream(next);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			try {
+				out.writeInt(MAGIC);
+				int ranges = 0;
+				for(int from = done.nextSetBit(0); from >= 0; from = done.nextSetBit(done.nextClearBit(from))) {
+					++ranges;
+				}
+				out.writeInt(ranges);
+				for(int from = done.nextSetBit(0); from >= 0; from = done.nextSetBit(done.nextClearBit(from))) {
+					out.writeInt(from);
+					out.writeInt(done.nextClearBit(from));
+				}
+				out.flush();
+				stream.getFD().sync();
+			} finally {
+				out.close();
+			}
+			if(file.exists() && !file.delete() || !next.renameTo(file)) {
+				throw new IOException("Could not replace " + file);
+			}
+			logger.info("Checkpoint: " + done.cardinality() + " pages done");
+		} catch (IOException e) {
+			logger.warn("Could not save checkpoint", e);
+		}
+	}
+
+	private static File temporary(File file) {
+		return new File(file.getPath() + ".tmp");
+	}
+
+	private static int index(long id) {
+		assert id >= 0 && id <= Integer.MAX_VALUE;
+		return (int) id;
+	}
+}
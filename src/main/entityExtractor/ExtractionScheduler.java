@@ -0,0 +1,169 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+import dao.IDao;
+
+/** Deals out the ids of the pages to extract to the extraction threads, in chunks.
+ *
+ * The ids are those of the pages in the store, so ids without page are never tried. Each worker
+ * gets a queue of chunks of consecutive ids, an equal share, and takes them from the front. A
+ * worker whose queue is empty steals from the back of the queue of another, so a worker held up
+ * by heavy pages is helped by the others, and it does not matter how many workers there are.
+ *
+ * With a checkpoint, the pages it has done are left out, and a chunk is marked done when its
+ * worker asks for the next one.
+ */
+public final class ExtractionScheduler {
+
+	/** Number of ids in a chunk */
+	public static final int CHUNK_SIZE = 64;
+
+	private static Logger logger = Logger.getLogger(ExtractionScheduler.class);
+
+	private final long[] ids;
+	private final List<LinkedBlockingDeque<Chunk>> queues = Lists.newArrayList();
+	private final AtomicInteger taken = new AtomicInteger();
+	private final AtomicInteger stolen = new AtomicInteger();
+	private final int chunkCount;
+	private final ExtractionCheckpoint checkpoint;
+	private final long[][] current; // the chunk each worker is doing
+
+	/** Constructor
+	 *
+	 * @param ids the ids to deal out, in the order to extract them
+	 * @param workers the number of workers
+	 * @param chunkSize the number of ids in a chunk
+	 */
+	public ExtractionScheduler(long[] ids, int workers, int chunkSize) {
+		this(ids, workers, chunkSize, null);
+	}
+
+	/** Constructor
+	 *
+	 * @param ids the ids to deal out, in the order to extract them
+	 * @param workers the number of workers
+	 * @param chunkSize the number of ids in a chunk
+	 * @param checkpoint where the ids done are kept, or null
+	 */
+	public ExtractionScheduler(long[] ids, int workers, int chunkSize, ExtractionCheckpoint checkpoint) {
+		assert workers > 0 && chunkSize > 0;
+		if(checkpoint != null) {
+			ids = notDone(ids, checkpoint);
+		}
+		this.ids = ids;
+		this.checkpoint = checkpoint;
+		current = new long[workers][];
+		chunkCount = (ids.length + chunkSize - 1) / chunkSize;
+		for(int worker = 0; worker < workers; ++worker) {
+			LinkedBlockingDeque<Chunk> queue = new LinkedBlockingDeque<Chunk>();
+			for(int chunk = chunkCount * worker / workers; chunk < chunkCount * (worker + 1) / workers; ++chunk) {
+				queue.addLast(new Chunk(chunk * chunkSize, Math.min(ids.length, (chunk + 1) * chunkSize)));
+			}
+			queues.add(queue);
+		}
+	}
+
+	/** Makes a scheduler for the pages of a language in the store
+	 *
+	 * @param dao the store
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param firstId the first id to extract; lower ids are skipped
+	 * @param workers the number of workers
+	 */
+	public static ExtractionScheduler forPages(IDao dao, String langAbbrev, long firstId, int workers) {
+		return forPages(dao, langAbbrev, firstId, workers, null);
+	}
+
+	/** Makes a scheduler for the pages of a language in the store that a checkpoint has not done
+	 *
+	 * @param dao the store
+	 * @param langAbbrev two letter language abbrevation (ex. EN or NL)
+	 * @param firstId the first id to extract; lower ids are skipped
+	 * @param workers the number of workers
+	 * @param checkpoint where the ids done are kept, or null
+	 */
+	public static ExtractionScheduler forPages(IDao dao, String langAbbrev, long firstId, int workers,
+			ExtractionCheckpoint checkpoint) {
+		long[] ids = dao.retrievePageIds(langAbbrev);
+		int first = Arrays.binarySearch(ids, firstId);
+		ids = Arrays.copyOfRange(ids, first < 0 ? -first - 1 : first, ids.length);
+		ExtractionScheduler scheduler = new ExtractionScheduler(ids, workers, CHUNK_SIZE, checkpoint);
+		logger.info("Extracting " + scheduler.ids.length + " of " + ids.length + " pages of " + langAbbrev + " with " +
+				workers + " workers");
+		return scheduler;
+	}
+
+	private static long[] notDone(long[] ids, ExtractionCheckpoint checkpoint) {
+		long[] left = new long[ids.length];
+		int n = 0;
+		for(long id : ids) {
+			if(!checkpoint.isDone(id)) {
+				left[n++] = id;
+			}
+		}
+		return Arrays.copyOf(left, n);
+	}
+
+	/** Gets the next chunk of a worker: one of its own, or one stolen from another worker. The
+	 * chunk the worker had before is done.
+	 *
+	 * @param worker the number of the worker, from 0
+	 * @return the ids of the chunk, or null when there are no more
+	 */
+	public long[] next(int worker) {
+		if(checkpoint != null && current[worker] != null) {
+			checkpoint.markDone(current[worker]);
+		}
+		current[worker] = null;
+		Chunk chunk = queues.get(worker).pollFirst();
+		for(int i = 1; chunk == null && i < queues.size(); ++i) {
+			chunk = queues.get((worker + i) % queues.size()).pollLast();
+			if(chunk != null) {
+				stolen.incrementAndGet();
+			}
+		}
+		if(chunk == null) {
+			return null; // chunks are never added, so all are taken
+		}
+		taken.incrementAndGet();
+		current[worker] = Arrays.copyOfRange(ids, chunk.from, chunk.to);
+		return current[worker];
+	}
+
+	/** Gets the number of chunks taken so far */
+	public int getTakenCount() {
+		return taken.get();
+	}
+
+	/** Gets the number of chunks taken by other workers than the one they were dealt to */
+	public int getStolenCount() {
+		return stolen.get();
+	}
+
+	/** Logs how far the extraction is */
+	public void logStatistics() {
+		logger.info("Scheduler: " + getTakenCount() + " of " + chunkCount + " chunks taken, " + getStolenCount() +
+				" stolen");
+	}
+
+	/** A range of the ids */
+	private static final class Chunk {
+
+		private final int from;
+		private final int to;
+
+		Chunk(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+}
@@ -0,0 +1,273 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Page;
+
+import org.apache.log4j.Logger;
+
+/** A cache of pages read from the database, shared by the EntityUtils of all extraction threads.
+ * Pages are found by language and id, or by language and the title they were looked up with;
+ * a title for which no page (or redirect) exists is cached as well.
+ *
+ * The cache is bounded by the memory its pages take, estimated from the length of their texts.
+ * It is split in segments, each with a lock and an equal part of the bound, which drop their
+ * least recently used entries when they are full.
+ *
+ * Callers change the pages they get (the entity type, for instance), so the cache hands out and
+ * keeps copies. Titles are not folded: the Dao matches them exactly, so differently written
+ * titles may find different pages.
+ */
+public final class PageCache {
+
+	/** Bound of the shared cache, in megabytes */
+	public static final String SIZE_PROPERTY = "entityUtil.cacheMegabytes";
+
+	private static final int SEGMENTS = 16;
+	private static final Long NOT_FOUND = Long.valueOf(0);
+	private static Logger logger = Logger.getLogger(PageCache.class);
+	private static PageCache sharedCache;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/** Constructor
+	 *
+	 * @param maxBytes estimated memory the cached pages may take
+	 */
+	public PageCache(long maxBytes) {
+		for(int i = 0; i < SEGMENTS; ++i) {
+			segments[i] = new Segment(maxBytes / SEGMENTS);
+		}
+	}
+
+	/** Gets the cache all EntityUtils share by default, of 256 megabytes unless set with the
+	 * system property <code>entityUtil.cacheMegabytes</code>.
+	 */
+	public static synchronized PageCache getShared() {
+		if(sharedCache == null) {
+			sharedCache = new PageCache(Long.getLong(SIZE_PROPERTY, 256) << 20);
+		}
+		return sharedCache;
+	}
+
+	/** Gets a copy of a page by id
+	 *
+	 * @return the page, or null if it is not cached
+	 */
+	public Page get(String langAbbrev, long id) {
+		return count(found((Page) lookup(new Key(langAbbrev, id))));
+	}
+
+	/** Looks up what a title found
+	 *
+	 * @return null if the title is not cached, a page with id 0 if it is cached as not found, or
+	 * else a copy of the page
+	 */
+	public Page get(String langAbbrev, String title) {
+		Long id = (Long) lookup(new Key(langAbbrev, title));
+		if(id == null) {
+			return count(null);
+		}
+		if(id.equals(NOT_FOUND)) {
+			return count(new Page());
+		}
+		return count(found((Page) lookup(new Key(langAbbrev, id))));
+	}
+
+	/** Caches a page by its id */
+	public void put(String langAbbrev, Page page) {
+		assert page.getId() > 0;
+		Page copy = copy(page);
+		store(new Key(langAbbrev, page.getId()), copy, weigh(copy));
+	}
+
+	/** Caches the page a title found (which may have another title, after redirects), or that
+	 * it found none
+	 *
+	 * @param page the page found, or null
+	 */
+	public void put(String langAbbrev, String title, Page page) {
+		if(page != null) {
+			put(langAbbrev, page);
+		}
+		store(new Key(langAbbrev, title), page == null ? NOT_FOUND : Long.valueOf(page.getId()),
+				64 + 2 * title.length());
+	}
+
+	private Object lookup(Key key) {
+		return segment(key).get(key);
+	}
+
+	private static Page found(Page page) {
+		return page == null ? null : copy(page);
+	}
+
+	/* Counts a hit or a miss */
+	private Page count(Page page) {
+		(page == null ? misses : hits).incrementAndGet();
+		return page;
+	}
+
+	private void store(Key key, Object value, long weight) {
+		segment(key).put(key, value, weight);
+	}
+
+	private Segment segment(Key key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return segments[(h & 0x7fffffff) % SEGMENTS];
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/** Gets the estimated memory the cached pages take, in bytes */
+	public long getWeight() {
+		long weight = 0;
+		for(Segment segment : segments) {
+			weight += segment.getWeight();
+		}
+		return weight;
+	}
+
+	/** Logs the use of the cache */
+	public void logStatistics() {
+		long lookups = getHitCount() + getMissCount();
+		logger.info("Page cache: " + getHitCount() + " hits, " + getMissCount() + " misses (" +
+				(lookups == 0 ? 0 : 100 * getHitCount() / lookups) + "% hits), " + getEvictionCount() +
+				" evictions, " + (getWeight() >> 20) + " MB");
+	}
+
+	/* Estimates the memory a page takes: two bytes a character, and some for the objects */
+	private static long weigh(Page page) {
+		long chars = length(page.getTitle()) + length(page.getBody()) + length(page.getEnglishLink()) +
+			length(page.getInfobox());
+		for(String category : page.getCategories()) {
+			chars += category.length();
+		}
+		for(String alias : page.getAliases()) {
+			chars += alias.length();
+		}
+		return 2 * chars + 64 * (4 + page.getCategories().size() + page.getAliases().size());
+	}
+
+	private static int length(String s) {
+		return s == null ? 0 : s.length();
+	}
+
+	private static Page copy(Page page) {
+		Page copy = new Page();
+		copy.setId(page.getId());
+		copy.setTitle(page.getTitle());
+		copy.setBody(page.getBody());
+		copy.setEnglishLink(page.getEnglishLink());
+		copy.setEntityType(page.getEntityType());
+		copy.setDisambiguation(page.isDisambiguation());
+		copy.setNamespace(page.getNamespace());
+		copy.setRedirectTarget(page.getRedirectTarget());
+		copy.setInfobox(page.getInfobox());
+		copy.getCategories().addAll(page.getCategories());
+		copy.getAliases().addAll(page.getAliases());
+		return copy;
+	}
+
+	/** A language with an id or a title */
+	private static final class Key {
+
+		private final String language;
+		private final long id;
+		private final String title;
+
+		Key(String language, long id) {
+			this.language = language.toUpperCase();
+			this.id = id;
+			this.title = null;
+		}
+
+		Key(String language, String title) {
+			this.language = language.toUpperCase();
+			this.id = 0;
+			this.title = title;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * language.hashCode() + (int) (id ^ (id >>> 32))) + (title == null ? 0 : title.hashCode());
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return id == other.id && language.equals(other.language) &&
+				(title == null ? other.title == null : title.equals(other.title));
+		}
+	}
+
+	/** A cached value with its weight */
+	private static final class Entry {
+
+		private final Object value;
+		private final long weight;
+
+		Entry(Object value, long weight) {
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	/** A part of the cache, in least recently used order */
+	private final class Segment {
+
+		private final long maxWeight;
+		private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		private long weight;
+
+		Segment(long maxWeight) {
+			this.maxWeight = maxWeight;
+		}
+
+		synchronized Object get(Key key) {
+			Entry entry = entries.get(key);
+			return entry == null ? null : entry.value;
+		}
+
+		synchronized void put(Key key, Object value, long entryWeight) {
+			if(entryWeight > maxWeight) {
+				return; // would push everything else out
+			}
+			Entry old = entries.put(key, new Entry(value, entryWeight));
+			if(old != null) {
+				weight -= old.weight;
+			}
+			weight += entryWeight;
+			Iterator<Entry> eldest = entries.values().iterator();
+			while(weight > maxWeight) {
+				weight -= eldest.next().weight;
+				eldest.remove();
+				evictions.incrementAndGet();
+			}
+		}
+
+		synchronized long getWeight() {
+			return weight;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/** The categories of a wikipedia and their parent categories, the categories their category
+ * pages are in. Categories are numbered, and the parents of category i are
+ * parents[offsets[i]] to parents[offsets[i + 1]].
+ *
+ * Names are compared as wikipedia does: with spaces for underscores, and the first letter in
+ * upper case. The graph may have cycles. It is collected while parsing (see Builder), kept in a
+ * text file with a line for each category page: its name and those of its parents, separated by
+ * tabs, and cannot be changed once built.
+ */
+public final class CategoryGraph {
+
+	private final String[] names;
+	private final Map<String, Integer> ids;
+	private final int[] offsets;
+	private final int[] parents;
+
+	private CategoryGraph(String[] names, Map<String, Integer> ids, int[] offsets, int[] parents) {
+		this.names = names;
+		this.ids = ids;
+		this.offsets = offsets;
+		this.parents = parents;
+	}
+
+	/** Gets the number of categories */
+	public int size() {
+		return names.length;
+	}
+
+	/** Gets the number of category to parent links */
+	public int getEdgeCount() {
+		return parents.length;
+	}
+
+	/** Gets the number of a category
+	 *
+	 * @return the number, or -1 if the category is not in the graph
+	 */
+	public int id(String category) {
+		Integer id = ids.get(normalize(category));
+		return id == null ? -1 : id;
+	}
+
+	/** Gets the name of a category by number */
+	public String name(int id) {
+		return names[id];
+	}
+
+	/** Gets the names of the parents of a category
+	 *
+	 * @return the parents, none if the category is not in the graph
+	 */
+	public List<String> parents(String category) {
+		int id = id(category);
+		if(id < 0) {
+			return Collections.emptyList();
+		}
+		List<String> parentNames = Lists.newArrayListWithCapacity(offsets[id + 1] - offsets[id]);
+		for(int p = offsets[id]; p < offsets[id + 1]; ++p) {
+			parentNames.add(names[parents[p]]);
+		}
+		return parentNames;
+	}
+
+	/** Spreads weights up from the parents: of each category, a row of width values in weights,
+	 * the result has the sum of its own row and the rows of all its ancestors at most levels
+	 * links up, counted once for every way up they are reached (so a cycle counts again).
+	 *
+	 * @param weights width values per category, by number
+	 * @param width number of values of a category
+	 * @param levels how far up to look
+	 * @return the summed weights, in the same layout
+	 */
+	public int[] propagate(int[] weights, int width, int levels) {
+		assert weights.length == width * names.length;
+		int[] sums = weights.clone();
+		for(int level = 0; level < levels; ++level) {
+			int[] next = weights.clone();
+			for(int id = 0; id < names.length; ++id) {
+				for(int p = offsets[id]; p < offsets[id + 1]; ++p) {
+					int parent = parents[p];
+					for(int k = 0; k < width; ++k) {
+						next[id * width + k] += sums[parent * width + k];
+					}
+				}
+			}
+			sums = next;
+		}
+		return sums;
+	}
+
+	/** Writes the graph to a file, which read can read back */
+	public void write(File file) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			for(int id = 0; id < names.length; ++id) {
+				if(offsets[id] == offsets[id + 1]) {
+					continue; // only known as a parent
+				}
+				out.write(names[id]);
+				for(int p = offsets[id]; p < offsets[id + 1]; ++p) {
+					out.write('\t');
+					out.write(names[parents[p]]);
+				}
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Reads a graph written by write */
+	public static CategoryGraph read(File file) throws IOException {
+		Builder builder = new Builder();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] fields = line.split("\t");
+				builder.add(fields[0], Arrays.asList(fields).subList(1, fields.length));
+			}
+		} finally {
+			in.close();
+		}
+		return builder.build();
+	}
+
+	/* Writes a name as wikipedia compares it */
+	private static String normalize(String category) {
+		String name = category.replace('_', ' ').trim();
+		if(name.length() == 0 || Character.isUpperCase(name.charAt(0))) {
+			return name;
+		}
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/** Collects the category pages of a wikipedia, as they are parsed, to build a graph of them.
+	 * Pages may be added from several threads.
+	 */
+	public static final class Builder {
+
+		private final List<String> names = Lists.newArrayList();
+		private final Map<String, Integer> ids = Maps.newHashMap();
+		private final List<int[]> parentIds = Lists.newArrayList(); // null if not added (yet)
+		private int edges;
+
+		/** Adds a category page
+		 *
+		 * @param category the name of the category, without namespace
+		 * @param parents the categories the page is in
+		 */
+		public synchronized Builder add(String category, Collection<String> parents) {
+			int id = id(category);
+			if(parentIds.get(id) != null) {
+				return this; // the first page with a name is kept
+			}
+			int[] parentsOfId = new int[parents.size()];
+			int n = 0;
+			for(String parent : parents) {
+				if(normalize(parent).length() > 0) {
+					parentsOfId[n++] = id(parent);
+				}
+			}
+			parentIds.set(id, Arrays.copyOf(parentsOfId, n));
+			edges += n;
+			return this;
+		}
+
+		private int id(String category) {
+			String name = normalize(category);
+			Integer id = ids.get(name);
+			if(id == null) {
+				id = names.size();
+				ids.put(name, id);
+				names.add(name);
+				parentIds.add(null);
+			}
+			return id;
+		}
+
+		public synchronized CategoryGraph build() {
+			int[] offsets = new int[names.size() + 1];
+			int[] parents = new int[edges];
+			int p = 0;
+			for(int id = 0; id < names.size(); ++id) {
+				offsets[id] = p;
+				int[] parentsOfId = parentIds.get(id);
+				if(parentsOfId != null) {
+					System.arraycopy(parentsOfId, 0, parents, p, parentsOfId.length);
+					p += parentsOfId.length;
+				}
+			}
+			offsets[names.size()] = p;
+			return new CategoryGraph(names.toArray(new String[names.size()]), Maps.newHashMap(ids), offsets, parents);
+		}
+	}
+}
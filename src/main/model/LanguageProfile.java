@@ -0,0 +1,304 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/** Everything that differs between the wikipedias of two languages: redirect keywords, the
+ * category namespace, the disambiguation, infobox and interwiki markers, what the stripper removes
+ * and the names of the tables. Profiles are read once from <code>languages.properties</code>, next to
+ * this class, and from a <code>languages.properties</code> in the working directory if there is
+ * one, which may add languages or change settings.
+ *
+ * Profiles are immutable, and the registry does not change after it is read, so both can be
+ * shared by all threads.
+ */
+public final class LanguageProfile {
+
+	public static final String FILE_NAME = "languages.properties";
+	private static final String SEPARATOR = "\\|";
+
+	private static Logger logger = Logger.getLogger(LanguageProfile.class);
+
+	private static final Map<String, LanguageProfile> profiles = load();
+	private static final List<String> redirectKeywords = collectRedirectKeywords();
+
+	private final String code;
+	private final String name;
+	private final List<String> redirects;
+	private final String categoryPrefix;
+	private final String[] disambiguationTemplates;
+	private final String infoboxPrefix;
+	private final String interwikiPrefix;
+	private final String pagesTable;
+	private final String categoriesTable;
+	private final String redirectsTable;
+	private final String[] endHeadings;
+	private final String[] endTemplates;
+	private final String[] removedTemplates;
+	private final String[] removedLinks;
+	private final String mainArticleNote;
+
+	private LanguageProfile(String code, Properties properties) {
+		this.code = code;
+		name = get(properties, "name", code.toLowerCase());
+		redirects = Arrays.asList(list(properties, "redirect"));
+		categoryPrefix = get(properties, "category", "Category:");
+		disambiguationTemplates = list(properties, "disambiguation");
+		infoboxPrefix = get(properties, "infobox", "Infobox");
+		String interwiki = get(properties, "interwiki", "");
+		interwikiPrefix = interwiki.length() == 0 ? null : interwiki;
+		pagesTable = get(properties, "table.pages", "PAGES_" + code);
+		categoriesTable = get(properties, "table.categories", "CATS_" + code);
+		redirectsTable = get(properties, "table.redirects", "REDIRECTS_" + code);
+		endHeadings = list(properties, "strip.endHeadings");
+		for(int i = 0; i < endHeadings.length; ++i) {
+			endHeadings[i] = endHeadings[i].toLowerCase();
+		}
+		endTemplates = list(properties, "strip.endTemplates");
+		removedTemplates = list(properties, "strip.removedTemplates");
+		removedLinks = list(properties, "strip.removedLinks");
+		String note = get(properties, "strip.mainArticleNote", "");
+		mainArticleNote = note.length() == 0 ? null : note;
+	}
+
+	/** Gets the profile of a language
+	 *
+	 * @param code the language's code, which is also its abbreviation (EN, NL, ...)
+	 * @throws IllegalArgumentException if the language is unknown
+	 */
+	public static LanguageProfile forCode(String code) {
+		LanguageProfile profile = profiles.get(code.toUpperCase());
+		if(profile == null) {
+			throw new IllegalArgumentException("Unknown language: " + code + "; languages are " + profiles.keySet());
+		}
+		return profile;
+	}
+
+	/** Gets the profile of a language
+	 *
+	 * @param language the language
+	 */
+	public static LanguageProfile forLanguage(Language language) {
+		return forCode(language.abbreviation());
+	}
+
+	/** Gets the profile of a language by its name or code, as given on a command line
+	 * (english, dutch, EN, NL, ...).
+	 *
+	 * @throws IllegalArgumentException if the language is unknown
+	 */
+	public static LanguageProfile forName(String nameOrCode) {
+		for(LanguageProfile profile : profiles.values()) {
+			if(profile.name.equalsIgnoreCase(nameOrCode)) {
+				return profile;
+			}
+		}
+		return forCode(nameOrCode);
+	}
+
+	/** Gets the profiles of all known languages */
+	public static Collection<LanguageProfile> all() {
+		return Collections.unmodifiableCollection(profiles.values());
+	}
+
+	/** Finds the target of a redirect in a page text, which starts with <code>#REDIRECT [[target]]</code>
+	 * or the redirect keyword of any other known language.
+	 *
+	 * @param body the page text
+	 * @return the target title, or null if the text is no redirect
+	 */
+	public static String findRedirectTarget(String body) {
+		if(body == null) {
+			return null;
+		}
+		int start = 0;
+		while(start < body.length() && Character.isWhitespace(body.charAt(start))) {
+			++start;
+		}
+		String keyword = null;
+		for(String redirect : redirectKeywords) {
+			if(body.regionMatches(true, start, redirect, 0, redirect.length())) {
+				keyword = redirect;
+				break;
+			}
+		}
+		if(keyword == null) {
+			return null;
+		}
+		start += keyword.length();
+
+		int open = body.indexOf("[[", start);
+		int close = open == -1 ? -1 : body.indexOf("]]", open);
+		if(close == -1 || body.substring(start, open).trim().length() > 1) { // allow "#REDIRECT: [[...]]"
+			return null;
+		}
+		String target = body.substring(open + 2, close);
+		int pipe = target.indexOf('|');
+		if(pipe != -1) {
+			target = target.substring(0, pipe);
+		}
+		target = target.trim();
+		return target.length() == 0 ? null : target;
+	}
+
+	/** Gets the code, which is also the abbreviation the IDao takes (EN, NL, ...) */
+	public String getCode() {
+		return code;
+	}
+
+	/** Gets the name, in lower case (english, dutch, ...) */
+	public String getName() {
+		return name;
+	}
+
+	/** Gets the keywords that start a redirect, such as <code>#REDIRECT</code> */
+	public List<String> getRedirects() {
+		return Collections.unmodifiableList(redirects);
+	}
+
+	/** Gets the namespace of categories, with colon (<code>Category:</code>) */
+	public String getCategoryPrefix() {
+		return categoryPrefix;
+	}
+
+	/** Gets the names of the templates that mark disambiguation pages */
+	public String[] getDisambiguationTemplates() {
+		return disambiguationTemplates.clone();
+	}
+
+	/** Gets the start of the names of infobox templates */
+	public String getInfoboxPrefix() {
+		return infoboxPrefix;
+	}
+
+	/** Gets the start of links to the English page, with colon (<code>en:</code>), or null for
+	 * English itself */
+	public String getInterwikiPrefix() {
+		return interwikiPrefix;
+	}
+
+	public String getPagesTable() {
+		return pagesTable;
+	}
+
+	public String getCategoriesTable() {
+		return categoriesTable;
+	}
+
+	public String getRedirectsTable() {
+		return redirectsTable;
+	}
+
+	/** Gets the section headings from which the text is stripped, in lower case */
+	public String[] getEndHeadings() {
+		return endHeadings.clone();
+	}
+
+	/** Gets the templates from which the text is stripped */
+	public String[] getEndTemplates() {
+		return endTemplates.clone();
+	}
+
+	/** Gets the templates the stripper removes */
+	public String[] getRemovedTemplates() {
+		return removedTemplates.clone();
+	}
+
+	/** Gets the prefixes of links the stripper removes */
+	public String[] getRemovedLinks() {
+		return removedLinks.clone();
+	}
+
+	/** Gets the text of <code>:''Main article: ...''</code> notes, or null if they are not removed */
+	public String getMainArticleNote() {
+		return mainArticleNote;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + code + ")";
+	}
+
+	private String get(Properties properties, String key, String defaultValue) {
+		return properties.getProperty(code + "." + key, defaultValue).trim();
+	}
+
+	private String[] list(Properties properties, String key) {
+		String value = properties.getProperty(code + "." + key, "");
+		return value.trim().length() == 0 ? new String[0] : value.split(SEPARATOR);
+	}
+
+	/* Reads the profiles that come with the parser, then those of the working directory. */
+	private static Map<String, LanguageProfile> load() {
+		Properties properties = new Properties();
+		Set<String> codes = Sets.newLinkedHashSet();
+		try {
+			InputStream in = LanguageProfile.class.getResourceAsStream(FILE_NAME);
+			if(in == null) {
+				throw new IllegalStateException(FILE_NAME + " is missing from the class path");
+			}
+			read(in, properties, codes);
+			File local = new File(FILE_NAME);
+			if(local.isFile()) {
+				logger.info("Reading languages from " + local.getAbsolutePath());
+				read(new FileInputStream(local), properties, codes);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read " + FILE_NAME, e);
+		}
+
+		Map<String, LanguageProfile> profiles = Maps.newLinkedHashMap();
+		for(String code : codes) {
+			profiles.put(code, new LanguageProfile(code, properties));
+		}
+		logger.info("Languages: " + profiles.keySet());
+		return profiles;
+	}
+
+	private static void read(InputStream in, Properties properties, Set<String> codes) throws IOException {
+		Properties read = new Properties();
+		try {
+			read.load(in);
+		} finally {
+			in.close();
+		}
+		for(String code : read.getProperty("languages", "").split(SEPARATOR)) {
+			if(code.trim().length() > 0) {
+				codes.add(code.trim().toUpperCase());
+			}
+		}
+		properties.putAll(read);
+	}
+
+	/* Longest first, so that a keyword is not taken for a shorter one it starts with. */
+	private static List<String> collectRedirectKeywords() {
+		Set<String> keywords = Sets.newHashSet();
+		for(LanguageProfile profile : profiles.values()) {
+			keywords.addAll(profile.redirects);
+		}
+		List<String> sorted = Lists.newArrayList(keywords);
+		Collections.sort(sorted, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		return sorted;
+	}
+}
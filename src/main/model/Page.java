@@ -17,6 +17,9 @@ import com.google.common.collect.*;
  * @author Jessica Anderson
  */
 public class Page {
+	/** The namespace of category pages */
+	public static final int CATEGORY_NAMESPACE = 14;
+	
 	private String title;
 	private long id;
 	private String body;
@@ -24,10 +27,30 @@ public class Page {
 	private String englishLink;
 	private String entityType; //TODO: convert to Enum!
 	private boolean isDisambiguation;
+	private int namespace;
+	private String redirectTarget; //null unless the page is a redirect
+	private String infobox; //type of the first infobox, null if there is none
+	private Set<String> aliases; //bold names in the introduction
 	
 	public Page() {
 		categories = Sets.newLinkedHashSet();
+		aliases = Sets.newLinkedHashSet();
+		isDisambiguation = false;
+	}
+	
+	/** Clears all fields, so that the page can be reused for another page. */
+	public void reset() {
+		title = null;
+		id = 0;
+		body = null;
+		categories.clear();
+		englishLink = null;
+		entityType = null;
 		isDisambiguation = false;
+		namespace = 0;
+		redirectTarget = null;
+		infobox = null;
+		aliases.clear();
 	}
 	
 	@Override
@@ -123,6 +146,52 @@ public class Page {
 	public void setDisambiguation(boolean isDisambiguation) {
 		this.isDisambiguation = isDisambiguation;
 	}
+
+	/** Gets the namespace: 0 for articles (and if the dump has no namespaces), CATEGORY_NAMESPACE
+	 * for category pages */
+	public int getNamespace() {
+		return namespace;
+	}
+
+	public void setNamespace(int namespace) {
+		this.namespace = namespace;
+	}
+
+	/** Checks if the page is a redirect, in which case its body is only the redirect */
+	public boolean isRedirect() {
+		return redirectTarget != null;
+	}
+
+	/** Gets the title this page redirects to. Null if the page is no redirect, empty if the 
+	 * target is unknown. */
+	public String getRedirectTarget() {
+		return redirectTarget;
+	}
+
+	public void setRedirectTarget(String redirectTarget) {
+		this.redirectTarget = redirectTarget;
+	}
+
+	/** Gets the type of the page's first infobox (<code>settlement</code> for 
+	 * <code>{{Infobox settlement</code>), null if the page has no infobox, empty if the infobox
+	 * has no type. */
+	public String getInfobox() {
+		return infobox;
+	}
+
+	public void setInfobox(String infobox) {
+		this.infobox = infobox;
+	}
+
+	/** Gets the names written in bold in the introduction, which are the title and its 
+	 * alternatives */
+	public Set<String> getAliases() {
+		return aliases;
+	}
+
+	public void setAliases(Set<String> aliases) {
+		this.aliases = aliases;
+	}
 	
 
 
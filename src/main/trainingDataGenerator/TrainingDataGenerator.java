@@ -165,7 +165,7 @@ class TrainingDataGeneratorThread extends Thread {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
-		
+		dao.close();
 	}
 	
 }
@@ -0,0 +1,196 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/** Finds the entity type of a category name with the rules of a CategoryParser file, in one pass
+ * over the name.
+ *
+ * A rule matches a category name that contains its words, like the regex ".*words.*"; a rule
+ * starting with ^ only matches at the start of the name, and one ending with $ only at its end.
+ * The words are literal text, matched with case. Of the rules that match, the first one of the
+ * file wins.
+ *
+ * The words of all rules are compiled into an Aho-Corasick automaton: a trie of the words, where
+ * each node has a link to the node of its longest proper suffix that is also in the trie, and the
+ * rules of all words that end there. The matcher cannot be changed once built, so one can be
+ * shared by all threads.
+ */
+public final class CategoryMatcher {
+
+	private final String[] types; // of each rule, in the order of the file
+	private final int[] lengths; // of the words of each rule
+	private final boolean[] atStart;
+	private final boolean[] atEnd;
+	private final int[] everywhere; // rules without words, which match at every position
+
+	// per node: its transitions, sorted by label, its suffix link and the rules that end there
+	private final char[][] labels;
+	private final int[][] targets;
+	private final int[] suffixes;
+	private final int[][] rules;
+
+	/** Constructor
+	 *
+	 * @param categoryRules the rules, as the words (with anchors) and entity type, in the order
+	 * they are tried
+	 */
+	public CategoryMatcher(Map<String, String> categoryRules) {
+		int n = categoryRules.size();
+		types = new String[n];
+		lengths = new int[n];
+		atStart = new boolean[n];
+		atEnd = new boolean[n];
+
+		List<SortedMap<Character, Integer>> trie = Lists.newArrayList();
+		List<List<Integer>> ends = Lists.newArrayList();
+		trie.add(Maps.<Character, Integer>newTreeMap());
+		ends.add(Lists.<Integer>newArrayList());
+		List<Integer> empty = Lists.newArrayList();
+
+		int rule = 0;
+		for(Map.Entry<String, String> categoryRule : categoryRules.entrySet()) {
+			String words = categoryRule.getKey().trim();
+			types[rule] = categoryRule.getValue();
+			atStart[rule] = words.startsWith("^");
+			atEnd[rule] = words.endsWith("$") && words.length() > (atStart[rule] ? 1 : 0);
+			words = words.substring(atStart[rule] ? 1 : 0, words.length() - (atEnd[rule] ? 1 : 0));
+			lengths[rule] = words.length();
+			if(words.length() == 0) {
+				empty.add(rule);
+			}
+			else {
+				int node = 0;
+				for(int i = 0; i < words.length(); ++i) {
+					Integer next = trie.get(node).get(words.charAt(i));
+					if(next == null) {
+						next = trie.size();
+						trie.get(node).put(words.charAt(i), next);
+						trie.add(Maps.<Character, Integer>newTreeMap());
+						ends.add(Lists.<Integer>newArrayList());
+					}
+					node = next;
+				}
+				ends.get(node).add(rule);
+			}
+			++rule;
+		}
+		everywhere = toArray(empty);
+
+		int nodes = trie.size();
+		labels = new char[nodes][];
+		targets = new int[nodes][];
+		for(int node = 0; node < nodes; ++node) {
+			SortedMap<Character, Integer> transitions = trie.get(node);
+			labels[node] = new char[transitions.size()];
+			targets[node] = new int[transitions.size()];
+			int i = 0;
+			for(Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+				labels[node][i] = transition.getKey();
+				targets[node][i++] = transition.getValue();
+			}
+		}
+
+		// suffix links, breadth first, so that the link of a node's suffix is known before it
+		suffixes = new int[nodes];
+		rules = new int[nodes][];
+		rules[0] = new int[0];
+		LinkedList<Integer> queue = Lists.newLinkedList();
+		for(int child : targets[0]) {
+			suffixes[child] = 0;
+			queue.add(child);
+		}
+		while(!queue.isEmpty()) {
+			int node = queue.removeFirst();
+			rules[node] = merge(toArray(ends.get(node)), rules[suffixes[node]]);
+			for(int i = 0; i < labels[node].length; ++i) {
+				int child = targets[node][i];
+				int suffix = suffixes[node];
+				while(suffix != 0 && step(suffix, labels[node][i]) < 0) {
+					suffix = suffixes[suffix];
+				}
+				int next = step(suffix, labels[node][i]);
+				suffixes[child] = next < 0 ? 0 : next;
+				queue.add(child);
+			}
+		}
+	}
+
+	/** Finds the entity type of a category
+	 *
+	 * @param category the category name
+	 * @return the entity type of the first rule that matches, or null if none does
+	 */
+	public String match(String category) {
+		int first = Integer.MAX_VALUE;
+		for(int rule : everywhere) {
+			if(!(atStart[rule] && atEnd[rule]) || category.length() == 0) {
+				first = rule;
+				break;
+			}
+		}
+		int node = 0;
+		for(int i = 0; i < category.length(); ++i) {
+			char c = category.charAt(i);
+			int next = step(node, c);
+			while(next < 0 && node != 0) {
+				node = suffixes[node];
+				next = step(node, c);
+			}
+			node = next < 0 ? 0 : next;
+			for(int rule : rules[node]) {
+				if(rule >= first) {
+					break; // sorted, so no earlier rule follows
+				}
+				if((!atStart[rule] || i + 1 == lengths[rule]) && (!atEnd[rule] || i + 1 == category.length())) {
+					first = rule;
+				}
+			}
+		}
+		return first == Integer.MAX_VALUE ? null : types[first];
+	}
+
+	/** Gets the number of rules */
+	public int size() {
+		return types.length;
+	}
+
+	/* Follows the transition of a node with a character, or -1 if it has none */
+	private int step(int node, char c) {
+		int i = Arrays.binarySearch(labels[node], c);
+		return i < 0 ? -1 : targets[node][i];
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for(int i = 0; i < array.length; ++i) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+
+	/* Merges two sorted arrays of rules */
+	private static int[] merge(int[] a, int[] b) {
+		int[] merged = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while(i < a.length && j < b.length) {
+			merged[k++] = a[i] < b[j] ? a[i++] : b[j++];
+		}
+		while(i < a.length) {
+			merged[k++] = a[i++];
+		}
+		while(j < b.length) {
+			merged[k++] = b[j++];
+		}
+		return merged;
+	}
+}
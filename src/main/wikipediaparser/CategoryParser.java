@@ -44,10 +44,10 @@ public class CategoryParser {
 
 	/** Parses a perl file.
 	 * 
-	 * @return Map containing the category name and the entity type.
+	 * @return Map containing the category name and the entity type, in the order of the file.
 	 */
 	public Map<String,String> parse() {
-		Map<String,String> catMap = Maps.newHashMap();
+		Map<String,String> catMap = Maps.newLinkedHashMap();
 		
 		Pattern categoryPattern = Pattern.compile("\"(.+?)\"" +	// ex. "education institutions"
 				"=>" +				// =>
@@ -83,6 +83,14 @@ public class CategoryParser {
 		return catMap;	
 	}
 	
+	/** Parses a perl file into a matcher, which can be shared by all threads.
+	 * 
+	 * @return matcher of category names with the rules of the file.
+	 */
+	public CategoryMatcher parseMatcher() {
+		return new CategoryMatcher(parse());
+	}
+	
 	/* Converts an inputStream into a String
 	 * @param is the inputStream to convert
 	 * 
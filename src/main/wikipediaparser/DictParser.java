@@ -81,6 +81,7 @@ public class DictParser {
 		}
 		
 		dao.processDictionary(this.entries);
+		dao.close();
 	}
 
 }
@@ -5,6 +5,10 @@
  */
 package wikipediaparser;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
 import model.Page;
 
 import org.xml.sax.Attributes;
@@ -16,17 +20,33 @@ import org.xml.sax.helpers.DefaultHandler;
  * This class provides specific handlers for finding <code>page</code> information 
  * in a wikipedia XML document. 
  * 
+ * Only the pages Parser.isStored accepts are parsed: articles (namespace 0) and category pages
+ * (namespace 14). Redirects, recognized by the <code>&lt;redirect&gt;</code> tag or by their text,
+ * only get their target filled in.
+ * 
+ * The characters of the title, id and text are collected in buffers that are reused for every
+ * page, and each field is only turned into a String once, at its end tag. Pages handed back
+ * with recycle() are reused as well.
+ * 
  * @author Jessica Anderson
  */
 public class Handler extends DefaultHandler {
 
+	private static final int MAX_SPARE_PAGES = 1000;
+	private static final int MAX_KEPT_CAPACITY = 1 << 22; // don't hold on to buffers of huge pages
+	
 	private Parser parser;
 	private Page page;
 	private State state;
 	private boolean parseStuff;
+	private StringBuilder title = new StringBuilder();
+	private StringBuilder id = new StringBuilder();
+	private StringBuilder ns = new StringBuilder();
+	private StringBuilder text = new StringBuilder();
+	private final Deque<Page> sparePages = new ArrayDeque<Page>();
 	
 	public enum State {
-		UNDEFINED, PAGE, TITLE, ID, TEXT;
+		UNDEFINED, PAGE, TITLE, ID, NS, TEXT;
 	}
 	
 	/** Constructor */
@@ -39,10 +59,13 @@ public class Handler extends DefaultHandler {
 	
 	
 	/** Looks for start tags in a wikipedia xml document: specifically <mediawiki>, <page>, <title>,
-	 * <id>, <text>
+	 * <id>, <ns>, <redirect>, <text>. Stops parsing if the thread has been interrupted.
 	 */
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+		if(Thread.currentThread().isInterrupted()) {
+			throw new SAXException("Parsing interrupted");
+		}
 
 		if(qName.equalsIgnoreCase("mediawiki")) {
 			state = State.UNDEFINED;
@@ -51,47 +74,54 @@ public class Handler extends DefaultHandler {
 		else if(qName.equalsIgnoreCase("page")) {
 			// Start a new one
 			state = State.PAGE;
-			page = new Page();
-			parser.addPage(page);
+			page = newPage();
 			parseStuff = true;
 			
 		}
 		else if(qName.equalsIgnoreCase("title")) {
-			page.setTitle("");
+			title = clear(title);
 			state = State.TITLE;
 		}
 		else if(qName.equalsIgnoreCase("id")) {
+			id = clear(id);
 			state = State.ID;
 			
 		}
+		else if(qName.equalsIgnoreCase("ns")) {
+			ns = clear(ns);
+			state = State.NS;
+		}
+		else if(qName.equalsIgnoreCase("redirect")) {
+			String target = attributes.getValue("title"); // older dumps have no title attribute
+			page.setRedirectTarget(target == null ? "" : target);
+		}
 		else if(qName.equalsIgnoreCase("text")) {
 			// Get ready to parse!!
-			page.setBody("");
+			text = clear(text);
 			state = State.TEXT;
 		}
 	}
 	
 	/**
-	 * Takes action every time text/characters are found between a tag set.
+	 * Takes action every time text/characters are found between a tag set. A field's characters
+	 * can arrive in any number of chunks, so they are only collected here.
 	 */
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
-		String str = String.copyValueOf(ch, start, length);
-		
 		switch(state) {
 		case TITLE:
-			String title = page.getTitle() + str;
-			page.setTitle(title);
+			title.append(ch, start, length);
 			break;
 		case ID:
 			if(parseStuff) {
-			page.setId(Long.parseLong(str));
-			parseStuff = false;
+				id.append(ch, start, length);
 			}
 			break;
+		case NS:
+			ns.append(ch, start, length);
+			break;
 		case TEXT:
-			String body = page.getBody() + str;
-			page.setBody(body);
+			text.append(ch, start, length);
 			break;
 		default:
 			break;
@@ -110,19 +140,38 @@ public class Handler extends DefaultHandler {
 		}
 		else if(qName.equalsIgnoreCase("page")) {
 			// Close previous page
+			parser.addPage(page);
 			parser.commitPage(false);
 			state = State.UNDEFINED;
 		}
 		else if(qName.equalsIgnoreCase("title")) {
+			page.setTitle(title.toString());
 			state = State.UNDEFINED;
 		}
 		else if(qName.equalsIgnoreCase("id")) {
+			if(parseStuff) {
+				page.setId(Long.parseLong(id.toString().trim()));
+				parseStuff = false; // only the first id is the page's, the others are revisions'
+			}
+			state = State.UNDEFINED;
+		}
+		else if(qName.equalsIgnoreCase("ns")) {
+			page.setNamespace(Integer.parseInt(ns.toString().trim()));
 			state = State.UNDEFINED;
 		}
 		else if(qName.equalsIgnoreCase("text")) {
 			// Parse body text
+			page.setBody(text.toString());
 			state = State.UNDEFINED;
-			parser.parseBody(page); //parse the text, maybe move later to better place
+			if(page.getRedirectTarget() == null || page.getRedirectTarget().length() == 0) {
+				String target = Parser.findRedirectTarget(page.getBody());
+				if(target != null) {
+					page.setRedirectTarget(target);
+				}
+			}
+			if(Parser.isStored(page)) {
+				parser.parseBody(page); //parse the text, maybe move later to better place
+			}
 		}
 	}
 	
@@ -134,4 +183,35 @@ public class Handler extends DefaultHandler {
 		return state;
 	}
 	
+	/** Hands back pages that are no longer used (after storing them), to be reused for 
+	 * the next pages.
+	 * 
+	 * @param pages the pages to reuse
+	 */
+	public void recycle(Collection<Page> pages) {
+		for(Page p : pages) {
+			if(sparePages.size() >= MAX_SPARE_PAGES) {
+				break;
+			}
+			sparePages.push(p);
+		}
+	}
+	
+	private Page newPage() {
+		Page p = sparePages.poll();
+		if(p == null) {
+			return new Page();
+		}
+		p.reset();
+		return p;
+	}
+	
+	private static StringBuilder clear(StringBuilder buffer) {
+		if(buffer.capacity() > MAX_KEPT_CAPACITY) {
+			return new StringBuilder();
+		}
+		buffer.setLength(0);
+		return buffer;
+	}
+	
 }
@@ -0,0 +1,35 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+/** A CharSequence that stops a regex match when the current thread is interrupted. Matching
+ * itself never checks for interrupts, so without this a pattern that backtracks badly on some
+ * page can not be cancelled.
+ */
+class InterruptibleCharSequence implements CharSequence {
+
+	private final CharSequence inner;
+
+	InterruptibleCharSequence(CharSequence inner) {
+		this.inner = inner;
+	}
+
+	public char charAt(int index) {
+		if(Thread.currentThread().isInterrupted()) {
+			throw new IllegalStateException("Interrupted while matching");
+		}
+		return inner.charAt(index);
+	}
+
+	public int length() {
+		return inner.length();
+	}
+
+	public CharSequence subSequence(int start, int end) {
+		return new InterruptibleCharSequence(inner.subSequence(start, end));
+	}
+
+	@Override
+	public String toString() {
+		return inner.toString();
+	}
+}
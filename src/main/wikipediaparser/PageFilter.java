@@ -0,0 +1,17 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+/** Decides which pages a PageReader returns. Pages are judged before their text is read, so the
+ * text of rejected pages is skipped without being decoded into Strings.
+ */
+public interface PageFilter {
+
+	/** Checks if a page should be read.
+	 *
+	 * @param title the page's title
+	 * @param id the page's id
+	 * @param namespace the page's namespace (0 for articles, and if the dump has no namespaces)
+	 * @return true to read the page, false to skip it
+	 */
+	boolean accept(String title, long id, int namespace);
+}
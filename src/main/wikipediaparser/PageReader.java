@@ -0,0 +1,235 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import model.Page;
+
+import compression.DumpInput;
+
+/** Reads the pages of a wikipedia xml file one at a time, when the caller asks for them. This is
+ * the pulling counterpart of the Parser and its Handler: nothing is read ahead, so the caller
+ * decides the pace, and a PageFilter can skip pages before their text is read.
+ *
+ * Pages are returned with title, id, namespace, redirect target (from the <code>&lt;redirect&gt;</code>
+ * tag) and raw (unparsed) body; Parser.parseBody does the rest.
+ * Usable in a for loop:
+ * <pre>
+ * PageReader reader = PageReader.open("dump.xml.bz2", filter);
+ * for(Page page : reader) { ... }
+ * reader.close();
+ * </pre>
+ * Streaming errors are thrown as IllegalStateException by hasNext() and next().
+ */
+public class PageReader implements Iterator<Page>, Iterable<Page> {
+
+	private static final PageFilter ALL = new PageFilter() {
+		public boolean accept(String title, long id, int namespace) {
+			return true;
+		}
+	};
+
+	private final InputStream in;
+	private final XMLStreamReader reader;
+	private final PageFilter filter;
+	private final StringBuilder text = new StringBuilder();
+	private Page next;
+	private boolean done;
+	private long skipped;
+
+	/** Opens a dump, compressed or not, for reading all pages.
+	 *
+	 * @param fileName the dump
+	 */
+	public static PageReader open(String fileName) throws IOException {
+		return open(fileName, ALL);
+	}
+
+	/** Opens a dump, compressed or not.
+	 *
+	 * @param fileName the dump
+	 * @param filter the pages to read
+	 */
+	public static PageReader open(String fileName, PageFilter filter) throws IOException {
+		InputStream in = DumpInput.open(fileName);
+		try {
+			return new PageReader(in, filter);
+		} catch (XMLStreamException e) {
+			in.close();
+			throw new IOException("Could not start reading " + fileName + ": " + e.getMessage());
+		}
+	}
+
+	/** Constructor
+	 *
+	 * @param in the xml, in UTF-8
+	 * @param filter the pages to read
+	 */
+	public PageReader(InputStream in, PageFilter filter) throws XMLStreamException {
+		assert in != null;
+		assert filter != null;
+
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		this.in = in;
+		this.reader = factory.createXMLStreamReader(in, Parser.CHARSET);
+		this.filter = filter;
+	}
+
+	public boolean hasNext() {
+		if(next == null && !done) {
+			try {
+				next = readNext();
+			} catch (XMLStreamException e) {
+				throw new IllegalStateException("Could not read page", e);
+			}
+			done = next == null;
+		}
+		return next != null;
+	}
+
+	public Page next() {
+		if(!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		Page page = next;
+		next = null;
+		return page;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	public Iterator<Page> iterator() {
+		return this;
+	}
+
+	/** Gets the number of pages the filter rejected so far */
+	public long getSkippedCount() {
+		return skipped;
+	}
+
+	/** Closes the reader and its input */
+	public void close() throws IOException {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// the stream is closed below anyway
+		}
+		in.close();
+	}
+
+	private Page readNext() throws XMLStreamException {
+		while(reader.hasNext()) {
+			if(reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("page")) {
+				Page page = readPage();
+				if(page != null) {
+					return page;
+				}
+				++skipped;
+			}
+		}
+		return null;
+	}
+
+	/* Reads from <page> up to </page>. Returns null if the filter rejects the page. */
+	private Page readPage() throws XMLStreamException {
+		Page page = new Page();
+		int namespace = 0;
+		boolean accepted = false;
+		int depth = 1;
+
+		while(depth > 0) {
+			int event = reader.next();
+
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				String name = reader.getLocalName();
+
+				if(depth == 1 && name.equals("title")) {
+					page.setTitle(readText());
+				}
+				else if(depth == 1 && name.equals("ns")) {
+					namespace = Integer.parseInt(readText().trim());
+					page.setNamespace(namespace);
+				}
+				else if(depth == 1 && name.equals("id")) {
+					page.setId(Long.parseLong(readText().trim()));
+				}
+				else {
+					// title, ns and id come first; decide before anything else is read
+					if(!accepted) {
+						if(!filter.accept(page.getTitle(), page.getId(), namespace)) {
+							skip(depth + 1);
+							return null;
+						}
+						accepted = true;
+					}
+					if(name.equals("text")) {
+						page.setBody(readText());
+					} else {
+						if(depth == 1 && name.equals("redirect")) {
+							String target = reader.getAttributeValue(null, "title");
+							page.setRedirectTarget(target == null ? "" : target);
+						}
+						++depth;
+					}
+				}
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT) {
+				--depth;
+			}
+		}
+
+		if(!accepted && !filter.accept(page.getTitle(), page.getId(), namespace)) {
+			return null;
+		}
+		return page;
+	}
+
+	/* Reads the characters up to the current element's end tag. */
+	private String readText() throws XMLStreamException {
+		text.setLength(0);
+		int depth = 1;
+		while(depth > 0) {
+			switch(reader.next()) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+				++depth;
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				--depth;
+				break;
+			default:
+				break;
+			}
+		}
+		return text.toString();
+	}
+
+	/* Skips events until depth end tags more than start tags have passed, without reading text. */
+	private void skip(int depth) throws XMLStreamException {
+		while(depth > 0) {
+			int event = reader.next();
+			if(event == XMLStreamConstants.START_ELEMENT) {
+				++depth;
+			}
+			else if(event == XMLStreamConstants.END_ELEMENT) {
+				--depth;
+			}
+		}
+	}
+}
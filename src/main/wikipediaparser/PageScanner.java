@@ -0,0 +1,143 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import model.LanguageProfile;
+import model.Page;
+
+/** Collects the features of a page from its (unstripped) text in one pass, and sets them on the
+ * page, so that later stages need not search the text again:
+ * <ul>
+ * <li>categories, from <code>[[Category:name|sort key]]</code> links,</li>
+ * <li>the English title, from the <code>[[en:title]]</code> link,</li>
+ * <li>whether the page is a disambiguation page, from a template such as <code>{{disambig}}</code>,</li>
+ * <li>the redirect target, if not set already,</li>
+ * <li>the type of the first infobox, from <code>{{Infobox type</code>,</li>
+ * <li>aliases: the names in <code>'''bold'''</code> before the first heading.</li>
+ * </ul>
+ * Instances are immutable and can be shared by threads.
+ */
+public class PageScanner {
+
+	private final String categoryLink;
+	private final String interwikiLink;
+	private final String[] disambiguationTemplates;
+	private final String infoboxPrefix;
+
+	/** Constructor
+	 *
+	 * @param language the language of the pages
+	 */
+	public PageScanner(LanguageProfile language) {
+		categoryLink = language.getCategoryPrefix();
+		interwikiLink = language.getInterwikiPrefix();
+		disambiguationTemplates = language.getDisambiguationTemplates();
+		infoboxPrefix = language.getInfoboxPrefix();
+	}
+
+	/** Sets the features of a page from its body
+	 *
+	 * @param page the page, with its unstripped body
+	 */
+	public void scan(Page page) {
+		String body = page.getBody();
+		int n = body.length();
+		boolean introduction = true;
+
+		if(page.getRedirectTarget() == null) {
+			page.setRedirectTarget(LanguageProfile.findRedirectTarget(body));
+		}
+
+		int i = 0;
+		while(i < n) {
+			char c = body.charAt(i);
+
+			if(c == '[' && body.startsWith("[[", i)) {
+				i = scanLink(page, body, i + 2);
+			}
+			else if(c == '{' && body.startsWith("{{", i)) {
+				i = scanTemplate(page, body, i + 2);
+			}
+			else if(c == '=' && (i == 0 || body.charAt(i - 1) == '\n') && body.startsWith("==", i)) {
+				introduction = false;
+				i += 2;
+			}
+			else if(c == '\'' && introduction && body.startsWith("'''", i)) {
+				i = scanBold(page, body, i + 3);
+			}
+			else {
+				++i;
+			}
+		}
+	}
+
+	/* Reads a category or English link. Returns where to continue. */
+	private int scanLink(Page page, String body, int start) {
+		if(body.regionMatches(true, start, categoryLink, 0, categoryLink.length())) {
+			start += categoryLink.length();
+			int end = start;
+			while(end < body.length() && body.charAt(end) != '|' && !body.startsWith("]]", end)
+					&& !body.startsWith("<!--", end)) {
+				++end;
+			}
+			if(end == body.length()) {
+				return end;
+			}
+			String category = body.substring(start, end).trim();
+			if(category.length() > 0) {
+				page.getCategories().add(category);
+			}
+			return end;
+		}
+		if(interwikiLink != null && page.getEnglishLink() == null
+				&& body.regionMatches(true, start, interwikiLink, 0, interwikiLink.length())) {
+			start += interwikiLink.length();
+			int end = body.indexOf("]]", start);
+			int lineEnd = body.indexOf('\n', start);
+			if(end > start && (lineEnd == -1 || end < lineEnd)) {
+				page.setEnglishLink(body.substring(start, end));
+				return end + 2;
+			}
+		}
+		return start;
+	}
+
+	/* Reads the name of a template. Returns where to continue. */
+	private int scanTemplate(Page page, String body, int start) {
+		int end = start;
+		while(end < body.length() && "|}\n{".indexOf(body.charAt(end)) == -1) {
+			++end;
+		}
+		String name = body.substring(start, end).trim();
+
+		for(String disambiguation : disambiguationTemplates) {
+			if(name.equalsIgnoreCase(disambiguation)) {
+				page.setDisambiguation(true);
+			}
+		}
+		if(page.getInfobox() == null && name.regionMatches(true, 0, infoboxPrefix, 0, infoboxPrefix.length())) {
+			page.setInfobox(name.substring(infoboxPrefix.length()).trim());
+		}
+		return end;
+	}
+
+	/* Reads a bold text on one line, after the opening quotes. Returns where to continue. */
+	private int scanBold(Page page, String body, int start) {
+		while(start < body.length() && body.charAt(start) == '\'') {
+			++start; // '''''bold italic'''''
+		}
+		int end = body.indexOf("'''", start);
+		int lineEnd = body.indexOf('\n', start);
+		if(end == -1 || (lineEnd != -1 && lineEnd < end)) {
+			return start;
+		}
+		String alias = body.substring(start, end).replace("''", "").replace("[[", "").replace("]]", "").trim();
+		if(alias.length() > 0) {
+			page.getAliases().add(alias);
+		}
+		end += 3;
+		while(end < body.length() && body.charAt(end) == '\'') {
+			++end;
+		}
+		return end;
+	}
+}
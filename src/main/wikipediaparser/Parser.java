@@ -10,18 +10,21 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import com.google.common.collect.*;
 
+import compression.DumpInput;
+import dao.ConnectionPool;
 import dao.Dao;
+import dao.FileDao;
 import dao.IDao;
 
 import java.io.DataInputStream;
-import java.io.FileInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import model.CategoryGraph;
 import model.Language;
+import model.LanguageProfile;
 import model.Page;
 
 import org.apache.log4j.*;
@@ -43,14 +46,19 @@ public class Parser {
 	private Handler handler;
 	
 	private static String sourceXML;
+	private String source;
 	private static long commit_size;
 	private List<Page> pages;
-	private static Language language;
+	private List<Page> redirects;
+	private static LanguageProfile language;
 	private IDao dao;
 	private SyntaxStripper stripper;
+	private boolean recyclePages;
+	private boolean bulkLoad;
+	private WriteBehind writeBehind;
+	private CategoryGraph.Builder categoryGraph;
 	
-	public Pattern enLink;
-	public Pattern disambiguationPattern;
+	private PageScanner scanner;
 	
 	private static Logger logger = Logger.getLogger(Parser.class);
     
@@ -61,7 +69,12 @@ public class Parser {
 	 * Possible arguments are:
 	 * -f sourceXML file
 	 * -c commit size (after how many pages to commit to storage)
-	 * -l language (english or dutch)
+	 * -l language (english, dutch, or any other name or code in languages.properties)
+	 * -b bulk load (into empty or new tables; faster, but skips unique checks)
+	 * -w number of writer threads storing pages while parsing goes on (0 stores in the parser's thread)
+	 * -d directory to store in with a FileDao, instead of in the database
+	 * -g file to write the category graph to (the parent categories of each category page;
+	 *    the extraction reads categoryGraph.txt for English and categoryGraph_nl.txt for Dutch)
 	 */
 	public static void main(String[] args) {
 		
@@ -69,7 +82,11 @@ public class Parser {
 		
 		sourceXML = "Wikipedia-20100228142334.xml";
 		commit_size = 100;
-		language = Language.ENGLISH;
+		language = LanguageProfile.forLanguage(Language.ENGLISH);
+		boolean bulkLoad = false;
+		int writers = 1;
+		File directory = null;
+		File graphFile = null;
 		
 		for(int i = 0; i < args.length; ++i) {
 			if (args[i].equalsIgnoreCase("-f")) {
@@ -80,13 +97,54 @@ public class Parser {
 			}
 			if (args[i].equalsIgnoreCase("-l")) {
 				String lang = args[i+1];
-				language = Language.valueOf(lang.toUpperCase());
+				language = LanguageProfile.forName(lang);
+			}
+			if (args[i].equalsIgnoreCase("-b")) {
+				bulkLoad = true;
+			}
+			if (args[i].equalsIgnoreCase("-w")) {
+				writers = Integer.parseInt(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-d")) {
+				directory = new File(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-g")) {
+				graphFile = new File(args[i+1]);
 			}
 		}
 		
+		// a FileDao is shared by all writers, Daos each have a connection
+		if(directory == null) {
+			ConnectionPool.getShared().reserve(writers + 1);
+		}
+		IDao dao = directory == null ? new Dao() : new FileDao(directory);
+		List<IDao> writerDaos = Lists.newArrayList();
+		for(int i = 0; i < writers; ++i) {
+			writerDaos.add(directory == null ? new Dao() : dao);
+		}
 		try {
-		Parser p = new Parser();
+		Parser p = new Parser(dao);
+		p.setRecyclePages(true);
+		p.setBulkLoad(bulkLoad);
+		if(writers > 0) {
+			p.setWriteBehind(new WriteBehind(writerDaos, 2 * writers));
+		}
+		if(graphFile != null) {
+			p.setCategoryGraph(new CategoryGraph.Builder());
+		}
 		p.parseFile(); //primary function of the program
+		if(graphFile != null) {
+			CategoryGraph graph = p.getCategoryGraph().build();
+			graph.write(graphFile);
+			logger.info("Wrote " + graph.size() + " categories with " + graph.getEdgeCount() + " parents to " + graphFile);
+		}
+		dao.close();
+		for(IDao writerDao : writerDaos) {
+			writerDao.close();
+		}
+		if(directory == null) {
+			ConnectionPool.getShared().logStatistics();
+		}
 		} catch(SAXException e) {
 			logger.fatal("Problem creating new SAXParser", e);
 			logger.info("Cannot continue without parser, exiting");
@@ -107,11 +165,33 @@ public class Parser {
 	 * 
 	 */
 	public Parser() throws SAXException, ParserConfigurationException {
+		this(new Dao());
+	}
+
+	/** Constructor
+	 * 
+	 * @param dao where pages are stored
+	 */
+	protected Parser(IDao dao) throws SAXException, ParserConfigurationException {
+		this(dao, new SyntaxStripper(language));
+	}
+
+	/** Constructor for running several Parsers in one JVM: the stripper's patterns are costly
+	 * to compile, and can be shared by all of them.
+	 * 
+	 * @param dao where pages are stored
+	 * @param stripper stripper for the current language
+	 */
+	public Parser(IDao dao, SyntaxStripper stripper) throws SAXException, ParserConfigurationException {
 		factory = SAXParserFactory.newInstance();
 		handler = new Handler(this);
 		pages = Lists.newLinkedList();
-		dao = new Dao();
-		stripper = new SyntaxStripper(language);
+		redirects = Lists.newArrayList();
+		this.dao = dao;
+		this.stripper = stripper;
+		source = sourceXML;
+		
+		scanner = new PageScanner(language);
 		
 		saxParser = factory.newSAXParser();
 		
@@ -119,13 +199,40 @@ public class Parser {
 
 	
 	
-	/**Run method for parsing the file
+	/**Run method for parsing the file, in a bulk load if set. Returns when all pages are stored,
+	 * also with a write-behind.
 	 * @throws IOException 
 	 * @throws SAXException 
 	 */
 	public void parseFile() throws SAXException, IOException {
+		if(writeBehind != null) {
+			writeBehind.start(language.getCode(), bulkLoad, recyclePages);
+		}
+		else if(bulkLoad) {
+			dao.startBulkLoad();
+		}
+		try {
+			readFile();
+			if(writeBehind != null) {
+				writeBehind.flush();
+			}
+		} finally {
+			if(writeBehind != null) {
+				writeBehind.close();
+			}
+			else if(bulkLoad) {
+				dao.finishBulkLoad();
+			}
+		}
+	}
+	
+	/** Reads the file with the SAX parser; pages are stored as they are read.
+	 * @throws IOException 
+	 * @throws SAXException 
+	 */
+	protected void readFile() throws SAXException, IOException {
 		InputSource inputSource = new InputSource();
-		inputSource.setByteStream(new DataInputStream(new FileInputStream(sourceXML)));
+		inputSource.setByteStream(new DataInputStream(DumpInput.open(source)));
 		inputSource.setEncoding(CHARSET);
 		saxParser.parse(inputSource, handler);
 	}
@@ -135,158 +242,142 @@ public class Parser {
 	 * for available data and strips unnecessary syntax out of the text body. Page is fully initialized
 	 * and ready for use after running this method.
 	 * 
+	 * Only reads the Parser's state, so it may be called for different pages concurrently.
+	 * 
 	 * @param page the page whose text to parse
 	 */
 	protected void parseBody(Page page) {
 		logger.debug("Parsing body");
-		if(language == Language.ENGLISH) {
-			enLink = Pattern.compile("\\[\\[en:(.+?)\\]\\]");
-		    disambiguationPattern = Pattern.compile("\\{\\{disambig\\}\\}");
-		}
-		else {
-			enLink = Pattern.compile("\\[\\[en:(" +
-		    		".+?" +
-		    		")\\]\\]");
-		    disambiguationPattern = Pattern.compile("\\{\\{dp\\}\\}");
-		}
-		buildCategories(page);
-		page.setDisambiguation(detectDisambiguation(page));
-		page.setEnglishLink(extractInterwikiLink(page));
+		scanner.scan(page);
 		page.setBody(stripper.stripWikipediaSyntax(page.getBody()));
 	}
 	
-	/** Detects whether the given page is a disambiguation page or not.
+	/**Add a complete page to the pages list, which indicates it should be stored. Redirects go
+	 * to a list of their own, pages of namespaces other than articles and categories are not
+	 * stored. The parents of category pages go into the category graph, if one is collected.
 	 * 
-	 * @param page the page to check
-	 * @return true if disambiguation page, false otherwise
+	 * @param p the page to add to the collection
+	 * @return reference to the page object
 	 */
-	private boolean detectDisambiguation(Page page) {
-
-		Matcher disMatcher = disambiguationPattern.matcher(page.getBody());
-		
-		if(disMatcher.find()) {
-			return true;
+	Page addPage(Page p) {
+		assert(p != null); //check that p is not null!
+		if(p.isRedirect()) {
+			redirects.add(p);
 		}
-		else {
-			return false;
-		}	
+		else if(isStored(p)) {
+			pages.add(p);
+		}
+		collectCategories(p);
+		return p;
 	}
-
-	/** Looks for an interwiki link in the current document.
+	
+	/** Adds the parents of a category page to the category graph, if one is collected. The body
+	 * of the page must have been parsed. May be called for different pages concurrently.
 	 * 
-	 * @param page
-	 * @return String containing the enLink or if does not exist, "" (empty String)
+	 * @param p a page of any namespace
 	 */
-	protected String extractInterwikiLink(Page page) {
-		
-		Matcher enMatch = enLink.matcher(page.getBody());
-		
-		//english pages don't have english links
-		if(language == Language.ENGLISH || !(enMatch.find())) {
-			return "";
+	void collectCategories(Page p) {
+		if(categoryGraph != null && isCategoryPage(p)) {
+			categoryGraph.add(p.getTitle().substring(language.getCategoryPrefix().length()), p.getCategories());
 		}
-		else
-			return enMatch.group(1);
+	}
+	
+	/* Checks if a page is the page of a category, by its title */
+	private boolean isCategoryPage(Page p) {
+		String prefix = language.getCategoryPrefix();
+		return !p.isRedirect() && p.getTitle() != null && p.getBody() != null &&
+			p.getTitle().regionMatches(true, 0, prefix, 0, prefix.length());
 	}
 
-	/** Retrieves and stores all categories for a page
-	 * 
-	 * @param page the page to use
+	/** Commits all pages in pages (list of pages) every so often (Depending on commit size). 
+	 * Redirects are small, so they are committed in batches of ten times the commit size.
+	 * Called by handler at the end of every page tag, and with forceCommit at the end of the
+	 * file, where it also waits for the write-behind to store everything.
 	 */
-	protected void buildCategories(Page page) {
-		int startAt = 0;
-		int nextCatLocation = 0;
-		int nextCloseCat = 0;
-		int nextPipe = 0;
-		int nextBrackets = 0;
-		int nextComment = 0;
-		String category = "";
-		String categoryIdentifier;
-		
-		if(language == Language.ENGLISH) {
-			categoryIdentifier = "[[Category:";
-		}
-		else {
-			categoryIdentifier = "[[Categorie:";
-		}
+	protected void commitPage(boolean forceCommit) {
+		// with a write-behind, pages are only reused once the writers are done with them
+		boolean recycleNow = recyclePages && writeBehind == null;
 		
-		//TODO: Change to Patterns/Matchers
-		while((nextCatLocation = page.getBody().indexOf(categoryIdentifier, startAt)) != -1) {
-			//Pipes, brackets, and comments can occur so we check to see which comes first.
-			nextBrackets = page.getBody().indexOf("]]",nextCatLocation);
-			nextPipe = page.getBody().indexOf("|",nextCatLocation);
-			nextComment = page.getBody().indexOf("<!--",nextCatLocation);
-			
-			//need to compare substring values to see who comes next
-			if(nextBrackets == -1 && nextPipe == -1) {
-				if(nextComment == -1) break;
-				else nextCloseCat = nextComment;
+		if(!pages.isEmpty() && (forceCommit || pages.size() >= commit_size)) {
+			storePages(pages);
+			if(recycleNow) {
+				handler.recycle(pages);
 			}
-			else if(nextPipe == -1)
-			{
-				if(nextComment == -1) {
-					nextCloseCat = nextBrackets;
-				}
-				else {
-					nextCloseCat = nextBrackets < nextComment ? nextBrackets : nextComment;
-				}
-			}
-			else if(nextBrackets == -1)
-			{
-				if(nextComment == -1) {
-					nextCloseCat = nextPipe;
-				}
-				else {
-					nextCloseCat = nextPipe < nextComment ? nextPipe : nextComment;
-				}
+			pages.clear(); //clear out pages as they've been committed.
+		}
+		if(!redirects.isEmpty() && (forceCommit || redirects.size() >= commit_size * 10)) {
+			storeRedirects(redirects);
+			if(recycleNow) {
+				handler.recycle(redirects);
 			}
-			else if(nextComment == -1) {
-				nextCloseCat = nextBrackets < nextPipe ? nextBrackets : nextPipe;
+			redirects.clear();
+		}
+		if(writeBehind != null) {
+			if(forceCommit) {
+				writeBehind.flush();
 			}
-			else {
-				int temp = Math.min(nextBrackets, nextPipe);				
-				nextCloseCat = Math.min(temp, nextComment);
+			if(recyclePages) {
+				handler.recycle(writeBehind.drainStored());
 			}
-			
-			//
-			category = page.getBody().substring(nextCatLocation+categoryIdentifier.length(),nextCloseCat);
-			page.getCategories().add(category);
-			startAt = nextCloseCat;
 		}
 	}
-
 	
-	/**Add a page to the pages list, which indicates it should be stored
+	/** Stores a batch of pages
 	 * 
-	 * @param p the page to add to the collection
-	 * @return reference to the page object
+	 * @param batch the pages to store
 	 */
-	Page addPage(Page p) {
-		assert(p != null); //check that p is not null!
-		pages.add(p);
-		return p;
+	protected void storePages(List<Page> batch) {
+		assert(language != null);
+		
+		if(writeBehind != null) {
+			writeBehind.storePages(batch);
+		}
+		else {
+			dao.processBatch(language.getCode(), batch);
+		}
 	}
-
-	/** Commits all pages in pages (list of pages) every so often (Depending on commit size). 
-	 * Called by handler at the end of every page tag.
+	
+	/** Stores a batch of redirects
+	 * 
+	 * @param batch the redirects to store
 	 */
-	protected void commitPage(boolean forceCommit) {
+	protected void storeRedirects(List<Page> batch) {
+		assert(language != null);
 		
-		if(forceCommit || pages.size() % commit_size == 0) {
-			assert(language != null);
-			
-			dao.processBatch(language.abbreviation(), pages);
-			pages.clear(); //clear out pages as they've been committed.
+		if(writeBehind != null) {
+			writeBehind.storeRedirects(batch);
+		}
+		else {
+			dao.processRedirects(language.getCode(), batch);
 		}
-			
+	}
+	
+	/** Checks if a page is parsed and stored in full: not a redirect, and an article or a
+	 * category page. Category pages are stored because EntityUtil looks up the parents of
+	 * categories, and the Dutch types, in them.
+	 */
+	public static boolean isStored(Page page) {
+		return !page.isRedirect() &&
+			(page.getNamespace() == 0 || page.getNamespace() == Page.CATEGORY_NAMESPACE);
+	}
+	
+	/** Finds the target of a redirect in a page text, which starts with <code>#REDIRECT [[target]]</code>
+	 * (or the keyword of another language, such as <code>#DOORVERWIJZING</code>).
+	 * 
+	 * @param body the page text
+	 * @return the target title, or null if the text is no redirect
+	 * @see LanguageProfile#findRedirectTarget(String)
+	 */
+	public static String findRedirectTarget(String body) {
+		return LanguageProfile.findRedirectTarget(body);
 	}
 	
 	public String getSourceDocument() {
-		return sourceXML;
+		return source;
 	}
 	
 	public void setSourceDocument(String sourceDocument) {
-		sourceXML = sourceDocument;
+		source = sourceDocument;
 	}
 	
 	public long getCommitSize() {
@@ -296,4 +387,54 @@ public class Parser {
 	public void setCommitSize(long size) {
 		commit_size = size;
 	}
+	
+	/** Sets whether pages are reused after they have been stored. Only safe if the IDao keeps
+	 * no reference to the pages it stores.
+	 */
+	public void setRecyclePages(boolean recycle) {
+		recyclePages = recycle;
+	}
+	
+	/** Sets whether the file is stored in a bulk load: faster, but meant for loading empty
+	 * tables, as the database may skip checks.
+	 * 
+	 * @see IDao#startBulkLoad()
+	 */
+	public void setBulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+	}
+	
+	/** Sets a write-behind that stores the batches in other threads, with IDaos of its own,
+	 * while parsing goes on. Without one, batches are stored in the parsing thread.
+	 */
+	public void setWriteBehind(WriteBehind writeBehind) {
+		this.writeBehind = writeBehind;
+	}
+	
+	/** Sets a builder to collect the parents of all category pages in, for a CategoryGraph */
+	public void setCategoryGraph(CategoryGraph.Builder categoryGraph) {
+		this.categoryGraph = categoryGraph;
+	}
+	
+	public CategoryGraph.Builder getCategoryGraph() {
+		return categoryGraph;
+	}
+	
+	public static LanguageProfile getLanguage() {
+		return language;
+	}
+	
+	/** Sets the language. Must be called before constructing a Parser, as the patterns 
+	 * are language specific.
+	 */
+	public static void setLanguage(Language lang) {
+		setLanguage(LanguageProfile.forLanguage(lang));
+	}
+	
+	/** Sets the language. Must be called before constructing a Parser, as the patterns 
+	 * are language specific.
+	 */
+	public static void setLanguage(LanguageProfile lang) {
+		language = lang;
+	}
 }
@@ -0,0 +1,369 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import model.CategoryGraph;
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.PropertyConfigurator;
+import org.xml.sax.SAXException;
+
+import com.google.common.collect.Lists;
+
+import dao.ConnectionPool;
+import dao.Dao;
+import dao.IDao;
+
+/** Parses a complete wikipedia dump in one pass, without splitting it first. The dump may be
+ * compressed (see compression.DumpInput).
+ *
+ * Three stages run concurrently and hand pages to each other over bounded queues:
+ * <ol>
+ * <li>the calling thread reads the dump with the SAX Handler; every finished article or redirect
+ * is queued as it is, without parsing its body,</li>
+ * <li>a number of strip threads parse the bodies (categories, links, syntax stripping),</li>
+ * <li>one store thread collects the parsed pages in batches of the commit size and stores them.</li>
+ * </ol>
+ * Because the queues are bounded, the reader never gets more than a few pages ahead of the
+ * database. Pages are stored in the order the strip threads finish them. The strip threads also
+ * collect the category graph, if one is set.
+ *
+ * If a stage fails, the other stages are stopped and readFile throws its failure as an
+ * IOException; nothing more is queued, so pages read after the failure are not stored.
+ *
+ * The Splitter is no longer needed to parse a dump; it is only useful for producing the
+ * split files themselves.
+ */
+public class StreamingIngest extends Parser {
+
+	private static final Page END = new Page(); // marks the end of a queue
+	private static final int PROGRESS_INTERVAL = 10000;
+
+	private final BlockingQueue<Page> parseQueue;
+	private final BlockingQueue<Page> storeQueue;
+	private final int stripThreads;
+	private final List<Future<Object>> stages = Lists.newArrayList();
+	private volatile boolean stopped;
+	private Throwable failure; // the first failure of a stage, guarded by this
+	private Page current;
+	private long pageCount;
+
+	private static Logger logger = Logger.getLogger(StreamingIngest.class);
+
+	/**
+	 * Possible arguments are:
+	 * -f source dump (.xml, .xml.gz or .xml.bz2)
+	 * -c commit size (after how many pages to commit to storage)
+	 * -l language (english, dutch, or any other name or code in languages.properties)
+	 * -t number of strip threads (defaults to the number of processors)
+	 * -q queue size (pages per queue)
+	 * -b bulk load (into empty or new tables; faster, but skips unique checks)
+	 * -g file to write the category graph to (see Parser)
+	 */
+	public static void main(String[] args) {
+
+		PropertyConfigurator.configure("log4j.properties");
+
+		String sourceXML = "Wikipedia-20100228142334.xml";
+		long commitSize = 100;
+		int threads = Runtime.getRuntime().availableProcessors();
+		int queueSize = 1000;
+		boolean bulkLoad = false;
+		File graphFile = null;
+		Parser.setLanguage(Language.ENGLISH);
+
+		for(int i = 0; i < args.length; ++i) {
+			if (args[i].equalsIgnoreCase("-f")) {
+				sourceXML = args[i+1];
+			}
+			if (args[i].equalsIgnoreCase("-c")) {
+				commitSize = Long.parseLong(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-l")) {
+				String lang = args[i+1];
+				Parser.setLanguage(LanguageProfile.forName(lang));
+			}
+			if (args[i].equalsIgnoreCase("-t")) {
+				threads = Integer.parseInt(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-q")) {
+				queueSize = Integer.parseInt(args[i+1]);
+			}
+			if (args[i].equalsIgnoreCase("-b")) {
+				bulkLoad = true;
+			}
+			if (args[i].equalsIgnoreCase("-g")) {
+				graphFile = new File(args[i+1]);
+			}
+		}
+
+		Dao dao = new Dao();
+		try {
+			try {
+				StreamingIngest ingest = new StreamingIngest(dao, threads, queueSize);
+				ingest.setSourceDocument(sourceXML);
+				ingest.setCommitSize(commitSize);
+				ingest.setBulkLoad(bulkLoad);
+				if(graphFile != null) {
+					ingest.setCategoryGraph(new CategoryGraph.Builder());
+				}
+				ingest.parseFile();
+				if(graphFile != null) {
+					CategoryGraph graph = ingest.getCategoryGraph().build();
+					graph.write(graphFile);
+					logger.info("Wrote " + graph.size() + " categories with " + graph.getEdgeCount() + " parents to " + graphFile);
+				}
+			} finally {
+				dao.close();
+			}
+			ConnectionPool.getShared().logStatistics();
+		} catch(SAXException e) {
+			logger.fatal("Problem creating new SAXParser or parsing the dump", e);
+			System.exit(1);
+		} catch (ParserConfigurationException p) {
+			logger.fatal("Could not configure parser", p);
+			System.exit(1);
+		} catch (IOException i) {
+			logger.fatal("Could not read the dump or store its pages", i);
+			System.exit(1);
+		}
+	}
+
+	/** Constructor
+	 *
+	 * @param dao where the store stage stores pages
+	 * @param stripThreads number of threads parsing page bodies
+	 * @param queueSize number of pages each queue holds
+	 */
+	public StreamingIngest(IDao dao, int stripThreads, int queueSize)
+			throws SAXException, ParserConfigurationException {
+		super(dao);
+		assert stripThreads > 0;
+		assert queueSize > 0;
+
+		this.stripThreads = stripThreads;
+		parseQueue = new ArrayBlockingQueue<Page>(queueSize);
+		storeQueue = new ArrayBlockingQueue<Page>(queueSize);
+	}
+
+	/** Reads the whole dump, returning when all pages are stored.
+	 *
+	 * @throws IOException also if a strip or store stage failed, with its failure as the cause
+	 */
+	@Override
+	protected void readFile() throws SAXException, IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(stripThreads + 1);
+		pageCount = 0;
+		stopped = false;
+		parseQueue.clear();
+		storeQueue.clear();
+
+		try {
+			// a stage failing right away waits for the others to be started, to stop them
+			synchronized(this) {
+				failure = null;
+				stages.clear();
+				for(int i = 0; i < stripThreads; ++i) {
+					stages.add(pool.submit(new Strip()));
+				}
+				stages.add(pool.submit(new Store()));
+			}
+
+			boolean read = false;
+			try {
+				super.readFile();
+				for(int i = 0; i < stripThreads; ++i) {
+					put(parseQueue, END);
+				}
+				read = true;
+			} catch (Stopped e) {
+				// a stage failed, its failure is thrown below
+			} finally {
+				if(!read) {
+					stop(null); // the stages would wait for pages forever
+				}
+			}
+			if(read) {
+				for(Future<Object> stage : stages) {
+					await(stage);
+				}
+			}
+			synchronized(this) {
+				if(failure != null) {
+					throw new IOException("Pipeline stage failed: " + failure, failure);
+				}
+			}
+			logger.info("Stored " + pageCount + " pages");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/* The Handler calls the following three methods. Pages are not parsed here, but queued
+	 * once they are complete. */
+
+	@Override
+	Page addPage(Page p) {
+		assert(p != null);
+		if(p.isRedirect() || isStored(p)) {
+			current = p;
+		}
+		return p;
+	}
+
+	@Override
+	protected void parseBody(Page page) {
+		// done by the strip threads
+	}
+
+	@Override
+	protected void commitPage(boolean forceCommit) {
+		if(!forceCommit && current != null) {
+			put(parseQueue, current);
+			current = null;
+			if(++pageCount % PROGRESS_INTERVAL == 0) {
+				logger.info("Read " + pageCount + " pages");
+			}
+		}
+	}
+
+	/* Waits for room in the queue, giving up with Stopped once the stages are stopped. Stopped
+	 * leaves the SAX parser through the Handler. */
+	private void put(BlockingQueue<Page> queue, Page page) {
+		try {
+			while(!queue.offer(page, 1, TimeUnit.SECONDS)) {
+				if(stopped) {
+					throw new Stopped();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stop(e);
+			throw new Stopped();
+		}
+	}
+
+	/* Records the first failure of a stage, if any, and stops all stages; they are interrupted
+	 * and queue nothing more. */
+	private synchronized void stop(Throwable cause) {
+		if(failure == null) {
+			failure = cause;
+		}
+		if(!stopped) {
+			stopped = true;
+			for(Future<Object> stage : stages) {
+				stage.cancel(true);
+			}
+		}
+	}
+
+	/* Waits for a stage to end. A failed or cancelled stage has stopped the others and recorded
+	 * the failure. */
+	private static void await(Future<Object> stage) throws IOException {
+		try {
+			stage.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the pipeline");
+		} catch (ExecutionException e) {
+			// recorded by the stage
+		} catch (CancellationException e) {
+			// stopped after a failure
+		}
+	}
+
+	/** Thrown in the reading thread once the stages are stopped. */
+	private static class Stopped extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/** A stage of the pipeline, which stops all stages if it fails. */
+	private abstract class Stage implements Callable<Object> {
+
+		public Object call() {
+			try {
+				run();
+			} catch (InterruptedException e) {
+				// stopped, because another stage failed
+			} catch (RuntimeException e) {
+				stop(e);
+			} catch (Error e) {
+				stop(e);
+				throw e;
+			}
+			return null;
+		}
+
+		abstract void run() throws InterruptedException;
+	}
+
+	/** Parses page bodies. */
+	private class Strip extends Stage {
+
+		void run() throws InterruptedException {
+			Page page;
+			while((page = parseQueue.take()) != END) {
+				if(isStored(page)) {
+					StreamingIngest.super.parseBody(page);
+					collectCategories(page);
+				}
+				storeQueue.put(page);
+			}
+			storeQueue.put(END);
+		}
+	}
+
+	/** Stores parsed pages in batches, until every strip thread is done. */
+	private class Store extends Stage {
+
+		void run() throws InterruptedException {
+			List<Page> batch = Lists.newArrayList();
+			List<Page> redirects = Lists.newArrayList();
+			int running = stripThreads;
+
+			while(running > 0) {
+				Page page = storeQueue.take();
+				if(page == END) {
+					--running;
+				}
+				else if(page.isRedirect()) {
+					redirects.add(page);
+					if(redirects.size() >= getCommitSize() * 10) {
+						storeRedirects(redirects);
+						redirects.clear();
+					}
+				}
+				else {
+					batch.add(page);
+					if(batch.size() >= getCommitSize()) {
+						storePages(batch);
+						batch.clear();
+					}
+				}
+			}
+			if(!batch.isEmpty()) {
+				storePages(batch);
+			}
+			if(!redirects.isEmpty()) {
+				storeRedirects(redirects);
+			}
+		}
+	}
+}
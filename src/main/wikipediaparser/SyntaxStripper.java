@@ -9,6 +9,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import model.Language;
+import model.LanguageProfile;
 
 import org.apache.log4j.Logger;
 
@@ -43,7 +44,13 @@ public class SyntaxStripper {
 	private Pattern afbeelding;
 	private Pattern bestand;
 	
-	private Language language;
+	private Language language; // null if the regexes are not used
+	private final boolean interruptible;
+	private final WikitextStripper tokenizer; // null when the regexes are used
+	
+	/** Set this system property to true to strip with the regexes instead of the single-pass
+	 * WikitextStripper, for comparing the two */
+	public static final String REGEX_PROPERTY = "wikipediaparser.regexStripper";
 	
 	private static Logger logger = Logger.getLogger(SyntaxStripper.class);
 
@@ -52,14 +59,47 @@ public class SyntaxStripper {
 	 * 
 	 * @param langAbbrev
 	 */
-	public SyntaxStripper(Language language) {
-		this.language = language;
+	public SyntaxStripper(LanguageProfile language) {
+		this(language, false);
+	}
+	
+	/** Constructor
+	 * 
+	 * @param language the language to strip
+	 * @param interruptible true to let an interrupt stop the stripping of a page (with an
+	 * IllegalStateException), for when parsing runs on a thread that may be cancelled
+	 */
+	public SyntaxStripper(LanguageProfile language, boolean interruptible) {
+		this(language, interruptible, Boolean.getBoolean(REGEX_PROPERTY));
+	}
+	
+	/** Constructor
+	 * 
+	 * @param language the language to strip
+	 * @param interruptible true to let an interrupt stop the stripping of a page (with an
+	 * IllegalStateException); only the regexes can take long enough to need it
+	 * @param useRegex true to strip with the regexes, false to use the single-pass WikitextStripper.
+	 * There are regexes for English and Dutch only.
+	 */
+	public SyntaxStripper(LanguageProfile language, boolean interruptible, boolean useRegex) {
+		this.interruptible = interruptible;
 		
-		if(language == Language.ENGLISH) {
+		if(useRegex && language.getCode().equals(Language.ENGLISH.abbreviation())) {
+			this.language = Language.ENGLISH;
+			tokenizer = null;
 			initializeEnglishPatterns();
 		}
-		else
+		else if(useRegex && language.getCode().equals(Language.DUTCH.abbreviation())) {
+			this.language = Language.DUTCH;
+			tokenizer = null;
 			initializeDutchPatterns();
+		}
+		else {
+			if(useRegex) {
+				logger.warn("No regexes for " + language + ", using the WikitextStripper");
+			}
+			tokenizer = WikitextStripper.forLanguage(language);
+		}
 	}
 	
 	/** Initializes English language regex patterns for manipulating and stripping wikipedia data. These
@@ -243,7 +283,10 @@ public class SyntaxStripper {
 		String result = text;
 		logger.debug("Result is originally set to text - if stripping fails it will return original string");
 		
-		if(language == Language.ENGLISH) {
+		if(tokenizer != null) {
+			result = tokenizer.strip(text);
+		}
+		else if(language == Language.ENGLISH) {
 			result = stripWikipediaSyntaxEnglish(text);
 		}
 		else if(language == Language.DUTCH) {
@@ -253,65 +296,69 @@ public class SyntaxStripper {
 		return result;
 	}
 
+	private CharSequence chars(String text) {
+		return interruptible ? new InterruptibleCharSequence(text) : text;
+	}
+
 	/** Strips a Dutch wikipedia text of multiple un-needed constructs.
 	 * 
 	 * @param text the text to manipulate
 	 * @return the manipulated text
 	 */
 	private String stripWikipediaSyntaxDutch(String text) {
-		Matcher matcher = bottomText.matcher(text);
+		Matcher matcher = bottomText.matcher(chars(text));
 		text = matcher.replaceFirst("");
 	        
-		matcher = defaultSort.matcher(text);
+		matcher = defaultSort.matcher(chars(text));
 		text = matcher.replaceFirst("");
 		
-		matcher = category.matcher(text);
+		matcher = category.matcher(chars(text));
 		text = matcher.replaceFirst("");
 
-		matcher = infobox.matcher(text);
+		matcher = infobox.matcher(chars(text));
 		text = matcher.replaceFirst("");			
 			
-		matcher = tables.matcher(text);
+		matcher = tables.matcher(chars(text));
 		text = matcher.replaceAll("");
 			
-		matcher = image.matcher(text);
+		matcher = image.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = afbeelding.matcher(text);
+		matcher = afbeelding.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = ref.matcher(text);
+		matcher = ref.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = refLong.matcher(text);
+		matcher = refLong.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = file.matcher(text);
+		matcher = file.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = bestand.matcher(text);
+		matcher = bestand.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = seeAlso2.matcher(text);
+		matcher = seeAlso2.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = comment.matcher(text);
+		matcher = comment.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = cite.matcher(text);
+		matcher = cite.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = legend.matcher(text);
+		matcher = legend.matcher(chars(text));
 		text = matcher.replaceAll("");
     
-//		matcher = hashmark.matcher(text);
+//		matcher = hashmark.matcher(chars(text));
 //		text = matcher.replaceAll("");
 	    
-		matcher = asterix.matcher(text);
+		matcher = asterix.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
 		if(text.length() > 0) {
-			matcher = bold.matcher(text);
+			matcher = bold.matcher(chars(text));
 			matcher.region(Math.min(100, text.length()-1), text.length()-1);
 			text = matcher.replaceAll("");
 		}
@@ -328,71 +375,71 @@ public class SyntaxStripper {
 	 */
 	private String stripWikipediaSyntaxEnglish(String text) {	
 		
-		Matcher matcher = bottomText.matcher(text);
+		Matcher matcher = bottomText.matcher(chars(text));
 		text = matcher.replaceFirst("");
 		
-		matcher = defaultSort.matcher(text);
+		matcher = defaultSort.matcher(chars(text));
 		text = matcher.replaceFirst("");
 		
-		matcher = category.matcher(text);
+		matcher = category.matcher(chars(text));
 		text = matcher.replaceFirst("");
 
-		matcher = infobox.matcher(text);
+		matcher = infobox.matcher(chars(text));
 		text = matcher.replaceFirst("");
 			
-		matcher = articleIssues.matcher(text);
+		matcher = articleIssues.matcher(chars(text));
 		text = matcher.replaceFirst("");
 			
-		matcher = tables.matcher(text);
+		matcher = tables.matcher(chars(text));
 		text = matcher.replaceAll("");
 			
-		matcher = image.matcher(text);
+		matcher = image.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = ref.matcher(text);
+		matcher = ref.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = refLong.matcher(text);
+		matcher = refLong.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
-		matcher = file.matcher(text);
+		matcher = file.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = seeAlso2.matcher(text);
+		matcher = seeAlso2.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = comment.matcher(text);
+		matcher = comment.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = cite.matcher(text);
+		matcher = cite.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = pp_move_indef.matcher(text);
+		matcher = pp_move_indef.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
-		matcher = legend.matcher(text);
+		matcher = legend.matcher(chars(text));
 		text = matcher.replaceAll("");
     
-//		matcher = hashmark.matcher(text);
+//		matcher = hashmark.matcher(chars(text));
 //		text = matcher.replaceAll("");
 	    
-		matcher = asterix.matcher(text);
+		matcher = asterix.matcher(chars(text));
 		text = matcher.replaceAll("");
 	    
 		if(text.length() > 0) {
-			matcher = bold.matcher(text);
+			matcher = bold.matcher(chars(text));
 			matcher.region(Math.min(100, text.length()-1), text.length()-1);
 			text = matcher.replaceAll("");
 		}
 
-		matcher = mainDef.matcher(text);
+		matcher = mainDef.matcher(chars(text));
 		while(matcher.find()) {
 			if(matcher.groupCount() > 0) {
 				//text.replace(target, replacement)
 			}
 		}
 	    
-		matcher = mainRef.matcher(text);
+		matcher = mainRef.matcher(chars(text));
 		text = matcher.replaceAll("");
 		
 		return text;
@@ -0,0 +1,307 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import model.LanguageProfile;
+
+/** Strips wikipedia syntax in a single pass over the text, writing what is kept to one buffer.
+ * Removes the same constructs as the regexes of the SyntaxStripper, but follows the nesting
+ * of templates, tables, links and tags, so an infobox holding templates or an image caption
+ * holding links is removed as a whole.
+ *
+ * Per language, the stripper is configured with (see LanguageProfile):
+ * <ul>
+ * <li>section headings, templates and link prefixes that end the useful text (references,
+ * DEFAULTSORT, categories): everything from there on is dropped,</li>
+ * <li>templates and link prefixes (infoboxes, citations, images) that are removed,</li>
+ * <li>optionally, the prefix of <code>:''Main article: ...''</code> notes, which are removed.</li>
+ * </ul>
+ * Tables, comments and references are always removed, as are <code>*</code> and <code>'''</code>.
+ * Unclosed constructs are kept as text.
+ *
+ * Instances are immutable and can be shared by threads.
+ */
+public class WikitextStripper {
+
+	private final String[] endHeadings;
+	private final String[] endTemplates;
+	private final String[] endLinks;
+	private final String[] removedTemplates;
+	private final String[] removedLinks;
+	private final String mainArticleNote;
+
+	/** Creates the stripper for a language */
+	public static WikitextStripper forLanguage(LanguageProfile language) {
+		return new WikitextStripper(language.getEndHeadings(), language.getEndTemplates(),
+				new String[] {language.getCategoryPrefix()}, language.getRemovedTemplates(),
+				language.getRemovedLinks(), language.getMainArticleNote());
+	}
+
+	/** Constructor. Names are matched as prefixes, case insensitively; headings are matched
+	 * whole and must be given in lower case.
+	 *
+	 * @param endHeadings section headings from which the text is dropped
+	 * @param endTemplates templates from which the text is dropped
+	 * @param endLinks link prefixes from which the text is dropped
+	 * @param removedTemplates templates that are removed
+	 * @param removedLinks link prefixes of links that are removed
+	 * @param mainArticleNote text of <code>:''Main article: ...''</code> notes, or null
+	 */
+	public WikitextStripper(String[] endHeadings, String[] endTemplates, String[] endLinks,
+			String[] removedTemplates, String[] removedLinks, String mainArticleNote) {
+		this.endHeadings = endHeadings.clone();
+		this.endTemplates = endTemplates.clone();
+		this.endLinks = endLinks.clone();
+		this.removedTemplates = removedTemplates.clone();
+		this.removedLinks = removedLinks.clone();
+		this.mainArticleNote = mainArticleNote;
+	}
+
+	/** Strips a wikipedia text
+	 *
+	 * @param text the text to strip
+	 * @return the stripped text
+	 */
+	public String strip(String text) {
+		int n = text.length();
+		StringBuilder out = new StringBuilder(n);
+		int i = 0;
+
+		while(i < n) {
+			char c = text.charAt(i);
+			int next = -1; // index after a construct that is skipped
+
+			switch(c) {
+			case '<':
+				if(text.startsWith("<!--", i)) {
+					int end = text.indexOf("-->", i + 4);
+					next = end == -1 ? n : end + 3;
+				}
+				else if(isRef(text, i)) {
+					next = skipRef(text, i);
+				}
+				break;
+			case '{':
+				if(text.startsWith("{|", i)) {
+					next = skipTable(text, i);
+				}
+				else if(text.startsWith("{{", i)) {
+					int name = skipWhitespace(text, i + 2);
+					if(startsWithAny(text, name, endTemplates)) {
+						return out.toString();
+					}
+					if(startsWithAny(text, name, removedTemplates)) {
+						next = skipTemplate(text, i);
+					}
+				}
+				break;
+			case '[':
+				if(text.startsWith("[[", i)) {
+					int name = skipWhitespace(text, i + 2);
+					if(startsWithAny(text, name, endLinks)) {
+						return out.toString();
+					}
+					if(startsWithAny(text, name, removedLinks)) {
+						next = skipLink(text, i);
+					}
+				}
+				break;
+			case '=':
+				if(text.startsWith("==", i) && isEndHeading(text, i)) {
+					return out.toString();
+				}
+				break;
+			case '*':
+				next = i + 1;
+				break;
+			case '\'':
+				if(text.startsWith("'''", i)) {
+					next = i + 3;
+				}
+				break;
+			case ':':
+				if(mainArticleNote != null) {
+					next = skipMainArticleNote(text, i);
+				}
+				break;
+			default:
+				break;
+			}
+
+			if(next > i) {
+				i = next;
+			} else {
+				out.append(c);
+				++i;
+			}
+		}
+		return out.toString();
+	}
+
+	/* <ref>, <ref name=...> or <ref/>, but not <references/> */
+	private static boolean isRef(String text, int i) {
+		if(!text.regionMatches(true, i, "<ref", 0, 4) || i + 4 >= text.length()) {
+			return false;
+		}
+		char c = text.charAt(i + 4);
+		return c == '>' || c == '/' || Character.isWhitespace(c);
+	}
+
+	/* Skips a <ref .../> or <ref ...>...</ref>. Returns -1 if it is not closed. */
+	private static int skipRef(String text, int i) {
+		int tagEnd = text.indexOf('>', i);
+		if(tagEnd == -1) {
+			return -1;
+		}
+		if(text.charAt(tagEnd - 1) == '/') {
+			return tagEnd + 1;
+		}
+		int close = indexOfIgnoreCase(text, "</ref>", tagEnd + 1);
+		return close == -1 ? -1 : close + 6;
+	}
+
+	/* Skips a {{template}}, including nested templates. Returns -1 if it is not closed. */
+	private static int skipTemplate(String text, int i) {
+		int n = text.length();
+		int depth = 0;
+		int j = i;
+		while(j < n - 1) {
+			if(text.charAt(j) == '{' && text.charAt(j + 1) == '{') {
+				++depth;
+				j += 2;
+			}
+			else if(text.charAt(j) == '}' && text.charAt(j + 1) == '}') {
+				j += 2;
+				if(--depth == 0) {
+					return j;
+				}
+			}
+			else {
+				++j;
+			}
+		}
+		return -1;
+	}
+
+	/* Skips a {| table |}, including nested tables and templates. Returns -1 if it is not closed. */
+	private static int skipTable(String text, int i) {
+		int n = text.length();
+		int depth = 0;
+		int j = i;
+		while(j < n - 1) {
+			char c = text.charAt(j);
+			char d = text.charAt(j + 1);
+			if(c == '{' && d == '|') {
+				++depth;
+				j += 2;
+			}
+			else if(c == '|' && d == '}') {
+				j += 2;
+				if(--depth == 0) {
+					return j;
+				}
+			}
+			else if(c == '{' && d == '{') {
+				int end = skipTemplate(text, j);
+				j = end == -1 ? j + 2 : end;
+			}
+			else {
+				++j;
+			}
+		}
+		return -1;
+	}
+
+	/* Skips a [[link]], including nested links. Returns -1 if it is not closed. */
+	private static int skipLink(String text, int i) {
+		int n = text.length();
+		int depth = 0;
+		int j = i;
+		while(j < n - 1) {
+			if(text.charAt(j) == '[' && text.charAt(j + 1) == '[') {
+				++depth;
+				j += 2;
+			}
+			else if(text.charAt(j) == ']' && text.charAt(j + 1) == ']') {
+				j += 2;
+				if(--depth == 0) {
+					return j;
+				}
+			}
+			else {
+				++j;
+			}
+		}
+		return -1;
+	}
+
+	/* Checks for == heading == (any level) with one of the end headings. */
+	private boolean isEndHeading(String text, int i) {
+		int n = text.length();
+		int start = i;
+		while(start < n && text.charAt(start) == '=') {
+			++start;
+		}
+		int end = start;
+		while(end < n && text.charAt(end) != '=' && text.charAt(end) != '\n') {
+			++end;
+		}
+		if(!text.startsWith("==", end)) {
+			return false;
+		}
+		String heading = text.substring(start, end).trim();
+		for(String endHeading : endHeadings) {
+			if(heading.equalsIgnoreCase(endHeading)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Skips :''Main article: ...'' up to the closing '' on the same line. Returns -1 if there is none. */
+	private int skipMainArticleNote(String text, int i) {
+		int j = i + 1;
+		if(j < text.length() && text.charAt(j) == ' ') {
+			++j;
+		}
+		if(!text.startsWith("''", j) || !text.regionMatches(true, j + 2, mainArticleNote, 0,
+				mainArticleNote.length())) {
+			return -1;
+		}
+		j = skipWhitespace(text, j + 2 + mainArticleNote.length());
+		if(j >= text.length() || text.charAt(j) != ':') {
+			return -1;
+		}
+		int close = text.indexOf("''", j + 2);
+		int lineEnd = text.indexOf('\n', j);
+		if(close == -1 || (lineEnd != -1 && lineEnd < close)) {
+			return -1;
+		}
+		return close + 2;
+	}
+
+	private static int skipWhitespace(String text, int i) {
+		while(i < text.length() && Character.isWhitespace(text.charAt(i))) {
+			++i;
+		}
+		return i;
+	}
+
+	private static boolean startsWithAny(String text, int i, String[] prefixes) {
+		for(String prefix : prefixes) {
+			if(text.regionMatches(true, i, prefix, 0, prefix.length())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int indexOfIgnoreCase(String text, String s, int from) {
+		int last = text.length() - s.length();
+		for(int i = from; i <= last; ++i) {
+			if(text.regionMatches(true, i, s, 0, s.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
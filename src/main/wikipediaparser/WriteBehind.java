@@ -0,0 +1,305 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Page;
+
+import org.apache.log4j.Logger;
+import org.apache.log4j.NDC;
+
+import com.google.common.collect.Lists;
+
+import dao.IDao;
+
+/** Stores batches of pages in the background, so that the parser goes on reading the dump while
+ * the database commits. Batches are handed to writer threads, one per IDao, over a bounded queue;
+ * when the database falls behind, the queue fills up and the parser waits for room.
+ *
+ * Batches are numbered in the order they are handed over. While a writer stores a batch, the
+ * batch (number, size, first and last title) is on the log4j NDC of its thread, so that what the
+ * IDao logs can be traced to the batch (<code>%x</code> in the layout). If storing a batch throws,
+ * its writer stops, and the next store or flush throws an IllegalStateException naming the batch.
+ *
+ * The store methods and flush are meant to be called from one thread.
+ */
+public class WriteBehind {
+
+	private static final Batch END = new Batch(0, false, Collections.<Page>emptyList());
+
+	private final List<? extends IDao> daos;
+	private final BlockingQueue<Batch> queue;
+	private final Queue<Page> stored = new ConcurrentLinkedQueue<Page>();
+	private final List<Future<Object>> writers = Lists.newArrayList();
+	private final AtomicLong writeNanos = new AtomicLong();
+	private ExecutorService pool;
+	private String langAbbrev;
+	private boolean bulkLoad;
+	private boolean keepStored;
+	private long batchCount;
+	private long waitNanos;
+	private int pending; // batches handed over but not stored, guarded by this
+	private IllegalStateException failure; // guarded by this
+
+	private static Logger logger = Logger.getLogger(WriteBehind.class);
+
+	/** Constructor
+	 *
+	 * @param daos where the batches are stored, one writer thread for each
+	 * @param queueSize number of batches that may wait for a writer
+	 */
+	public WriteBehind(List<? extends IDao> daos, int queueSize) {
+		assert !daos.isEmpty();
+		assert queueSize > 0;
+
+		this.daos = daos;
+		queue = new ArrayBlockingQueue<Batch>(queueSize);
+	}
+
+	/** Starts the writer threads.
+	 *
+	 * @param langAbbrev two letter language abbrevation of the pages
+	 * @param bulkLoad whether each writer stores in a bulk load (see IDao#startBulkLoad())
+	 * @param keepStored whether the pages of stored batches are kept for drainStored()
+	 */
+	public synchronized void start(String langAbbrev, boolean bulkLoad, boolean keepStored) {
+		assert pool == null;
+
+		this.langAbbrev = langAbbrev;
+		this.bulkLoad = bulkLoad;
+		this.keepStored = keepStored;
+		batchCount = 0;
+		waitNanos = 0;
+		writeNanos.set(0);
+		pending = 0;
+		failure = null;
+		queue.clear();
+		writers.clear();
+		pool = Executors.newFixedThreadPool(daos.size());
+		for(IDao dao : daos) {
+			writers.add(pool.submit(new Writer(dao)));
+		}
+	}
+
+	/** Hands a batch of pages to the writers, waiting while the queue is full. The list is copied,
+	 * the pages are not: they must not be changed until they are stored.
+	 */
+	public void storePages(List<Page> batch) {
+		put(new Batch(++batchCount, false, Lists.newArrayList(batch)));
+	}
+
+	/** Hands a batch of redirects to the writers, waiting while the queue is full. */
+	public void storeRedirects(List<Page> batch) {
+		put(new Batch(++batchCount, true, Lists.newArrayList(batch)));
+	}
+
+	/** Waits until every batch handed over is stored.
+	 *
+	 * @throws IllegalStateException if a batch could not be stored
+	 */
+	public void flush() {
+		long start = System.nanoTime();
+		try {
+			synchronized(this) {
+				while(pending > 0 && failure == null) {
+					wait();
+				}
+				if(failure != null) {
+					throw failure;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the writers", e);
+		} finally {
+			waitNanos += System.nanoTime() - start;
+		}
+	}
+
+	/** Moves the pages of the batches stored so far to a list, if they are kept
+	 *
+	 * @return the stored pages, to reuse them
+	 */
+	public List<Page> drainStored() {
+		List<Page> pages = Lists.newArrayList();
+		Page page;
+		while((page = stored.poll()) != null) {
+			pages.add(page);
+		}
+		return pages;
+	}
+
+	/** Stops the writers once they have stored the batches handed over, or at once if one of
+	 * them failed. Does not throw: call flush() first to learn about failures.
+	 */
+	public void close() {
+		if(pool == null) {
+			return;
+		}
+		try {
+			int ends = 0;
+			while(ends < writers.size() && getFailure() == null) {
+				if(queue.offer(END, 1, TimeUnit.SECONDS)) {
+					++ends;
+				}
+			}
+			if(getFailure() == null) {
+				for(Future<Object> writer : writers) {
+					writer.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.warn("Writer stopped", e.getCause());
+		} finally {
+			pool.shutdownNow();
+			pool = null;
+		}
+		logger.info("Stored " + batchCount + " batches in " + writers.size() + " writers: " +
+				writeNanos.get() / 1000000 + " ms storing, " + waitNanos / 1000000 + " ms waiting for the writers");
+	}
+
+	/* Waits for room in the queue, giving up if a batch could not be stored. */
+	private void put(Batch batch) {
+		synchronized(this) {
+			++pending;
+		}
+		long start = System.nanoTime();
+		try {
+			while(!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+				checkWriters();
+			}
+			checkWriters();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while handing over " + batch, e);
+		} finally {
+			waitNanos += System.nanoTime() - start;
+		}
+	}
+
+	/* Throws the failure of a writer, if there is one. */
+	private void checkWriters() {
+		IllegalStateException e = getFailure();
+		if(e != null) {
+			throw e;
+		}
+		for(Future<Object> writer : writers) {
+			if(writer.isDone()) {
+				fail(new IllegalStateException("A writer stopped before the end of the dump"));
+				throw getFailure();
+			}
+		}
+	}
+
+	private synchronized IllegalStateException getFailure() {
+		return failure;
+	}
+
+	private synchronized void fail(IllegalStateException e) {
+		if(failure == null) {
+			failure = e;
+		}
+		notifyAll();
+	}
+
+	private synchronized void batchStored() {
+		--pending;
+		notifyAll();
+	}
+
+	/** A numbered batch of pages or redirects. */
+	private static class Batch {
+
+		private final long number;
+		private final boolean redirects;
+		private final List<Page> pages;
+
+		Batch(long number, boolean redirects, List<Page> pages) {
+			this.number = number;
+			this.redirects = redirects;
+			this.pages = pages;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder s = new StringBuilder(redirects ? "redirect batch " : "batch ").append(number)
+				.append(" (").append(pages.size()).append(" pages");
+			if(!pages.isEmpty()) {
+				s.append(", ").append(pages.get(0).getTitle()).append(" .. ")
+					.append(pages.get(pages.size() - 1).getTitle());
+			}
+			return s.append(')').toString();
+		}
+	}
+
+	/** Stores batches with one IDao until the end of the queue. */
+	private class Writer implements Callable<Object> {
+
+		private final IDao dao;
+
+		Writer(IDao dao) {
+			this.dao = dao;
+		}
+
+		public Object call() throws InterruptedException {
+			if(bulkLoad) {
+				dao.startBulkLoad();
+			}
+			try {
+				Batch batch;
+				while((batch = queue.take()) != END) {
+					if(!store(batch)) {
+						break;
+					}
+				}
+			} finally {
+				if(bulkLoad) {
+					dao.finishBulkLoad();
+				}
+				NDC.remove();
+			}
+			return null;
+		}
+
+		/* Stores a batch, returning false if it failed */
+		private boolean store(Batch batch) {
+			String name = batch.toString();
+			NDC.push(name);
+			long start = System.nanoTime();
+			try {
+				if(batch.redirects) {
+					dao.processRedirects(langAbbrev, batch.pages);
+				}
+				else {
+					dao.processBatch(langAbbrev, batch.pages);
+				}
+			} catch (RuntimeException e) {
+				logger.error("Could not store " + name, e);
+				fail(new IllegalStateException("Could not store " + name, e));
+				return false;
+			} finally {
+				writeNanos.addAndGet(System.nanoTime() - start);
+				NDC.pop();
+			}
+			if(keepStored) {
+				stored.addAll(batch.pages);
+			}
+			batchStored();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Searches a (memory mapped) file for byte patterns such as <code>&lt;page&gt;</code> and
+ * <code>&lt;/page&gt;</code>. No characters are decoded: the wikipedia dump is UTF-8 and the tags
+ * we look for are plain ASCII, so a byte comparison finds exactly the same places as a String
+ * comparison on the decoded text would.
+ *
+ * The file is mapped in windows, as a single MappedByteBuffer can not address more than 2 GB.
+ */
+public class PageBoundaryScanner {
+
+	public static final byte[] PAGE_OPEN = ascii("<page>");
+	public static final byte[] PAGE_CLOSE = ascii("</page>");
+	public static final byte[] NEWLINE = ascii("\n");
+
+	private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long size;
+	private final int windowSize;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private int windowLength;
+
+	/** Constructor
+	 *
+	 * @param channel the (read only) channel of the file to scan
+	 */
+	public PageBoundaryScanner(FileChannel channel) throws IOException {
+		this(channel, WINDOW_SIZE);
+	}
+
+	/** Constructor
+	 *
+	 * @param channel the (read only) channel of the file to scan
+	 * @param windowSize how many bytes to map at a time
+	 */
+	PageBoundaryScanner(FileChannel channel, int windowSize) throws IOException {
+		assert channel != null;
+		assert windowSize > 0;
+
+		this.channel = channel;
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	/** Finds the next occurrence of a byte pattern
+	 *
+	 * @param pattern the bytes to look for
+	 * @param from absolute file position to start searching at
+	 * @return the absolute position of the first byte of the match, or -1 if not found
+	 */
+	public long indexOf(byte[] pattern, long from) throws IOException {
+		assert pattern != null && pattern.length > 0;
+		assert pattern.length <= windowSize;
+
+		long position = from;
+
+		while(position + pattern.length <= size) {
+			map(position, pattern.length);
+
+			int last = windowLength - pattern.length;
+			int i = (int) (position - windowStart);
+
+			for(; i <= last; ++i) {
+				if(window.get(i) == pattern[0] && matchesAt(i, pattern)) {
+					return windowStart + i;
+				}
+			}
+			position = windowStart + i;
+		}
+		return -1;
+	}
+
+	/** Finds the end of the line which contains the given position
+	 *
+	 * @param from absolute file position
+	 * @return the position directly after the line's '\n', or the file size if the last line has none
+	 */
+	public long endOfLine(long from) throws IOException {
+		long newline = indexOf(NEWLINE, from);
+		return newline == -1 ? size : newline + 1;
+	}
+
+	/** Reads a single byte
+	 *
+	 * @param position absolute file position
+	 * @return the byte at that position
+	 */
+	public byte get(long position) throws IOException {
+		assert position >= 0 && position < size;
+
+		map(position, 1);
+		return window.get((int) (position - windowStart));
+	}
+
+	/** Gets the size of the scanned file */
+	public long size() {
+		return size;
+	}
+
+	/* Makes sure the current window covers [position, position + needed), or everything up to the
+	 * end of the file when that is less.
+	 */
+	private void map(long position, int needed) throws IOException {
+		if(window != null && position >= windowStart &&
+				(position + needed <= windowStart + windowLength || windowStart + windowLength == size)) {
+			return;
+		}
+		windowStart = position;
+		windowLength = (int) Math.min(windowSize, size - position);
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowLength);
+	}
+
+	/* Compares the whole pattern with the window, starting at index i */
+	private boolean matchesAt(int i, byte[] pattern) {
+		for(int j = 1; j < pattern.length; ++j) {
+			if(window.get(i + j) != pattern[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] ascii(String s) {
+		try {
+			return s.getBytes("US-ASCII");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("US-ASCII is not supported", e);
+		}
+	}
+}
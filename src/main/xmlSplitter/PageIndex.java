@@ -0,0 +1,93 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+/** Sidecar index of split checkpoints, written next to the splitter's log file. Every entry maps
+ * a page count to the byte offset in the source xml file directly after the line that closed
+ * that page. The Resumer uses it to seek to the last split point instead of re-reading the file.
+ *
+ * Entries are two big endian longs (16 bytes) and are appended in order of page count, so the
+ * entry for a page count can be found by binary search.
+ */
+public class PageIndex {
+
+	public static final String SUFFIX = ".index";
+	private static final int ENTRY_SIZE = 16;
+
+	private final FileOutputStream out;
+	private final ByteBuffer entry;
+
+	/** Constructor: opens the index belonging to a log file for writing.
+	 *
+	 * @param logFile the splitter's log file
+	 * @param append true to keep existing entries (when resuming), false to start a new index
+	 */
+	public PageIndex(String logFile, boolean append) throws IOException {
+		out = new FileOutputStream(indexFile(logFile), append);
+		entry = ByteBuffer.allocate(ENTRY_SIZE);
+	}
+
+	/** Adds a checkpoint, writing it to the file straight away.
+	 *
+	 * @param pageCount number of pages completed
+	 * @param offset byte offset in the source file directly after the last completed page's line
+	 */
+	public void add(long pageCount, long offset) throws IOException {
+		entry.clear();
+		entry.putLong(pageCount).putLong(offset).flip();
+		while(entry.hasRemaining()) {
+			out.getChannel().write(entry);
+		}
+	}
+
+	/** Closes the index */
+	public void close() throws IOException {
+		out.close();
+	}
+
+	/** Finds the checkpoint with the highest page count not above the given page count.
+	 *
+	 * @param logFile the splitter's log file
+	 * @param pageCount the page count to look for
+	 * @return {page count, offset} of the checkpoint, or null if there is no index or no such entry
+	 */
+	public static long[] find(String logFile, long pageCount) throws IOException {
+		File file = indexFile(logFile);
+		if(!file.exists()) {
+			return null;
+		}
+
+		RandomAccessFile index = new RandomAccessFile(file, "r");
+		try {
+			// ignore a half written last entry
+			long low = 0;
+			long high = index.length() / ENTRY_SIZE - 1;
+			long[] found = null;
+
+			while(low <= high) {
+				long middle = (low + high) >>> 1;
+				index.seek(middle * ENTRY_SIZE);
+				long count = index.readLong();
+
+				if(count <= pageCount) {
+					found = new long[] {count, index.readLong()};
+					low = middle + 1;
+				} else {
+					high = middle - 1;
+				}
+			}
+			return found;
+		} finally {
+			index.close();
+		}
+	}
+
+	private static File indexFile(String logFile) {
+		return new File(logFile + SUFFIX);
+	}
+}
@@ -0,0 +1,381 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/** Splits a wikipedia xml file with several threads. Produces exactly the same files as
+ * the mapped mode of the Splitter.
+ *
+ * The file is cut into one byte range per thread. Each cut is moved forward to the start of the
+ * line holding the next <code>&lt;page&gt;</code> tag, so that no page is shared by two ranges.
+ * Splitting then happens in two parallel passes over the ranges:
+ * <ol>
+ * <li>every range counts its <code>&lt;/page&gt;</code> lines; the counts of the ranges before
+ * it give the global number of its first page, and thereby the file numbers
+ * <code>baseOutputName + fileCount</code> of its blocks,</li>
+ * <li>every range is scanned again, and each block is written as soon as its end is found.</li>
+ * </ol>
+ * A block that starts in one range and ends in a later one is written by the range it starts in,
+ * which waits for the later ranges to find their first block end. Each range writes its blocks
+ * in its own thread, so at most one block per thread is being written at any time, and no page
+ * offsets are kept.
+ *
+ * The log file and PageIndex used for resuming only receive a block's record once all blocks
+ * before it have been written as well. Until then, the record of a block written by a later
+ * range waits in the queue of that range.
+ */
+public class ParallelSplitter {
+
+	private static final long UNKNOWN = -2; // first block end of a range that failed
+	private static final long NONE = -1; // first block end of a range without any
+
+	private final String fileName;
+	private final String baseOutputName;
+	private final long pagesPerBlock;
+	private final int threads;
+	private final String newline;
+
+	private long firstPage;
+	private long firstFile;
+	private boolean needResume;
+	private long pageCount;
+	private long fileCount;
+	private FileChannel source;
+
+	private List<Range> ranges;
+	private int recordingRange; // the first range whose records are not all written
+	private long nextRecord; // number of records written
+	private FileOutputStream pageRecordOut;
+	private PageIndex index;
+
+	private static Logger logger = Logger.getLogger(ParallelSplitter.class);
+
+	/** Constructor
+	 *
+	 * @param fileName source file
+	 * @param baseOutputName prefix of the output files
+	 * @param pagesPerBlock how many pages per file/block
+	 * @param threads how many threads (and byte ranges) to use
+	 * @param newline line separator used in the <code>&lt;mediawiki&gt;</code> lines
+	 */
+	public ParallelSplitter(String fileName, String baseOutputName, long pagesPerBlock, int threads,
+			String newline) {
+		assert fileName != null;
+		assert baseOutputName != null;
+		assert pagesPerBlock > 0;
+		assert threads > 0;
+
+		this.fileName = fileName;
+		this.baseOutputName = baseOutputName;
+		this.pagesPerBlock = pagesPerBlock;
+		this.threads = threads;
+		this.newline = newline;
+	}
+
+	/** Splits the source file, starting at a given position.
+	 *
+	 * @param startOffset byte position to start at (0, or the position found by the Resumer)
+	 * @param firstPage number of pages before startOffset
+	 * @param firstFile number of the first file to write
+	 * @param needResume true if the first file needs an opening <code>&lt;mediawiki&gt;</code> tag
+	 * @param pageRecordOut log file receiving the number of completed pages per block
+	 * @param index index receiving the offset of every block end
+	 */
+	public void split(long startOffset, long firstPage, long firstFile, boolean needResume,
+			FileOutputStream pageRecordOut, PageIndex index) throws IOException {
+		FileInputStream sourceIn = new FileInputStream(fileName);
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+			source = sourceIn.getChannel();
+			this.firstPage = firstPage;
+			this.firstFile = firstFile;
+			this.needResume = needResume;
+			this.pageRecordOut = pageRecordOut;
+			this.index = index;
+			long[] cuts = cut(source, startOffset);
+
+			// pass 1: count the pages of every range
+			List<Future<Long>> counts = Lists.newArrayList();
+			for(int i = 0; i < threads; ++i) {
+				counts.add(pool.submit(new PageCount(source, cuts[i], cuts[i+1])));
+			}
+			ranges = Lists.newArrayList();
+			long count = firstPage;
+			for(int i = 0; i < threads; ++i) {
+				ranges.add(new Range(i, cuts[i], cuts[i+1], count, i == 0 ? startOffset : NONE));
+				count += get(counts.get(i));
+			}
+			pageCount = count;
+			fileCount = firstFile + blockEnds(pageCount) + 1;
+			logger.info("Found " + (pageCount - firstPage) + " pages, writing " +
+					(fileCount - firstFile) + " files");
+
+			// pass 2: write the blocks, one thread per range
+			recordingRange = 0;
+			nextRecord = 0;
+			List<Future<Object>> writes = Lists.newArrayList();
+			for(Range range : ranges) {
+				writes.add(pool.submit(range));
+			}
+			for(Future<Object> write : writes) {
+				get(write);
+			}
+		} finally {
+			pool.shutdownNow();
+			sourceIn.close();
+		}
+	}
+
+	/** Gets the page count after splitting */
+	public long getPageCount() {
+		return pageCount;
+	}
+
+	/** Gets the file count after splitting */
+	public long getFileCount() {
+		return fileCount;
+	}
+
+	/* Cuts [startOffset, size) in one range per thread: range i is [cuts[i], cuts[i+1]). */
+	private long[] cut(FileChannel source, long startOffset) throws IOException {
+		PageBoundaryScanner scanner = new PageBoundaryScanner(source);
+		long size = scanner.size();
+		long[] cuts = new long[threads + 1];
+
+		cuts[0] = startOffset;
+		cuts[threads] = size;
+		for(int i = 1; i < threads; ++i) {
+			long nominal = startOffset + (size - startOffset) / threads * i;
+			cuts[i] = Math.max(cuts[i-1], resync(scanner, nominal));
+		}
+		return cuts;
+	}
+
+	/* Finds the start of the line holding the first <page> tag at or after position. */
+	private static long resync(PageBoundaryScanner scanner, long position) throws IOException {
+		long pageOpen = scanner.indexOf(PageBoundaryScanner.PAGE_OPEN, position);
+		if(pageOpen == -1) {
+			return scanner.size();
+		}
+		long lineStart = pageOpen;
+		while(lineStart > 0 && scanner.get(lineStart - 1) != '\n') {
+			--lineStart;
+		}
+		return lineStart;
+	}
+
+	/* The number of block ends up to a given page count: the blocks before it */
+	private long blockEnds(long count) {
+		return count / pagesPerBlock - firstPage / pagesPerBlock;
+	}
+
+	/* Writes the records of all written blocks whose predecessors are all written too. */
+	private synchronized void writeRecords() throws IOException {
+		while(recordingRange < ranges.size()) {
+			Range range = ranges.get(recordingRange);
+			while(range.recorded < range.written) {
+				long recordCount = (firstPage / pagesPerBlock + nextRecord + 1) * pagesPerBlock;
+				index.add(recordCount, range.blockEnds[range.recorded % range.blockEnds.length]);
+				Splitter.writeRecord(pageRecordOut, recordCount, newline);
+				++range.recorded;
+				++nextRecord;
+			}
+			if(!range.done) {
+				return;
+			}
+			++recordingRange;
+		}
+	}
+
+	/* Queues the record of a block written by a range, and writes the records now in order. */
+	private synchronized void blockWritten(Range range, long blockEnd) throws IOException {
+		if(range.written - range.recorded == range.blockEnds.length) {
+			range.grow();
+		}
+		range.blockEnds[range.written % range.blockEnds.length] = blockEnd;
+		++range.written;
+		writeRecords();
+	}
+
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while splitting");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/** Counts the lines containing <code>&lt;/page&gt;</code> in a range. */
+	private static class PageCount implements Callable<Long> {
+
+		private final FileChannel source;
+		private final long from;
+		private final long to;
+
+		PageCount(FileChannel source, long from, long to) {
+			this.source = source;
+			this.from = from;
+			this.to = to;
+		}
+
+		public Long call() throws IOException {
+			PageBoundaryScanner scanner = new PageBoundaryScanner(source);
+			long count = 0;
+			long position = from;
+			long pageClose;
+
+			while(position < to &&
+					(pageClose = scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, position)) != -1 &&
+					pageClose < to) {
+				position = scanner.endOfLine(pageClose);
+				++count;
+			}
+			return count;
+		}
+	}
+
+	/** Scans a range for its block ends and writes every block that starts in it. The block
+	 * ending at the first block end of the range started in an earlier range, unless the range
+	 * is the first one. */
+	private class Range implements Callable<Object> {
+
+		private final int number;
+		private final long from;
+		private final long to;
+		private final long pagesBefore;
+		private long blockStart; // NONE while the block being scanned started in an earlier range
+
+		private final CountDownLatch firstEndKnown = new CountDownLatch(1);
+		private volatile long firstEnd = UNKNOWN;
+
+		// records of written blocks, a ring buffer guarded by the ParallelSplitter
+		private long[] blockEnds = new long[16];
+		private int written;
+		private int recorded;
+		private boolean done;
+
+		Range(int number, long from, long to, long pagesBefore, long blockStart) {
+			this.number = number;
+			this.from = from;
+			this.to = to;
+			this.pagesBefore = pagesBefore;
+			this.blockStart = blockStart;
+		}
+
+		public Object call() throws IOException {
+			try {
+				PageBoundaryScanner scanner = new PageBoundaryScanner(source);
+				long count = pagesBefore;
+				long position = from;
+				long pageClose;
+
+				while(position < to &&
+						(pageClose = scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, position)) != -1 &&
+						pageClose < to) {
+					position = scanner.endOfLine(pageClose);
+					if(++count % pagesPerBlock == 0) {
+						if(firstEnd == UNKNOWN) {
+							firstEnd = position;
+							firstEndKnown.countDown();
+						}
+						if(blockStart != NONE) {
+							write(blockEnds(count) - 1, blockStart, position);
+						}
+						blockStart = position;
+					}
+				}
+				if(firstEnd == UNKNOWN) {
+					firstEnd = NONE;
+					firstEndKnown.countDown();
+				}
+
+				// the block going on into the next ranges ends at the first block end after them
+				if(blockStart != NONE) {
+					long block = blockEnds(count);
+					write(block, blockStart, block < blockEnds(pageCount) ? nextFirstEnd() : source.size());
+				}
+			} finally {
+				firstEndKnown.countDown(); // with UNKNOWN if the range failed
+				synchronized(ParallelSplitter.this) {
+					done = true;
+				}
+			}
+			writeRecords();
+			return null;
+		}
+
+		/* Waits for the first block end in the ranges after this one. */
+		private long nextFirstEnd() throws IOException {
+			for(Range next : ranges.subList(number + 1, ranges.size())) {
+				try {
+					next.firstEndKnown.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while splitting");
+				}
+				if(next.firstEnd == UNKNOWN) {
+					throw new IOException("Splitting range " + next.number + " failed");
+				}
+				if(next.firstEnd != NONE) {
+					return next.firstEnd;
+				}
+			}
+			throw new IllegalStateException("No block end after range " + number);
+		}
+
+		/* Writes a block to its own file. The last block has no record. */
+		private void write(long block, long from, long to) throws IOException {
+			FileOutputStream fileOut = new FileOutputStream(new File(baseOutputName + (firstFile + block) + ".xml"));
+			try {
+				if(block > 0 || needResume) {
+					fileOut.write(("<mediawiki>" + newline).getBytes("UTF-8"));
+				}
+				Splitter.transfer(source, from, to, fileOut);
+				if(to == source.size()) {
+					// only the last block can end in a line without newline
+					Splitter.terminateLastLine(new PageBoundaryScanner(source), to, fileOut, newline);
+				}
+				fileOut.write(("</mediawiki>" + newline).getBytes("UTF-8"));
+			} finally {
+				fileOut.close();
+			}
+			if(block < blockEnds(pageCount)) {
+				blockWritten(this, to);
+			}
+		}
+
+		/* Doubles the ring buffer, keeping the queued records in order. */
+		private void grow() {
+			long[] larger = new long[blockEnds.length * 2];
+			int queued = written - recorded;
+			for(int i = 0; i < queued; ++i) {
+				larger[i] = blockEnds[(recorded + i) % blockEnds.length];
+			}
+			blockEnds = larger;
+			written = queued;
+			recorded = 0;
+		}
+	}
+}
@@ -15,11 +15,20 @@ import java.io.InputStreamReader;
 import java.util.Scanner;
 import org.apache.log4j.*;
 
+import compression.DumpInput;
+
 /**
  * Allows splitting to be resumed from mid-point in case of error or otherwise. If half a file
  * has been written , it starts from the beginning point of the last fully written file and
  * will rewrite the half-written file.
  * 
+ * If the splitter left a PageIndex next to the record file, the last split point is found by
+ * looking up its byte offset and seeking there; only the pages after the nearest checkpoint
+ * (if any) are scanned. Without an index the file is scanned from the start.
+ * 
+ * A compressed source has no usable byte offsets, so it is decompressed and read up to
+ * the last split point.
+ * 
  * @author Jessica Anderson
  */
 public class Resumer {
@@ -54,15 +63,36 @@ public class Resumer {
 	 * 
 	 * @return Buffered Reader set to last split point. 
 	 */
-	public BufferedReader resume() throws FileNotFoundException {
-		BufferedReader reader = null;
+	public BufferedReader resume() throws IOException {
+		if(DumpInput.isCompressed(xmlFile)) {
+			return resumeCompressed();
+		}
+		
+		long position = resumeOffset();
+		FileInputStream in = new FileInputStream(xmlFile);
+		
+		try {
+			in.getChannel().position(position);
+		} catch (IOException e) {
+			logger.warn("IoException while seeking in XML source file", e);
+		}
+			
+		return new BufferedReader(
+					new InputStreamReader(
+							new DataInputStream(in)));
+		
+	}
+	
+
+	/* Reads a compressed source up to the last split point */
+	private BufferedReader resumeCompressed() throws IOException {
 		String currentLine;
 		long pageCount = 0;
+		fileCount = 0;
 		
-		reader = new BufferedReader(
+		BufferedReader reader = new BufferedReader(
 					new InputStreamReader(
-							new DataInputStream(
-									new FileInputStream(xmlFile))));
+							new DataInputStream(DumpInput.open(xmlFile))));
 	
 		try {
 			while(pageCount < contents && (currentLine = reader.readLine()) != null ) {
@@ -79,11 +109,54 @@ public class Resumer {
 		}
 			
 		return reader;
+	}
+
+	/** Finds the last place that was split in the file to be split, without decoding the file.
+	 * 
+	 * @return byte offset directly after the line holding the last split <code>&lt;/page&gt;</code>
+	 */
+	public long resumeOffset() throws FileNotFoundException {
+		FileInputStream in = new FileInputStream(xmlFile);
+		long pageCount = 0;
+		long position = 0;
+		fileCount = 0;
 		
+		try {
+			long[] checkpoint = PageIndex.find(resumeRecordFile, contents);
+			if(checkpoint != null) {
+				pageCount = checkpoint[0];
+				position = checkpoint[1];
+				fileCount = pageCount / pagesPerBlock;
+				logger.info("Seeking to page " + pageCount + " at byte " + position);
+			}
+			
+			PageBoundaryScanner scanner = new PageBoundaryScanner(in.getChannel());
+			long pageClose;
+			
+			while(pageCount < contents && 
+					(pageClose = scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, position)) != -1) {
+				position = scanner.endOfLine(pageClose);
+				++pageCount;
+
+				if( pageCount % pagesPerBlock == 0) {
+					++fileCount;
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("IoException while scanning XML source file", e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				logger.warn("Could not close XML source file", e);
+			}
+		}
+		
+		return position;
 	}
-	
 
-	/** Grab the page count from the ResumeRecordFile
+	/** Grab the page count from the ResumeRecordFile. The splitter adds a record per 
+	 * finished block, so the last record is the last split point.
 	 * 
 	 * @return the page count
 	 */
@@ -91,7 +164,12 @@ public class Resumer {
 		File xml = new File(resumeRecordFile);
 		Scanner scanner = null;
 		scanner = new Scanner(xml);
-		contents = scanner.nextLong();
+		while(scanner.hasNextLong()) {
+			contents = scanner.nextLong();
+			if(scanner.hasNextLine()) {
+				scanner.nextLine(); //skip the timestamp
+			}
+		}
 		
 		scanner.close();
 	}
@@ -102,7 +180,7 @@ public class Resumer {
 	}
 	
 	
-	/** Gets the file count Note: Will be 0 unless resume() has executed*/
+	/** Gets the file count Note: Will be 0 unless resume() or resumeOffset() has executed*/
 	public long getFileCount() {
 		return fileCount;
 	}
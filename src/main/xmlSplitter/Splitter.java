@@ -6,6 +6,7 @@
 package xmlSplitter;
 
 import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -13,11 +14,14 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
 import java.util.Date;
 import java.util.Properties;
 
 import org.apache.log4j.Logger;
 
+import compression.DumpInput;
+
 /**
  * Splits a wikipedia xml file into multiple small files for easier processing.
  * Splits on the <page> tag.
@@ -30,6 +34,22 @@ import org.apache.log4j.Logger;
  * Creates a log file which contains the splitting progress per file and which
  * is used for resuming in case of problems or failure.
  * 
+ * Two split modes exist (property <code>splitMode</code>): <code>lines</code>
+ * reads and re-encodes the file line by line, <code>mapped</code> scans a
+ * memory mapped view of the file for the <code>&lt;/page&gt;</code> bytes and
+ * copies whole blocks with <code>FileChannel.transferTo</code>, without
+ * decoding any characters. Both produce the same files as long as the line
+ * endings in the source are the platform's line separator. <code>parallel</code>
+ * does the same work as <code>mapped</code>, but cuts the file into
+ * <code>splitThreads</code> byte ranges which are scanned and written
+ * concurrently (see ParallelSplitter). Both byte based modes also keep a
+ * PageIndex of the byte offset of every split point, which lets the Resumer
+ * seek instead of re-reading the file.
+ * 
+ * A gzip or bzip2 compressed dump (see DumpInput) is decompressed while it is
+ * read; since the byte based modes need the uncompressed file, compressed dumps
+ * are always split line by line.
+ * 
  * @author Jessica Anderson
  * 
  */
@@ -46,6 +66,9 @@ public class Splitter {
     private static String baseOutputName;
     private static String newline;
     private static boolean needResume;
+    private static String splitMode;
+    private static int splitThreads;
+    private long startOffset;
     private static Logger logger = Logger.getLogger(Splitter.class);
 
     /**
@@ -72,8 +95,21 @@ public class Splitter {
      * Default Constructor.
      */
     public Splitter() {
+	this(readInProperties());
+    }
+
+    /**
+     * Constructor with the settings of splitter.properties given, for
+     * instance by a test.
+     * 
+     * @param properties
+     *            the settings, or null if they could not be read
+     */
+    Splitter(Properties properties) {
 
-	readInProperties();
+	if (properties != null) {
+	    setProperties(properties);
+	}
 	if (needResume) {
 	    try {
 		Resumer resumer = new Resumer(fileName, logOutputName,
@@ -86,15 +122,20 @@ public class Splitter {
 	} else {
 	    pageCount = 0;
 	    fileCount = 0;
+	    startOffset = 0;
 
 	    newline = System.getProperty("line.separator");
 
+	    if (isMapped()) {
+		return; // split() opens its own channel
+	    }
+
 	    try {
 		reader = new BufferedReader(new InputStreamReader(
-			new DataInputStream(new FileInputStream(fileName))));
+			new DataInputStream(DumpInput.open(fileName, splitThreads))));
 
-	    } catch (FileNotFoundException e) {
-		logger.error("Could not find the source xml file for parsing",
+	    } catch (IOException e) {
+		logger.error("Could not open the source xml file for parsing",
 			e);
 		logger.info("Can not continue without file - Exiting");
 		System.exit(1);
@@ -116,9 +157,13 @@ public class Splitter {
 	newline = System.getProperty("line.separator");
 
 	try {
-	    reader = resumer.resume();
-	} catch (FileNotFoundException e) {
-	    logger.error("Could not find the source xml file for parsing", e);
+	    if (isMapped()) {
+		startOffset = resumer.resumeOffset();
+	    } else {
+		reader = resumer.resume();
+	    }
+	} catch (IOException e) {
+	    logger.error("Could not open the source xml file for parsing", e);
 	    logger.info("Can not continue without file - Exiting");
 	    System.exit(1);
 	}
@@ -135,6 +180,15 @@ public class Splitter {
      * 
      */
     public void split() {
+	if (isParallel()) {
+	    splitParallel();
+	    return;
+	}
+	if (isMapped()) {
+	    splitMapped();
+	    return;
+	}
+
 	String currentLine = "";
 	String currentFile = "";
 	FileOutputStream fileOut = null;
@@ -218,28 +272,227 @@ public class Splitter {
 		}
 	    }
 	    e.printStackTrace();
+	} finally {
+	    close(reader);
 	}
     }
 
-    private void readInProperties() {
-	Properties properties = new Properties();
+    /**
+     * Splits the original xml file into multiple files, working directly on
+     * the bytes of the file. Every time pagesPerBlock <code>&lt;/page&gt;</code>
+     * lines have been seen, the block up to and including that line is
+     * transferred to its own file.
+     * 
+     * Note: Creates the same log file as split().
+     * 
+     */
+    private void splitMapped() {
+	String currentFile = "";
+	FileInputStream sourceIn = null;
+	FileOutputStream fileOut = null;
+	FileOutputStream pageRecordOut = null;
+	PageIndex index = null;
+
+	final String charSet = "UTF-8";
+
 	try {
-	    properties.load(new FileInputStream("/Users/Jessica/workspace/wikipedianerdata/splitter.properties"));
+	    final byte[] mediaWikiOpen = ("<mediawiki>" + newline)
+		    .getBytes(charSet);
+	    final byte[] mediaWikiClose = ("</mediawiki>" + newline)
+		    .getBytes(charSet);
 
-	    fileName = properties.getProperty("fileName");
-	    baseOutputName = properties.getProperty("baseOutputName");
-	    logOutputName = properties.getProperty("logOutputName");
-	    pagesPerBlock = Integer.parseInt(properties
-		    .getProperty("pagesPerBlock"));
+	    sourceIn = new FileInputStream(fileName);
+	    FileChannel source = sourceIn.getChannel();
+	    PageBoundaryScanner scanner = new PageBoundaryScanner(source);
 
-	    if (properties.getProperty("needResume").equals("true")) {
-		needResume = true;
-	    } else {
-		needResume = false;
+	    logger.info("Creating new file");
+	    currentFile = baseOutputName + fileCount + ".xml";
+	    fileOut = new FileOutputStream(new File(currentFile));
+	    pageRecordOut = new FileOutputStream(new File(logOutputName));
+	    index = new PageIndex(logOutputName, needResume);
+
+	    if (needResume) {
+		fileOut.write(mediaWikiOpen);
+	    }
+
+	    long blockStart = startOffset;
+	    long position = startOffset;
+	    long pageClose;
+
+	    while ((pageClose = scanner.indexOf(
+		    PageBoundaryScanner.PAGE_CLOSE, position)) != -1) {
+		// like split(), count lines containing </page>, not tags
+		position = scanner.endOfLine(pageClose);
+		++pageCount;
+
+		// are we at the wished page limit per file?
+		if ((pageCount % pagesPerBlock) == 0) {
+
+		    ++fileCount;
+		    transfer(source, blockStart, position, fileOut);
+		    terminateLastLine(scanner, position, fileOut, newline);
+		    fileOut.write(mediaWikiClose);
+		    fileOut.close();
+
+		    index.add(pageCount, position);
+		    writeRecord(pageRecordOut, pageCount, newline);
+
+		    // create new file now
+		    currentFile = baseOutputName + fileCount + ".xml";
+		    fileOut = new FileOutputStream(new File(currentFile));
+		    fileOut.write(mediaWikiOpen);
+
+		    blockStart = position;
+		}
+	    }
+
+	    ++fileCount;
+
+	    // handles special case of the very last file
+	    transfer(source, blockStart, scanner.size(), fileOut);
+	    terminateLastLine(scanner, scanner.size(), fileOut, newline);
+	    fileOut.write(mediaWikiClose);
+
+	} catch (IOException e) {
+	    logger.warn("Encountered an IO error while splitting file number "
+		    + fileCount, e);
+	} finally {
+	    close(fileOut);
+	    close(pageRecordOut);
+	    close(index);
+	    close(sourceIn);
+	}
+    }
+
+    /**
+     * Splits the original xml file into multiple files, using splitThreads
+     * threads. The resulting files (and their numbering) are the same as
+     * those of splitMapped().
+     */
+    private void splitParallel() {
+	FileOutputStream pageRecordOut = null;
+	PageIndex index = null;
+
+	try {
+	    pageRecordOut = new FileOutputStream(new File(logOutputName));
+	    index = new PageIndex(logOutputName, needResume);
+
+	    ParallelSplitter parallel = new ParallelSplitter(fileName,
+		    baseOutputName, pagesPerBlock, splitThreads, newline);
+	    parallel.split(startOffset, pageCount, fileCount, needResume,
+		    pageRecordOut, index);
+
+	    pageCount = parallel.getPageCount();
+	    fileCount = parallel.getFileCount();
+
+	} catch (IOException e) {
+	    logger.warn("Encountered an IO error while splitting in parallel",
+		    e);
+	} finally {
+	    close(pageRecordOut);
+	    close(index);
+	}
+    }
+
+    /**
+     * Copies [from, to) of the source file to the end of out.
+     */
+    static void transfer(FileChannel source, long from, long to,
+	    FileOutputStream out) throws IOException {
+	FileChannel target = out.getChannel();
+	long position = from;
+	while (position < to) {
+	    position += source.transferTo(position, to - position, target);
+	}
+    }
+
+    /**
+     * readLine() based splitting ends every line with a newline, including a
+     * last line that has none in the source. Does the same for a block ending
+     * at the given position.
+     */
+    static void terminateLastLine(PageBoundaryScanner scanner, long end,
+	    FileOutputStream out, String newline) throws IOException {
+	if (end > 0 && scanner.get(end - 1) != '\n') {
+	    out.write(newline.getBytes("UTF-8"));
+	}
+    }
+
+    /**
+     * Updates the log file with the number of completed pages, including a
+     * timestamp.
+     */
+    static void writeRecord(FileOutputStream pageRecordOut, long pageCount,
+	    String newline) throws IOException {
+	Date now = new Date();
+	now.setTime(System.currentTimeMillis());
+
+	String outputRecord = pageCount + " " + now.toString() + newline;
+	pageRecordOut.write(outputRecord.getBytes("UTF-8"));
+    }
+
+    private void close(Closeable closeable) {
+	if (closeable != null) {
+	    try {
+		closeable.close();
+	    } catch (IOException e) {
+		logger.warn("Could not close file", e);
+	    }
+	}
+    }
+
+    private void close(PageIndex index) {
+	if (index != null) {
+	    try {
+		index.close();
+	    } catch (IOException e) {
+		logger.warn("Could not close page index", e);
 	    }
+	}
+    }
 
+    /**
+     * True for the modes working on byte offsets (mapped and parallel).
+     */
+    private static boolean isMapped() {
+	return "mapped".equalsIgnoreCase(splitMode) || isParallel();
+    }
+
+    private static boolean isParallel() {
+	return "parallel".equalsIgnoreCase(splitMode);
+    }
+
+    private static Properties readInProperties() {
+	Properties properties = new Properties();
+	try {
+	    properties.load(new FileInputStream("/Users/Jessica/workspace/wikipedianerdata/splitter.properties"));
+	    return properties;
 	} catch (IOException e) {
 	    logger.error("Something went horribly wrong", e);
+	    return null;
+	}
+    }
+
+    private static void setProperties(Properties properties) {
+	fileName = properties.getProperty("fileName");
+	baseOutputName = properties.getProperty("baseOutputName");
+	logOutputName = properties.getProperty("logOutputName");
+	pagesPerBlock = Integer.parseInt(properties
+		.getProperty("pagesPerBlock"));
+	splitMode = properties.getProperty("splitMode", "lines").trim();
+	splitThreads = Integer.parseInt(properties.getProperty(
+		"splitThreads",
+		"" + Runtime.getRuntime().availableProcessors()).trim());
+	if (!splitMode.equals("lines") && DumpInput.isCompressed(fileName)) {
+	    logger.warn("Compressed source, using split mode lines instead of "
+		    + splitMode);
+	    splitMode = "lines";
+	}
+
+	if (properties.getProperty("needResume").equals("true")) {
+	    needResume = true;
+	} else {
+	    needResume = false;
 	}
     }
 }
@@ -0,0 +1,91 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package compression;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.*;
+
+public class BZip2InputStreamTest {
+
+	private static final String PAGE_1 = "<page>\n<title>Test 1</title>\n</page>\n";
+	private static final String PAGE_2 = "<page>\n<title>Test 2</title>\n" +
+			"<text>aaaaaaaaaaaaaaaaaaaaaaaa</text>\n</page>\n";
+
+	// PAGE_1 and PAGE_2, compressed by bzip2 1.0
+	private static final byte[] BZIP2_1 = {66, 90, 104, 57, 49, 65, 89, 38, 83, 89, -127, -37,
+		-123, 99, 0, 0, 4, -37, -128, 0, 16, 64, 0, -96, 5, 4, 0, 34, -92, 76, 0, 32, 0, 33, 42,
+		104, -45, 70, -104, 66, -104, 0, 13, -30, -40, 85, 100, 28, 26, -118, -111, 34, 72, 9,
+		-105, -67, 106, -49, -117, -71, 34, -100, 40, 72, 64, -19, -62, -79, -128};
+	private static final byte[] BZIP2_2 = {66, 90, 104, 57, 49, 65, 89, 38, 83, 89, -126, -64,
+		-58, 30, 0, 0, 6, -5, -128, 0, 16, 4, 0, 64, 0, -112, 5, 4, 0, 34, -92, 76, 64, 32, 0, 72,
+		74, 106, -115, -108, -3, 80, 122, 16, -95, -90, -104, 0, -96, 122, 113, 83, 79, -120, -97,
+		1, 55, 11, 39, -39, 74, -24, -95, 5, -33, 122, -39, -116, 37, -78, 76, 23, 114, 69, 56, 80,
+		-112, -126, -64, -58, 30};
+
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("dump", ".xml.bz2");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(BZIP2_1);
+		out.write(BZIP2_2);
+		out.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		assertEquals(PAGE_1, read(new BZip2InputStream(new ByteArrayInputStream(BZIP2_1))));
+		// the second page has a run, which is run length encoded twice
+		assertEquals(PAGE_2, read(new BZip2InputStream(new ByteArrayInputStream(BZIP2_2))));
+	}
+
+	@Test
+	public void testReadConcatenatedStreams() throws IOException {
+		byte[] both = new byte[BZIP2_1.length + BZIP2_2.length];
+		System.arraycopy(BZIP2_1, 0, both, 0, BZIP2_1.length);
+		System.arraycopy(BZIP2_2, 0, both, BZIP2_1.length, BZIP2_2.length);
+
+		assertEquals(PAGE_1 + PAGE_2, read(new BZip2InputStream(new ByteArrayInputStream(both))));
+		assertEquals(PAGE_1, read(new BZip2InputStream(new ByteArrayInputStream(both), false)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadCorrupt() throws IOException {
+		byte[] corrupt = BZIP2_1.clone();
+		corrupt[10] ^= 0x10; // block checksum
+		read(new BZip2InputStream(new ByteArrayInputStream(corrupt)));
+	}
+
+	@Test
+	public void testReadMultistream() throws IOException {
+		for(int threads = 1; threads <= 3; ++threads) {
+			InputStream in = new MultistreamBZip2InputStream(file.getPath(),
+					new long[] {0, BZIP2_1.length, BZIP2_1.length}, threads);
+			assertEquals(PAGE_1 + PAGE_2, read(in));
+		}
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] b = new byte[16];
+		int n;
+		while((n = in.read(b, 0, b.length)) > 0) {
+			out.write(b, 0, n);
+		}
+		in.close();
+		return out.toString("UTF-8");
+	}
+}
@@ -0,0 +1,107 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+
+import com.google.common.collect.Lists;
+
+/** Measures how fast Dao.processBatch stores pages and categories, at commit sizes of 100, 1000 and
+ * 10000, with and without the driver rewriting batches to multi-row inserts.
+ *
+ * Usage: DaoBenchmark [jdbc url [user [password]]], by default jdbc:mysql://localhost/wikipedia_bench
+ * as root without password. The English pages and categories tables are created in that database
+ * if needed, and emptied before each run: never point it at the real database.
+ */
+public class DaoBenchmark {
+
+	private static final int PAGES = 20000;
+	private static final int CATEGORIES_PER_PAGE = 5;
+	private static final int[] COMMIT_SIZES = {100, 1000, 10000};
+
+	public static void main(String[] args) throws Exception {
+		String url = args.length > 0 ? args[0] : "jdbc:mysql://localhost/wikipedia_bench";
+		String user = args.length > 1 ? args[1] : "root";
+		String password = args.length > 2 ? args[2] : "";
+		if(url.contains("wikipedia_clean")) {
+			throw new IllegalArgumentException("The benchmark empties its tables; use a scratch database");
+		}
+
+		Class.forName("com.mysql.jdbc.Driver");
+		LanguageProfile language = LanguageProfile.forLanguage(Language.ENGLISH);
+		Connection conn = DriverManager.getConnection(url, user, password);
+		try {
+			createTables(conn, language);
+			List<Page> pages = generate(PAGES);
+
+			for(int commitSize : COMMIT_SIZES) {
+				for(boolean rewrite : new boolean[] {false, true}) {
+					empty(conn, language);
+					String daoUrl = url + (url.contains("?") ? "&" : "?") + "rewriteBatchedStatements=" + rewrite;
+					ConnectionPool pool = new ConnectionPool(daoUrl, user, password, 1);
+					Dao dao = new Dao(pool);
+					measure(dao, language, pages, commitSize, rewrite ? "multi-row" : "batched");
+					dao.close();
+					pool.close();
+				}
+			}
+		} finally {
+			conn.close();
+		}
+	}
+
+	private static void measure(Dao dao, LanguageProfile language, List<Page> pages, int commitSize,
+			String name) {
+		long start = System.nanoTime();
+		for(int i = 0; i < pages.size(); i += commitSize) {
+			dao.processBatch(language.getCode(), pages.subList(i, Math.min(i + commitSize, pages.size())));
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("commit size %5d, %-9s %8.0f pages/s %8.0f categories/s",
+				commitSize, name, pages.size() / seconds, pages.size() * CATEGORIES_PER_PAGE / seconds));
+	}
+
+	private static List<Page> generate(int count) {
+		StringBuilder body = new StringBuilder();
+		while(body.length() < 3000) {
+			body.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor. ");
+		}
+		List<Page> pages = Lists.newArrayList();
+		for(int i = 1; i <= count; ++i) {
+			Page page = new Page();
+			page.setId(i);
+			page.setTitle("Page " + i);
+			page.setBody(body.toString());
+			for(int c = 0; c < CATEGORIES_PER_PAGE; ++c) {
+				page.getCategories().add("Category " + (i % 1000) + "-" + c);
+			}
+			pages.add(page);
+		}
+		return pages;
+	}
+
+	private static void createTables(Connection conn, LanguageProfile language) throws Exception {
+		Statement statement = conn.createStatement();
+		statement.execute("CREATE TABLE IF NOT EXISTS " + language.getPagesTable() + " (" +
+				"id INT UNSIGNED NOT NULL, title TEXT NOT NULL, body MEDIUMTEXT NOT NULL, en_link TEXT NULL, " +
+				"entity_type VARCHAR(10) NULL, dp TINYINT(1) NULL, infobox VARCHAR(255) NULL, aliases TEXT NULL, " +
+				"PRIMARY KEY (id)) DEFAULT CHARACTER SET utf8");
+		statement.execute("CREATE TABLE IF NOT EXISTS " + language.getCategoriesTable() + " (" +
+				"page_id INT UNSIGNED NOT NULL, cat_name VARCHAR(225) NOT NULL, " +
+				"PRIMARY KEY (cat_name, page_id)) DEFAULT CHARACTER SET utf8");
+		statement.close();
+	}
+
+	private static void empty(Connection conn, LanguageProfile language) throws Exception {
+		Statement statement = conn.createStatement();
+		statement.execute("TRUNCATE TABLE " + language.getPagesTable());
+		statement.execute("TRUNCATE TABLE " + language.getCategoriesTable());
+		statement.close();
+	}
+}
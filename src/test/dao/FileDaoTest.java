@@ -0,0 +1,170 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import model.Page;
+import model.Pair;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+public class FileDaoTest {
+
+	private static final int PAGES = 5000; // enough for the title index to grow
+
+	private File directory;
+	private FileDao dao;
+
+	@Before
+	public void setUp() throws Exception {
+		directory = File.createTempFile("filedao", "");
+		directory.delete();
+		dao = new FileDao(directory);
+
+		List<Page> pages = Lists.newArrayList();
+		for(int i = 1; i <= PAGES; ++i) {
+			Page page = new Page();
+			page.setId(i);
+			page.setTitle("Page " + i);
+			page.setBody("Body of page " + i + " \u00e9");
+			page.getCategories().add("Category " + i % 10);
+			page.getCategories().add("Pages");
+			pages.add(page);
+		}
+		pages.get(0).setDisambiguation(true);
+		pages.get(0).setInfobox("person");
+		pages.get(0).setAliases(Sets.newLinkedHashSet(Lists.newArrayList("One", "First")));
+		dao.processBatch("en", pages);
+
+		Page redirect = new Page();
+		redirect.setTitle("First page");
+		redirect.setRedirectTarget("Page 1");
+		Page again = new Page();
+		again.setTitle("First page");
+		again.setRedirectTarget("Page 2");
+		dao.processRedirects("EN", Lists.newArrayList(redirect, again));
+	}
+
+	@After
+	public void tearDown() {
+		dao.close();
+		delete(directory);
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	@Test
+	public void testRetrievePage() throws Exception {
+		ResultSet page = dao.retrievePage("en", 1);
+		assertTrue(page.first());
+		assertEquals(1, page.getLong(1));
+		assertEquals("Page 1", page.getString(2));
+		InputStream body = page.getBinaryStream(3);
+		byte[] bytes = new byte[100];
+		assertEquals("Body of page 1 \u00e9", new String(bytes, 0, body.read(bytes), "UTF-8"));
+		assertEquals("", page.getString(4));
+		assertNull(page.getString(5));
+		assertTrue(page.getBoolean(6));
+		assertEquals("person", page.getString("infobox"));
+		assertEquals("One|First", page.getString("aliases"));
+
+		page = dao.retrievePage("en", "Page " + PAGES);
+		assertTrue(page.first());
+		assertEquals(PAGES, page.getLong(1));
+		assertTrue(dao.retrievePage("en", "page 17").first()); // tried again with other case
+		assertFalse(dao.retrievePage("en", "Page 0").first());
+		assertFalse(dao.retrievePage("nl", 1).first());
+
+		ResultSet categories = dao.retrieveCategoriesPerPage("en", 12);
+		List<String> names = Lists.newArrayList();
+		for(boolean more = categories.first(); more; more = categories.next()) {
+			names.add(categories.getString(2));
+		}
+		assertEquals(Lists.newArrayList("Category 2", "Pages"), names);
+	}
+
+	@Test
+	public void testRetrievePages() {
+		Map<Long, Page> pages = dao.retrievePages("en", Lists.newArrayList(1L, 12L, PAGES + 1L));
+		assertEquals(Sets.newHashSet(1L, 12L), pages.keySet());
+		assertEquals("Page 12", pages.get(12L).getTitle());
+		assertEquals(Lists.newArrayList("Category 2", "Pages"), Lists.newArrayList(pages.get(12L).getCategories()));
+		assertEquals(Sets.newHashSet("One", "First"), pages.get(1L).getAliases());
+
+		Map<String, Page> byTitle = dao.retrievePagesByTitle("en", Lists.newArrayList("Page 2", "page 3", "First page"));
+		assertEquals(2, byTitle.size());
+		assertEquals(3, byTitle.get("page 3").getId());
+
+		Map<String, String> targets = dao.retrieveRedirectTargets("en", Lists.newArrayList("First page", "Page 2"));
+		assertEquals(1, targets.size());
+		assertEquals("Page 1", targets.get("First page"));
+
+		long[] ids = dao.retrievePageIds("en");
+		assertEquals(PAGES, ids.length);
+		assertEquals(PAGES, ids[PAGES - 1]);
+		assertEquals(0, dao.retrievePageIds("nl").length);
+	}
+
+	@Test
+	public void testUpdatesAndReopen() throws Exception {
+		Page page = new Page();
+		page.setId(3);
+		page.setBody("New body");
+		dao.updatePage(page, "en");
+		page.setEntityType("LOC");
+		Map<String, Pair<Page, Page>> articles = Maps.newHashMap();
+		articles.put("Page 3", new Pair<Page, Page>(null, page));
+		dao.updatePages(articles);
+
+		dao.close();
+		ResultSet stored = dao.retrievePage("en", "Page 3");
+		assertTrue(stored.first());
+		assertEquals("New body", stored.getString(3));
+		assertEquals("LOC", stored.getString(5));
+		assertTrue(dao.retrieveCategoriesPerPage("en", 3).first());
+
+		// the first target of a redirect is kept
+		assertEquals("Page 1", dao.retrieveRedirectTarget("en", "First page"));
+		assertNull(dao.retrieveRedirectTarget("en", "Page 1"));
+	}
+
+	@Test
+	public void testReadScannedFeaturesWithoutColumns() throws Exception {
+		// a pages table made before the infobox and aliases columns were added
+		String[] columns = {"id", "title", "body", "en_link", "entity_type", "dp"};
+		List<Object[]> rows = Lists.newArrayList();
+		rows.add(new Object[] {1L, "Page 1", "Body", "", null, false});
+		ResultSet old = RowResultSet.of(columns, rows);
+		assertTrue(old.first());
+		Page page = new Page();
+		Dao.readScannedFeatures(old, page);
+		assertNull(page.getInfobox());
+		assertTrue(page.getAliases().isEmpty());
+	}
+
+	@Test
+	public void testDictionary() {
+		dao.processDictionary(Sets.newHashSet("Huis", "boom"));
+		assertTrue(dao.selectNoun("huis"));
+		assertTrue(dao.selectNoun("Boom"));
+		assertFalse(dao.selectNoun("Amsterdam"));
+	}
+}
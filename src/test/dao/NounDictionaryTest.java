@@ -0,0 +1,38 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class NounDictionaryTest {
+
+	@Test
+	public void testContains() {
+		NounDictionary.Builder builder = new NounDictionary.Builder();
+		for(int i = 0; i < 10000; ++i) {
+			builder.add("noun" + i);
+		}
+		builder.add(" Huis ");
+		builder.add("huis");
+		builder.add("\u00e9tage");
+		builder.add("");
+		NounDictionary dictionary = builder.build();
+
+		assertEquals(10002, dictionary.size());
+		assertTrue(dictionary.contains("huis"));
+		assertTrue(dictionary.contains("HUIS"));
+		assertTrue(dictionary.contains("\u00c9tage"));
+		assertTrue(dictionary.contains("Noun9999"));
+		assertFalse(dictionary.contains("Amsterdam"));
+		assertFalse(dictionary.contains(""));
+
+		int found = 0;
+		for(int i = 10000; i < 20000; ++i) {
+			if(dictionary.contains("noun" + i)) {
+				++found;
+			}
+		}
+		assertEquals(0, found); // the filter may let some through, the search not
+	}
+}
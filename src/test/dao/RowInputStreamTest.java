@@ -0,0 +1,47 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.*;
+
+public class RowInputStreamTest {
+
+	@Test
+	public void testRows() throws Exception {
+		final Iterator<String> values = Arrays.asList("plain", "tab\there", "line\nback\\slash", null, "\u00e9\u00e9n").iterator();
+		InputStream in = new RowInputStream() {
+			private long id;
+
+			@Override
+			protected boolean nextRow() {
+				if(!values.hasNext()) {
+					return false;
+				}
+				field(++id);
+				field(values.next());
+				field(id % 2 == 0);
+				return true;
+			}
+		};
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[7]; // smaller than a row
+		int n;
+		while((n = in.read(buffer, 0, buffer.length)) != -1) {
+			out.write(buffer, 0, n);
+		}
+
+		assertEquals("1\tplain\t0\n" +
+				"2\ttab\\there\t1\n" +
+				"3\tline\\nback\\\\slash\t0\n" +
+				"4\t\\N\t1\n" +
+				"5\t\u00e9\u00e9n\t0\n", out.toString("UTF-8"));
+		assertEquals(-1, in.read());
+	}
+}
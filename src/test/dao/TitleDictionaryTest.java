@@ -0,0 +1,37 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class TitleDictionaryTest {
+
+	@Test
+	public void testFind() {
+		TitleDictionary.Builder builder = new TitleDictionary.Builder();
+		for(int i = 1; i <= 10000; ++i) {
+			builder.add(i, "Page " + (i * 7919 % 10007)); // not in order
+		}
+		builder.add(20000, "\u00c9cole");
+		builder.add(20001, "Zebra");
+		builder.add(20002, "Amsterdam");
+		builder.add(20003, "Amsterdam"); // the first is kept
+		builder.add(20004, "amsterdam (band)");
+		TitleDictionary dictionary = builder.build();
+
+		assertEquals(10004, dictionary.size());
+		assertEquals(1, dictionary.find("Page 7919"));
+		assertEquals(20000, dictionary.find("\u00c9cole"));
+		assertEquals(20001, dictionary.find("Zebra"));
+		assertEquals(20002, dictionary.find("Amsterdam"));
+		assertEquals(-1, dictionary.find("Page 0"));
+		assertEquals(-1, dictionary.find(""));
+
+		// tried again with other case, as Dao does
+		assertEquals(-1, dictionary.find("zebra"));
+		assertEquals(20001, dictionary.resolve("zebra"));
+		assertEquals(20004, dictionary.resolve("Amsterdam (Band)"));
+		assertEquals(-1, dictionary.resolve("Rotterdam"));
+	}
+}
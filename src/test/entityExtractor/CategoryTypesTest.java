@@ -0,0 +1,42 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import model.CategoryGraph;
+
+import org.junit.*;
+
+import wikipediaparser.CategoryMatcher;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class CategoryTypesTest {
+
+	@Test
+	public void testTypeOf() {
+		Map<String, String> rules = Maps.newLinkedHashMap();
+		rules.put("people", "PERSON");
+		rules.put("^People", "PERSON");
+		rules.put("^Cities", "GPE");
+		rules.put("companies", "ORGANIZATION");
+
+		CategoryGraph.Builder builder = new CategoryGraph.Builder();
+		builder.add("Dutch painters", Lists.newArrayList("Painters", "Dutch people"));
+		builder.add("Painters", Lists.newArrayList("Artists by occupation"));
+		builder.add("Artists by occupation", Lists.newArrayList("People by occupation"));
+		builder.add("People by occupation", Lists.newArrayList("People"));
+		builder.add("Capitals", Lists.newArrayList("Cities in Europe"));
+		CategoryTypes types = new CategoryTypes(builder.build(), new CategoryMatcher(rules));
+
+		// Dutch people, People by occupation three up and People four up, one too many
+		assertNull(types.typeOf(Lists.newArrayList("Dutch painters")));
+		assertEquals("PER", types.typeOf(Lists.newArrayList("Dutch painters", "Painters")));
+		assertEquals("PER", types.typeOf(Lists.newArrayList("Dutch painters", "people of Utrecht")));
+		assertNull(types.typeOf(Lists.newArrayList("Capitals", "Cities in Asia", "Software companies")));
+		assertEquals("LOC", types.typeOf(Lists.newArrayList("Capitals", "Cities in Asia", "Cities of Africa")));
+	}
+}
@@ -0,0 +1,100 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.Set;
+
+import org.junit.*;
+
+import com.google.common.collect.Sets;
+
+import dao.IDao;
+
+public class ExtractionSchedulerTest {
+
+	@Test
+	public void testAllIdsOnce() throws Exception {
+		long[] ids = new long[1000];
+		for(int i = 0; i < ids.length; ++i) {
+			ids[i] = 3 * i + 1; // with gaps
+		}
+		final ExtractionScheduler scheduler = new ExtractionScheduler(ids, 4, 10);
+		final Set<Long> seen = Sets.newHashSet();
+		final int[] duplicates = new int[1];
+		Thread[] workers = new Thread[4];
+		for(int w = 0; w < workers.length; ++w) {
+			final int worker = w;
+			workers[w] = new Thread() {
+				@Override
+				public void run() {
+					for(long[] chunk = scheduler.next(worker); chunk != null; chunk = scheduler.next(worker)) {
+						synchronized(seen) {
+							for(long id : chunk) {
+								if(!seen.add(id)) {
+									++duplicates[0];
+								}
+							}
+						}
+						if(worker == 0) {
+							try {
+								Thread.sleep(20); // a worker with heavy pages
+							} catch (InterruptedException e) {
+								return;
+							}
+						}
+					}
+				}
+			};
+			workers[w].start();
+		}
+		for(Thread worker : workers) {
+			worker.join();
+		}
+		assertEquals(ids.length, seen.size());
+		assertEquals(0, duplicates[0]);
+		assertEquals(100, scheduler.getTakenCount());
+		assertTrue(scheduler.getStolenCount() > 0); // from the slow worker
+	}
+
+	@Test
+	public void testCheckpoint() throws Exception {
+		File file = File.createTempFile("extraction", ".checkpoint");
+		file.delete();
+		try {
+			long[] ids = {1, 2, 3, 4, 5, 6, 10, 11};
+			ExtractionCheckpoint checkpoint = new ExtractionCheckpoint(file);
+			ExtractionScheduler scheduler = new ExtractionScheduler(ids, 2, 2, checkpoint);
+			assertArrayEquals(new long[] {1, 2}, scheduler.next(0));
+			assertArrayEquals(new long[] {5, 6}, scheduler.next(1));
+			assertArrayEquals(new long[] {3, 4}, scheduler.next(0)); // 1 and 2 are done
+			checkpoint.save(); // the run dies here
+			assertEquals(2, checkpoint.getDoneCount());
+
+			checkpoint = ExtractionCheckpoint.resume(file);
+			assertTrue(checkpoint.isDone(2));
+			assertFalse(checkpoint.isDone(3));
+			scheduler = new ExtractionScheduler(ids, 1, 4, checkpoint);
+			assertArrayEquals(new long[] {3, 4, 5, 6}, scheduler.next(0));
+			assertArrayEquals(new long[] {10, 11}, scheduler.next(0));
+			assertNull(scheduler.next(0));
+			checkpoint.save();
+			assertEquals(ids.length, ExtractionCheckpoint.resume(file).getDoneCount());
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testForPages() {
+		IDao dao = mock(IDao.class);
+		when(dao.retrievePageIds("NL")).thenReturn(new long[] {2, 5, 7, 3001, 3005});
+		ExtractionScheduler scheduler = ExtractionScheduler.forPages(dao, "NL", 3000, 2);
+		long[] first = scheduler.next(1);
+		assertArrayEquals(new long[] {3001, 3005}, first);
+		assertNull(scheduler.next(0));
+		assertNull(scheduler.next(1));
+	}
+}
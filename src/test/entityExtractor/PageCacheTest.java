@@ -0,0 +1,91 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package entityExtractor;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.Collections;
+
+import model.Page;
+
+import org.junit.*;
+
+import wikipediaparser.CategoryMatcher;
+
+import com.google.common.collect.Maps;
+
+import dao.IDao;
+
+public class PageCacheTest {
+
+	@Test
+	public void testLookups() {
+		PageCache cache = new PageCache(1 << 20);
+		assertNull(cache.get("EN", 1));
+
+		Page page = page(1, "Amsterdam", 100);
+		cache.put("EN", "Mokum", page); // found through a redirect
+		page.setEntityType("LOC");
+
+		Page cached = cache.get("en", "Mokum");
+		assertEquals("Amsterdam", cached.getTitle());
+		assertNull(cached.getEntityType()); // a copy was cached
+		cached.getCategories().clear();
+		assertEquals(1, cache.get("EN", 1).getCategories().size()); // and a copy is handed out
+		assertNull(cache.get("NL", 1));
+
+		cache.put("EN", "Nowhere", null);
+		assertEquals(0, cache.get("EN", "Nowhere").getId());
+
+		assertEquals(3, cache.getHitCount());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		PageCache cache = new PageCache(16 * 100000); // 100 kB a segment
+		for(int i = 1; i <= 1000; ++i) {
+			cache.put("EN", page(i, "Page " + i, 10000)); // 20 kB
+		}
+		assertTrue(cache.getEvictionCount() > 0);
+		assertTrue(cache.getWeight() <= 16 * 100000);
+		assertNotNull(cache.get("EN", 1000)); // the last one put stays
+
+		cache.put("EN", page(2000, "Huge", 100000)); // more than a segment, never cached
+		assertNull(cache.get("EN", 2000));
+	}
+
+	@Test
+	public void testFailedLookups() {
+		IDao dao = mock(IDao.class); // retrievePage returns null, as when the query fails
+		ResultSet empty = mock(ResultSet.class);
+		when(dao.retrievePage("EN", "Nowhere")).thenReturn(empty);
+		when(dao.retrieveRedirectTargets(eq("EN"), anyCollectionOf(String.class)))
+			.thenReturn(Collections.<String, String>emptyMap());
+		EntityUtil util = new EntityUtil(dao, new CategoryMatcher(Maps.<String, String>newHashMap()),
+				new PageCache(1 << 20));
+
+		assertNull(util.extractPageByTitle("EN", "Broken"));
+		assertNull(util.extractPageByTitle("EN", "Broken"));
+		verify(dao, times(2)).retrievePage("EN", "Broken"); // not cached, so tried again
+
+		assertNull(util.extractPageByTitle("EN", "Nowhere"));
+		assertNull(util.extractPageByTitle("EN", "Nowhere"));
+		verify(dao, times(1)).retrievePage("EN", "Nowhere"); // cached as not found
+	}
+
+	private static Page page(long id, String title, int length) {
+		Page page = new Page();
+		page.setId(id);
+		page.setTitle(title);
+		StringBuilder body = new StringBuilder();
+		while(body.length() < length) {
+			body.append("text ");
+		}
+		page.setBody(body.toString());
+		page.getCategories().add("Cities");
+		return page;
+	}
+}
@@ -0,0 +1,68 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+
+public class CategoryGraphTest {
+
+	private CategoryGraph graph;
+
+	@Before
+	public void setUp() {
+		CategoryGraph.Builder builder = new CategoryGraph.Builder();
+		builder.add("Dutch painters", Lists.newArrayList("Painters", "people_from the Netherlands"));
+		builder.add("Painters", Lists.newArrayList("Artists"));
+		builder.add("Artists", Lists.newArrayList("Painters")); // a cycle
+		builder.add("Painters", Lists.newArrayList("Ignored")); // the first page is kept
+		builder.add("Orphans", Collections.<String>emptyList());
+		graph = builder.build();
+	}
+
+	@Test
+	public void testGraph() throws Exception {
+		assertEquals(5, graph.size());
+		assertEquals(4, graph.getEdgeCount());
+		assertEquals("People from the Netherlands", graph.name(graph.id("People from the Netherlands")));
+		assertEquals(graph.id("Dutch painters"), graph.id("dutch_painters"));
+		assertEquals(-1, graph.id("Ignored"));
+
+		File file = File.createTempFile("graph", ".txt");
+		try {
+			graph.write(file);
+			CategoryGraph read = CategoryGraph.read(file);
+			assertEquals(4, read.size()); // Orphans has no parents to write
+			assertEquals(4, read.getEdgeCount());
+			assertTrue(read.id("Artists") >= 0);
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testParents() {
+		assertEquals(Lists.newArrayList("Painters", "People from the Netherlands"), graph.parents("dutch_painters"));
+		assertEquals(Lists.newArrayList("Painters"), graph.parents("Artists"));
+		assertTrue(graph.parents("Orphans").isEmpty());
+		assertTrue(graph.parents("Ignored").isEmpty());
+	}
+
+	@Test
+	public void testPropagate() {
+		int[] weights = new int[graph.size()];
+		weights[graph.id("Artists")] = 1;
+		weights[graph.id("People from the Netherlands")] = 10;
+		int[] sums = graph.propagate(weights, 1, 3);
+		assertEquals(1 + 1, sums[graph.id("Artists")]); // itself, and through the cycle two up
+		assertEquals(1 + 1, sums[graph.id("Painters")]); // one up, and three up
+		assertEquals(10 + 1, sums[graph.id("Dutch painters")]);
+		assertEquals(0, sums[graph.id("Orphans")]);
+		assertEquals(10, graph.propagate(weights, 1, 0)[graph.id("People from the Netherlands")]);
+	}
+}
@@ -0,0 +1,39 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package model;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class LanguageProfileTest {
+
+	@Test
+	public void testLookup() {
+		LanguageProfile dutch = LanguageProfile.forLanguage(Language.DUTCH);
+		assertSame(dutch, LanguageProfile.forName("dutch"));
+		assertSame(dutch, LanguageProfile.forName("DUTCH"));
+		assertSame(dutch, LanguageProfile.forCode("nl"));
+		assertEquals("NL", dutch.getCode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknown() {
+		LanguageProfile.forName("klingon");
+	}
+
+	@Test
+	public void testProfiles() {
+		LanguageProfile english = LanguageProfile.forLanguage(Language.ENGLISH);
+		LanguageProfile dutch = LanguageProfile.forLanguage(Language.DUTCH);
+
+		assertEquals("PAGES_EN", english.getPagesTable());
+		assertEquals("CATS_NL", dutch.getCategoriesTable());
+		assertEquals("Categorie:", dutch.getCategoryPrefix());
+		assertNull(english.getInterwikiPrefix());
+		assertEquals("en:", dutch.getInterwikiPrefix());
+		assertEquals("dp", dutch.getDisambiguationTemplates()[0]);
+		assertEquals("external links", english.getEndHeadings()[4]);
+		assertEquals("Cite ", english.getRemovedTemplates()[3]);
+		assertNull(dutch.getMainArticleNote());
+	}
+}
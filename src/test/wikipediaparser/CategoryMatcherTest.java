@@ -0,0 +1,52 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.*;
+
+import com.google.common.collect.Maps;
+
+public class CategoryMatcherTest {
+
+	@Test
+	public void testMatch() {
+		Map<String, String> rules = Maps.newLinkedHashMap();
+		rules.put("fiction fans", "PERSON");
+		rules.put("^people from", "PERSON");
+		rules.put("universities$", "ORGANIZATION");
+		rules.put("^rivers of$", "LOCATION");
+		rules.put("cities", "GPE");
+		rules.put("ties", "MISC");
+		rules.put("sities", "FACILITY");
+		CategoryMatcher matcher = new CategoryMatcher(rules);
+
+		assertEquals(7, matcher.size());
+		assertEquals("PERSON", matcher.match("science fiction fans"));
+		assertEquals("PERSON", matcher.match("people from Amsterdam"));
+		assertEquals("GPE", matcher.match("famous people from cities")); // not at the start
+		assertEquals("ORGANIZATION", matcher.match("Dutch universities"));
+		assertEquals("MISC", matcher.match("universities of the Netherlands")); // not at the end
+		assertEquals("LOCATION", matcher.match("rivers of"));
+		assertNull(matcher.match("rivers of Europe"));
+		assertEquals("GPE", matcher.match("parties in cities")); // the first rule wins, not the first found
+		assertEquals("MISC", matcher.match("parties")); // through a suffix link
+		assertNull(matcher.match("FICTION FANS")); // with case
+		assertNull(matcher.match(""));
+	}
+
+	@Test
+	public void testEmptyWords() {
+		Map<String, String> rules = Maps.newLinkedHashMap();
+		rules.put("^$", "MISC");
+		rules.put("towns", "GPE");
+		rules.put("^", "LOCATION");
+		CategoryMatcher matcher = new CategoryMatcher(rules);
+
+		assertEquals("MISC", matcher.match(""));
+		assertEquals("GPE", matcher.match("towns"));
+		assertEquals("LOCATION", matcher.match("rivers"));
+	}
+}
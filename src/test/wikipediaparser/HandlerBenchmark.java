@@ -0,0 +1,169 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+/** Compares the allocations of the Handler with those of the Handler as it was before, which
+ * concatenated every chunk of characters to the body so far. Only the SAX parsing is measured:
+ * bodies are not parsed and pages are not stored.
+ *
+ * Usage: HandlerBenchmark [dump.xml]. Without a file, a dump of large generated pages is used;
+ * with a file, the first 100MB of it. Needs a JVM with com.sun.management.ThreadMXBean.
+ */
+public class HandlerBenchmark {
+
+	private static final int ROUNDS = 3;
+	private static final int MAX_BYTES = 100 << 20;
+
+	public static void main(String[] args) throws Exception {
+		byte[] dump = args.length > 0 ? read(new File(args[0])) : generate(20, 200000);
+		Parser.setLanguage(Language.ENGLISH);
+		SyntaxStripper stripper = new SyntaxStripper(LanguageProfile.forLanguage(Language.ENGLISH));
+
+		System.out.println("Dump of " + (dump.length >> 10) + "KB");
+		for(int round = 0; round < ROUNDS; ++round) {
+			measure("concatenating", dump, new ConcatenatingHandler());
+			NonStoringParser parser = new NonStoringParser(stripper, false);
+			measure("buffered", dump, new Handler(parser));
+			parser = new NonStoringParser(stripper, true);
+			measure("buffered, recycled pages", dump, new Handler(parser));
+		}
+	}
+
+	private static void measure(String name, byte[] dump, DefaultHandler handler) throws Exception {
+		SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
+		com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		long bytes = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		saxParser.parse(new InputSource(new ByteArrayInputStream(dump)), handler);
+		long millis = (System.nanoTime() - start) / 1000000;
+		bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+		System.out.println(String.format("%-26s %8d ms %10d KB allocated (%.1f bytes per input byte)",
+				name, millis, bytes >> 10, (double) bytes / dump.length));
+	}
+
+	private static byte[] generate(int pages, int textLength) throws IOException {
+		StringBuilder xml = new StringBuilder("<mediawiki>\n");
+		String line = "'''Lorem''' ipsum [[dolor]] sit amet, {{cite|consectetur}} adipiscing &amp; elit.\n";
+		for(int i = 1; i <= pages; ++i) {
+			xml.append("<page>\n<title>Page ").append(i).append("</title>\n<id>").append(i)
+				.append("</id>\n<revision><id>").append(i).append("</id>\n<text xml:space=\"preserve\">");
+			for(int length = 0; length < textLength; length += line.length()) {
+				xml.append(line);
+			}
+			xml.append("[[Category:Lorem]]</text>\n</revision>\n</page>\n");
+		}
+		return xml.append("</mediawiki>\n").toString().getBytes("UTF-8");
+	}
+
+	private static byte[] read(File file) throws IOException {
+		byte[] dump = new byte[(int) Math.min(file.length(), MAX_BYTES)];
+		FileInputStream in = new FileInputStream(file);
+		try {
+			int n = 0;
+			while(n < dump.length) {
+				n += in.read(dump, n, dump.length - n);
+			}
+		} finally {
+			in.close();
+		}
+		// a cut off dump is not well formed; cut at the last page and close it
+		String closing = "</page>";
+		String xml = new String(dump, "UTF-8");
+		xml = xml.substring(0, xml.lastIndexOf(closing) + closing.length()) + "\n</mediawiki>\n";
+		return xml.getBytes("UTF-8");
+	}
+
+	/** A Parser that neither parses nor stores pages. */
+	private static class NonStoringParser extends Parser {
+
+		NonStoringParser(SyntaxStripper stripper, boolean recycle) throws Exception {
+			super(null, stripper);
+			setRecyclePages(recycle);
+			setCommitSize(100);
+		}
+
+		@Override
+		protected void parseBody(Page page) {
+		}
+
+		@Override
+		protected void storePages(List<Page> batch) {
+		}
+	}
+
+	/** The Handler's previous way of collecting titles and bodies. */
+	private static class ConcatenatingHandler extends DefaultHandler {
+
+		private Page page;
+		private Handler.State state = Handler.State.UNDEFINED;
+		private boolean parseStuff;
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			if(qName.equalsIgnoreCase("page")) {
+				state = Handler.State.PAGE;
+				page = new Page();
+				parseStuff = true;
+			}
+			else if(qName.equalsIgnoreCase("title")) {
+				page.setTitle("");
+				state = Handler.State.TITLE;
+			}
+			else if(qName.equalsIgnoreCase("id")) {
+				state = Handler.State.ID;
+			}
+			else if(qName.equalsIgnoreCase("text")) {
+				page.setBody("");
+				state = Handler.State.TEXT;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			String str = String.copyValueOf(ch, start, length);
+
+			switch(state) {
+			case TITLE:
+				page.setTitle(page.getTitle() + str);
+				break;
+			case ID:
+				if(parseStuff) {
+					page.setId(Long.parseLong(str));
+					parseStuff = false;
+				}
+				break;
+			case TEXT:
+				page.setBody(page.getBody() + str);
+				break;
+			default:
+				break;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			state = Handler.State.UNDEFINED;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import model.Page;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+
+public class PageReaderTest {
+
+	private static final String XML = "<mediawiki xmlns=\"http://www.mediawiki.org/xml/export-0.5/\">\n" +
+			"<siteinfo><sitename>Wikipedia</sitename></siteinfo>\n" +
+			"<page>\n<title>Test 1</title>\n<ns>0</ns>\n<id>1</id>\n" +
+			"<revision><id>11</id><text xml:space=\"preserve\">First &amp; <![CDATA[only]]></text></revision>\n</page>\n" +
+			"<page>\n<title>Talk:Test 1</title>\n<ns>1</ns>\n<id>2</id>\n" +
+			"<revision><id>12</id><text>Talk <b>not</b> well formed wikitext</text></revision>\n</page>\n" +
+			"<page>\n<title>Test 3</title>\n<id>3</id>\n</page>\n" +
+			"</mediawiki>\n";
+
+	@Test
+	public void testReadAll() throws Exception {
+		List<Page> pages = read(new PageFilter() {
+			public boolean accept(String title, long id, int namespace) {
+				return true;
+			}
+		});
+
+		assertEquals(3, pages.size());
+		assertEquals("Test 1", pages.get(0).getTitle());
+		assertEquals(1, pages.get(0).getId());
+		assertEquals("First & only", pages.get(0).getBody());
+		assertEquals(2, pages.get(1).getId());
+		assertEquals("Talk not well formed wikitext", pages.get(1).getBody());
+		// a page without revision
+		assertEquals(3, pages.get(2).getId());
+		assertNull(pages.get(2).getBody());
+	}
+
+	@Test
+	public void testFilter() throws Exception {
+		PageFilter articles = new PageFilter() {
+			public boolean accept(String title, long id, int namespace) {
+				return namespace == 0 && id != 3;
+			}
+		};
+		PageReader reader = new PageReader(new ByteArrayInputStream(XML.getBytes("UTF-8")), articles);
+
+		assertTrue(reader.hasNext());
+		assertEquals(1, reader.next().getId());
+		assertFalse(reader.hasNext());
+		assertEquals(2, reader.getSkippedCount());
+		reader.close();
+	}
+
+	private static List<Page> read(PageFilter filter) throws Exception {
+		PageReader reader = new PageReader(new ByteArrayInputStream(XML.getBytes("UTF-8")), filter);
+		List<Page> pages = Lists.newArrayList(reader.iterator());
+		reader.close();
+		return pages;
+	}
+}
@@ -0,0 +1,54 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+
+public class PageScannerTest {
+
+	@Test
+	public void testScan() {
+		Page page = page("{{Infobox plaats\n| naam = {{lang|nl|Amsterdam}}\n}}\n" +
+				"'''Amsterdam''' (ook '''''Mokum''''' of '''[[Hoofdstad]]''') is een stad.\n" +
+				"== Geschiedenis ==\nIn de '''middeleeuwen'''...\n" +
+				"[[Categorie:Plaats in Noord-Holland|Amsterdam]]\n[[Categorie:Hoofdstad <!-- van Nederland -->]]\n" +
+				"[[de:Amsterdam]]\n[[en:Amsterdam]]");
+		new PageScanner(LanguageProfile.forLanguage(Language.DUTCH)).scan(page);
+
+		assertEquals("plaats", page.getInfobox());
+		assertEquals(Lists.newArrayList("Amsterdam", "Mokum", "Hoofdstad"), Lists.newArrayList(page.getAliases()));
+		assertEquals(Lists.newArrayList("Plaats in Noord-Holland", "Hoofdstad"),
+				Lists.newArrayList(page.getCategories()));
+		assertEquals("Amsterdam", page.getEnglishLink());
+		assertFalse(page.isDisambiguation());
+		assertFalse(page.isRedirect());
+	}
+
+	@Test
+	public void testDisambiguationAndRedirect() {
+		PageScanner scanner = new PageScanner(LanguageProfile.forLanguage(Language.ENGLISH));
+
+		Page page = page("'''Mercury''' may refer to:\n* [[Mercury (planet)]]\n{{disambig}}\n[[nl:Mercurius]]");
+		scanner.scan(page);
+		assertTrue(page.isDisambiguation());
+		assertNull(page.getEnglishLink());
+		assertNull(page.getInfobox());
+
+		page = page("#REDIRECT [[Mercury (planet)]]");
+		scanner.scan(page);
+		assertEquals("Mercury (planet)", page.getRedirectTarget());
+	}
+
+	private static Page page(String body) {
+		Page page = new Page();
+		page.setBody(body);
+		return page;
+	}
+}
@@ -0,0 +1,20 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+public class ParserTest {
+
+	@Test
+	public void testFindRedirectTarget() {
+		assertEquals("Amsterdam", Parser.findRedirectTarget("#REDIRECT [[Amsterdam]]"));
+		assertEquals("Amsterdam", Parser.findRedirectTarget("\n#redirect[[ Amsterdam |stad]] {{R from move}}"));
+		assertEquals("Amsterdam", Parser.findRedirectTarget("#DOORVERWIJZING: [[Amsterdam]]"));
+		assertNull(Parser.findRedirectTarget("Amsterdam is the #REDIRECT [[capital]]"));
+		assertNull(Parser.findRedirectTarget("#REDIRECT to nowhere [[Amsterdam]]"));
+		assertNull(Parser.findRedirectTarget("#REDIRECT [[]]"));
+		assertNull(Parser.findRedirectTarget(""));
+	}
+}
@@ -0,0 +1,160 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import model.CategoryGraph;
+import model.Language;
+import model.Page;
+
+import org.junit.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import dao.IDao;
+
+public class StreamingIngestTest {
+
+	private static final int PAGES = 57;
+
+	private File dump;
+	private IDao dao;
+	private List<Page> stored;
+	private List<Integer> batchSizes;
+	private List<Page> redirects;
+
+	@Before
+	public void setUp() throws Exception {
+		StringBuilder xml = new StringBuilder("<mediawiki>\n");
+		for(int i = 1; i <= PAGES; ++i) {
+			xml.append("<page>\n<title>Test ").append(i).append("</title>\n<id>").append(i)
+				.append("</id>\n<revision><id>").append(1000 + i).append("</id>\n")
+				.append("<text>Page ").append(i).append(" text [[Category:Tests]]</text>\n")
+				.append("</revision>\n</page>\n");
+		}
+		xml.append("<page>\n<title>Test redirect</title>\n<ns>0</ns>\n<id>1001</id>\n")
+			.append("<redirect title=\"Test 1\" />\n<revision><id>2001</id>\n")
+			.append("<text>#REDIRECT [[Test 1]]</text>\n</revision>\n</page>\n");
+		xml.append("<page>\n<title>Old redirect</title>\n<id>1002</id>\n<revision><id>2002</id>\n")
+			.append("<text>#redirect [[Test 2|2]]</text>\n</revision>\n</page>\n");
+		xml.append("<page>\n<title>Talk:Test 1</title>\n<ns>1</ns>\n<id>1003</id>\n<revision><id>2003</id>\n")
+			.append("<text>Talk</text>\n</revision>\n</page>\n");
+		xml.append("<page>\n<title>Category:Tests</title>\n<ns>14</ns>\n<id>1004</id>\n<revision><id>2004</id>\n")
+			.append("<text>Tests [[Category:Software]]</text>\n</revision>\n</page>\n");
+		xml.append("</mediawiki>\n");
+
+		dump = File.createTempFile("dump", ".xml");
+		FileOutputStream out = new FileOutputStream(dump);
+		out.write(xml.toString().getBytes("UTF-8"));
+		out.close();
+
+		stored = Lists.newArrayList();
+		batchSizes = Lists.newArrayList();
+		redirects = Lists.newArrayList();
+		dao = mock(IDao.class);
+		doAnswer(new Answer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer(InvocationOnMock invocation) {
+				List<Page> batch = (List<Page>) invocation.getArguments()[1];
+				stored.addAll(batch);
+				batchSizes.add(batch.size());
+				return null;
+			}
+		}).when(dao).processBatch(anyString(), anyListOf(Page.class));
+		doAnswer(new Answer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer(InvocationOnMock invocation) {
+				redirects.addAll((List<Page>) invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(dao).processRedirects(anyString(), anyListOf(Page.class));
+
+		Parser.setLanguage(Language.ENGLISH);
+	}
+
+	@After
+	public void tearDown() {
+		dump.delete();
+	}
+
+	@Test
+	public void testParseFile() throws Exception {
+		for(int threads = 1; threads <= 4; threads += 3) {
+			stored.clear();
+			batchSizes.clear();
+			redirects.clear();
+
+			StreamingIngest ingest = new StreamingIngest(dao, threads, 2);
+			ingest.setSourceDocument(dump.getPath());
+			ingest.setCommitSize(10);
+			ingest.parseFile();
+
+			// category pages are stored with the articles
+			assertEquals(PAGES + 1, stored.size());
+			Set<Long> ids = Sets.newHashSet();
+			for(Page page : stored) {
+				if(page.getNamespace() == Page.CATEGORY_NAMESPACE) {
+					assertEquals("Category:Tests", page.getTitle());
+					assertTrue(page.getCategories().contains("Software"));
+					continue;
+				}
+				ids.add(page.getId());
+				assertEquals("Test " + page.getId(), page.getTitle());
+				assertTrue(page.getCategories().contains("Tests"));
+				assertFalse(page.getBody().contains("[[Category:"));
+			}
+			assertEquals(PAGES, ids.size());
+			for(int size : batchSizes) {
+				assertTrue(size <= 10);
+			}
+
+			// redirects are stored apart, talk pages not at all
+			assertEquals(2, redirects.size());
+			Set<String> targets = Sets.newHashSet();
+			for(Page page : redirects) {
+				targets.add(page.getRedirectTarget());
+			}
+			assertEquals(Sets.newHashSet("Test 1", "Test 2"), targets);
+		}
+	}
+
+	@Test
+	public void testCategoryGraph() throws Exception {
+		StreamingIngest ingest = new StreamingIngest(dao, 2, 2);
+		ingest.setSourceDocument(dump.getPath());
+		ingest.setCategoryGraph(new CategoryGraph.Builder());
+		ingest.parseFile();
+
+		CategoryGraph graph = ingest.getCategoryGraph().build();
+		assertEquals(Lists.newArrayList("Software"), graph.parents("Tests"));
+	}
+
+	@Test
+	public void testStoreFails() throws Exception {
+		RuntimeException failure = new IllegalStateException("Database gone");
+		doThrow(failure).when(dao).processBatch(anyString(), anyListOf(Page.class));
+
+		// small queues, so the reader waits for the failed store stage
+		StreamingIngest ingest = new StreamingIngest(dao, 2, 1);
+		ingest.setSourceDocument(dump.getPath());
+		ingest.setCommitSize(1);
+		try {
+			ingest.parseFile();
+			fail("The failure of the store stage is not thrown");
+		} catch(IOException e) {
+			assertSame(failure, e.getCause());
+		}
+		verify(dao, times(1)).processBatch(anyString(), anyListOf(Page.class));
+	}
+}
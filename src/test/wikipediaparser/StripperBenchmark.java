@@ -0,0 +1,93 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import java.util.List;
+
+import model.Language;
+import model.LanguageProfile;
+import model.Page;
+
+import com.google.common.collect.Lists;
+
+/** Compares the single-pass WikitextStripper with the regexes of the SyntaxStripper, in time and
+ * in how many pages they strip differently.
+ *
+ * Usage: StripperBenchmark [dump.xml[.bz2|.gz] [pages]]. Without a file, generated pages are used;
+ * with a file, its first 2000 articles, or the given number.
+ */
+public class StripperBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Exception {
+		List<String> texts = args.length > 0
+				? read(args[0], args.length > 1 ? Integer.parseInt(args[1]) : 2000)
+				: generate(2000);
+		SyntaxStripper regex = new SyntaxStripper(LanguageProfile.forLanguage(Language.ENGLISH), false, true);
+		SyntaxStripper tokenizer = new SyntaxStripper(LanguageProfile.forLanguage(Language.ENGLISH), false, false);
+
+		int different = 0;
+		for(String text : texts) {
+			if(!regex.stripWikipediaSyntax(text).equals(tokenizer.stripWikipediaSyntax(text))) {
+				++different;
+			}
+		}
+		System.out.println(texts.size() + " pages, stripped differently: " + different);
+
+		for(int round = 0; round < ROUNDS; ++round) {
+			measure("regex", regex, texts);
+			measure("single pass", tokenizer, texts);
+		}
+	}
+
+	private static void measure(String name, SyntaxStripper stripper, List<String> texts) {
+		long chars = 0;
+		long start = System.nanoTime();
+		for(String text : texts) {
+			chars += stripper.stripWikipediaSyntax(text).length();
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+		System.out.println(String.format("%-12s %6d ms (%d chars kept)", name, millis, chars));
+	}
+
+	private static List<String> generate(int pages) {
+		String body = "{{Infobox settlement\n| name = Lorem\n| population = {{formatnum:1000}}\n}}\n" +
+				"'''Lorem''' ipsum [[dolor]] sit amet<ref>{{cite web|title=Lorem}}</ref>, consectetur " +
+				"[[Image:Lorem.jpg|thumb|Adipiscing [[elit]]]] adipiscing elit.<!-- sed do -->\n";
+		String table = "{|\n! Lorem !! Ipsum\n|-\n| 1 || 2\n|}\n";
+		List<String> texts = Lists.newArrayList();
+		for(int i = 0; i < pages; ++i) {
+			StringBuilder text = new StringBuilder(body);
+			for(int j = 0; j < 20; ++j) {
+				text.append("== Section ").append(j).append(" ==\n* Lorem ipsum dolor sit amet, ")
+					.append("consectetur<ref name=\"a\"/> adipiscing elit, sed do eiusmod tempor.\n")
+					.append(j % 5 == 0 ? table : "");
+			}
+			text.append("== References ==\n{{reflist}}\n[[Category:Lorem]]\n");
+			texts.add(text.toString());
+		}
+		return texts;
+	}
+
+	private static List<String> read(String fileName, int pages) throws Exception {
+		PageReader reader = PageReader.open(fileName, new PageFilter() {
+			public boolean accept(String title, long id, int namespace) {
+				return namespace == 0;
+			}
+		});
+		List<String> texts = Lists.newArrayList();
+		try {
+			for(Page page : reader) {
+				if(page.getBody() != null && !page.isRedirect()) {
+					texts.add(page.getBody());
+					if(texts.size() == pages) {
+						break;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return texts;
+	}
+}
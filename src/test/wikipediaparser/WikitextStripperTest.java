@@ -0,0 +1,58 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+
+import model.Language;
+import model.LanguageProfile;
+
+import org.junit.*;
+
+public class WikitextStripperTest {
+
+	private WikitextStripper english;
+	private WikitextStripper dutch;
+
+	@Before
+	public void setUp() {
+		english = WikitextStripper.forLanguage(LanguageProfile.forLanguage(Language.ENGLISH));
+		dutch = WikitextStripper.forLanguage(LanguageProfile.forLanguage(Language.DUTCH));
+	}
+
+	@Test
+	public void testNestedTemplates() {
+		String text = "{{Infobox person\n| name = {{lang|nl|Jan}}\n| born = {{birth date|1900|1|1}}\n}}" +
+				"'''Jan''' was a {{nowrap|painter}}.{{cite web|title={{!}}x}}";
+		assertEquals("Jan was a {{nowrap|painter}}.", english.strip(text));
+	}
+
+	@Test
+	public void testLinksTablesAndTags() {
+		String text = "A[[Image:a.jpg|thumb|A [[painting]] by [[Jan]]]] b<ref name=\"x\"/> c<ref>{{cite|y}}</ref>" +
+				" d<!-- [[Category:Hidden]] -->\n{|\n| {{foo|}} || bar\n|}\n* [[item]]";
+		assertEquals("A b c d\n\n [[item]]", english.strip(text));
+	}
+
+	@Test
+	public void testEnd() {
+		assertEquals("Text\n", english.strip("Text\n=== See also ===\n* [[More]]"));
+		assertEquals("Text\n", english.strip("Text\n{{DEFAULTSORT:Text}}\n[[Category:Texts]]"));
+		assertEquals("Tekst\n", dutch.strip("Tekst\n[[categorie:Teksten]]"));
+		assertEquals("Tekst\n", dutch.strip("Tekst\n== Externe links ==\n[[Bestand:a.jpg]]"));
+		// not an end heading
+		assertEquals("== History ==\nText", english.strip("== History ==\nText"));
+	}
+
+	@Test
+	public void testMainArticleNote() {
+		assertEquals("\nText", english.strip(":''Main article: [[History]]''\nText"));
+		assertEquals(":''Hoofdartikel: [[Geschiedenis]]''", dutch.strip(":''Hoofdartikel: [[Geschiedenis]]''"));
+	}
+
+	@Test
+	public void testUnclosed() {
+		assertEquals("{{Infobox x", english.strip("{{Infobox x"));
+		assertEquals("a <ref>b", english.strip("a <ref>b"));
+		assertEquals("a ", english.strip("a <!-- b"));
+	}
+}
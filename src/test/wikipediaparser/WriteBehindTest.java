@@ -0,0 +1,112 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package wikipediaparser;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import model.Page;
+
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
+import org.junit.*;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import dao.IDao;
+
+public class WriteBehindTest {
+
+	private Set<Long> stored;
+
+	@Before
+	public void setUp() {
+		stored = Collections.synchronizedSet(Sets.<Long>newHashSet());
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		List<IDao> daos = Lists.newArrayList(slowDao(), slowDao());
+		WriteBehind writeBehind = new WriteBehind(daos, 1);
+		writeBehind.start("en", false, true);
+		for(int i = 0; i < 10; ++i) {
+			writeBehind.storePages(batch(i * 10, 10));
+		}
+		writeBehind.storeRedirects(batch(100, 5));
+		writeBehind.flush();
+
+		assertEquals(105, stored.size());
+		assertEquals(105, writeBehind.drainStored().size());
+		writeBehind.close();
+		verify(daos.get(0), never()).startBulkLoad();
+	}
+
+	@Test
+	public void testFailureNamesBatch() throws Exception {
+		IDao dao = slowDao();
+		doThrow(new RuntimeException("lost connection")).when(dao).processBatch(anyString(),
+				argThat(new BaseMatcher<List<Page>>() {
+					public boolean matches(Object item) {
+						return ((Page) ((List<?>) item).get(0)).getId() == 20;
+					}
+					public void describeTo(Description description) {
+						description.appendText("batch from page 20");
+					}
+				}));
+		WriteBehind writeBehind = new WriteBehind(Lists.newArrayList(dao), 1);
+		writeBehind.start("en", true, false);
+		try {
+			for(int i = 0; i < 5; ++i) {
+				writeBehind.storePages(batch(i * 10, 10));
+			}
+			writeBehind.flush();
+			fail("The third batch was stored");
+		} catch(IllegalStateException e) {
+			assertEquals("Could not store batch 3 (10 pages, Page 20 .. Page 29)", e.getMessage());
+			assertEquals("lost connection", e.getCause().getMessage());
+		} finally {
+			writeBehind.close();
+		}
+		verify(dao).startBulkLoad();
+		verify(dao).finishBulkLoad();
+	}
+
+	private IDao slowDao() {
+		IDao dao = mock(IDao.class);
+		Answer<Object> store = new Answer<Object>() {
+			@SuppressWarnings("unchecked")
+			public Object answer(InvocationOnMock invocation) throws InterruptedException {
+				Thread.sleep(5);
+				for(Page page : (List<Page>) invocation.getArguments()[1]) {
+					stored.add(page.getId());
+				}
+				return null;
+			}
+		};
+		doAnswer(store).when(dao).processBatch(anyString(), anyListOf(Page.class));
+		doAnswer(store).when(dao).processRedirects(anyString(), anyListOf(Page.class));
+		return dao;
+	}
+
+	private static List<Page> batch(int first, int size) {
+		List<Page> batch = Lists.newArrayList();
+		for(int i = first; i < first + size; ++i) {
+			batch.add(page(i));
+		}
+		return batch;
+	}
+
+	private static Page page(long id) {
+		Page page = new Page();
+		page.setId(id);
+		page.setTitle("Page " + id);
+		return page;
+	}
+}
@@ -0,0 +1,77 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.*;
+
+public class PageBoundaryScannerTest {
+
+	private static final String XML = "<mediawiki>\n" +
+			"<page>\n<title>Test 1</title>\n</page>\n" +
+			"<page>\n<title>Test 2</title>\n</page>";
+
+	private File file;
+	private FileInputStream in;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("scanner", ".xml");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(XML.getBytes("UTF-8"));
+		out.close();
+		in = new FileInputStream(file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		in.close();
+		file.delete();
+	}
+
+	@Test
+	public void testIndexOf() throws IOException {
+		PageBoundaryScanner scanner = new PageBoundaryScanner(in.getChannel());
+
+		assertEquals(XML.indexOf("<page>"), scanner.indexOf(PageBoundaryScanner.PAGE_OPEN, 0));
+		assertEquals(XML.lastIndexOf("</page>"),
+				scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, XML.indexOf("</page>") + 1));
+		assertEquals(-1, scanner.indexOf(PageBoundaryScanner.PAGE_OPEN, XML.lastIndexOf("<page>") + 1));
+	}
+
+	/**
+	 * Uses windows smaller than the file (and than some of the patterns' distances) so that matches
+	 * have to be found across window boundaries.
+	 */
+	@Test
+	public void testIndexOfAcrossWindows() throws IOException {
+		for(int windowSize = 7; windowSize < 20; ++windowSize) {
+			PageBoundaryScanner scanner = new PageBoundaryScanner(in.getChannel(), windowSize);
+			long position = 0;
+			int expected = 0;
+
+			while((expected = XML.indexOf("</page>", expected)) != -1) {
+				position = scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, position);
+				assertEquals(expected, position);
+				++position;
+				++expected;
+			}
+			assertEquals(-1, scanner.indexOf(PageBoundaryScanner.PAGE_CLOSE, position));
+		}
+	}
+
+	@Test
+	public void testEndOfLine() throws IOException {
+		PageBoundaryScanner scanner = new PageBoundaryScanner(in.getChannel(), 8);
+
+		assertEquals(XML.indexOf('\n') + 1, scanner.endOfLine(0));
+		// last line has no newline
+		assertEquals(XML.length(), scanner.endOfLine(XML.lastIndexOf("</page>")));
+		assertEquals('>', scanner.get(XML.length() - 1));
+	}
+}
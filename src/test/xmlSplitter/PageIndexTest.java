@@ -0,0 +1,63 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.*;
+
+public class PageIndexTest {
+
+	private File log;
+
+	@Before
+	public void setUp() throws IOException {
+		log = File.createTempFile("split", ".txt");
+	}
+
+	@After
+	public void tearDown() {
+		new File(log.getPath() + PageIndex.SUFFIX).delete();
+		log.delete();
+	}
+
+	@Test
+	public void testFindWithoutIndex() throws IOException {
+		assertNull(PageIndex.find(log.getPath(), 10));
+	}
+
+	@Test
+	public void testFind() throws IOException {
+		PageIndex index = new PageIndex(log.getPath(), false);
+		for(int i = 1; i <= 10; ++i) {
+			index.add(i * 5, i * 1000);
+		}
+		index.close();
+
+		assertNull(PageIndex.find(log.getPath(), 4));
+		assertArrayEquals(new long[] {5, 1000}, PageIndex.find(log.getPath(), 5));
+		assertArrayEquals(new long[] {20, 4000}, PageIndex.find(log.getPath(), 23));
+		assertArrayEquals(new long[] {50, 10000}, PageIndex.find(log.getPath(), 500));
+	}
+
+	/**
+	 * Resuming appends to the existing index; checkpoints rewritten after a crash are duplicates.
+	 */
+	@Test
+	public void testFindAfterResume() throws IOException {
+		PageIndex index = new PageIndex(log.getPath(), false);
+		index.add(5, 1000);
+		index.add(10, 2000);
+		index.close();
+
+		index = new PageIndex(log.getPath(), true);
+		index.add(10, 2000);
+		index.add(15, 3000);
+		index.close();
+
+		assertArrayEquals(new long[] {10, 2000}, PageIndex.find(log.getPath(), 14));
+		assertArrayEquals(new long[] {15, 3000}, PageIndex.find(log.getPath(), 15));
+	}
+}
@@ -0,0 +1,102 @@
+// Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
+package xmlSplitter;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The parallel split must write the same files, log and PageIndex as the
+ * sequential (mapped) split, however many threads it uses.
+ */
+public class ParallelSplitterTest {
+
+	private static final String TEST_FILE = "src/test/xmlSplitter/TestXMLWith4Pages.xml";
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = SplitterTest.makeDirectory();
+	}
+
+	@After
+	public void tearDown() {
+		SplitterTest.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testFourPages() throws IOException {
+		for(int pagesPerBlock = 1; pagesPerBlock <= 5; ++pagesPerBlock) {
+			for(int threads = 1; threads <= 4; ++threads) {
+				assertSameAsSequential(new File(TEST_FILE), 4, pagesPerBlock, threads);
+			}
+		}
+	}
+
+	@Test
+	public void testManyBlocks() throws IOException {
+		File dump = SplitterTest.writeDump(directory, 200, "tekst \u00e9\u00e9n \u4e2d");
+		for(int threads : new int[] {1, 2, 3, 8}) {
+			assertSameAsSequential(dump, 200, 2, threads); // more records than a range queues at first
+			assertSameAsSequential(dump, 200, 7, threads);
+			assertSameAsSequential(dump, 200, 50, threads);
+		}
+	}
+
+	private void assertSameAsSequential(File dump, int pages, int pagesPerBlock, int threads) throws IOException {
+		List<byte[]> sequential = SplitterTest.split(directory, dump, "mapped", pagesPerBlock, 1);
+
+		String base = new File(directory, "parallel-").getPath();
+		File log = SplitterTest.log(directory, "parallel");
+		SplitterTest.deleteFiles(base);
+		ParallelSplitter splitter = new ParallelSplitter(dump.getPath(), base, pagesPerBlock, threads,
+				SplitterTest.NEWLINE);
+		FileOutputStream pageRecordOut = new FileOutputStream(log);
+		PageIndex index = new PageIndex(log.getPath(), false);
+		try {
+			splitter.split(0, 0, 0, false, pageRecordOut, index);
+		} finally {
+			pageRecordOut.close();
+			index.close();
+		}
+		List<byte[]> parallel = SplitterTest.readFiles(base);
+
+		String message = pagesPerBlock + " pages per block, " + threads + " threads";
+		assertEquals(message, pages, splitter.getPageCount());
+		assertEquals(message, sequential.size(), splitter.getFileCount());
+		assertEquals(message, sequential.size(), parallel.size());
+		for(int i = 0; i < sequential.size(); ++i) {
+			assertArrayEquals(message + ", file " + i, sequential.get(i), parallel.get(i));
+		}
+		File sequentialLog = SplitterTest.log(directory, "mapped");
+		assertEquals(message, pageCounts(sequentialLog), pageCounts(log));
+		assertArrayEquals(message + ", index", SplitterTest.read(new File(sequentialLog.getPath() + PageIndex.SUFFIX)),
+				SplitterTest.read(new File(log.getPath() + PageIndex.SUFFIX)));
+	}
+
+	/* The page counts of the lines of a log, without their times */
+	private static List<String> pageCounts(File log) throws IOException {
+		List<String> counts = Lists.newArrayList();
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(log), "UTF-8"));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				counts.add(line.split(" ")[0]);
+			}
+		} finally {
+			in.close();
+		}
+		return counts;
+	}
+}
@@ -1,6 +1,159 @@
 // Copyright (c) 2010 Jessica Lundberg and Andreas Lundberg
 package xmlSplitter;
 
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.*;
+
+import com.google.common.collect.Lists;
+
+/**
+ * The split modes must write the same files. The lines mode writes every
+ * line with the platform's line separator, and the byte based modes copy the
+ * bytes of the source, so the dumps used here are written with the platform's
+ * line separator: with other line endings, the modes differ.
+ */
 public class SplitterTest {
 
+	static final String NEWLINE = System.getProperty("line.separator");
+
+	private File directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = makeDirectory();
+	}
+
+	@After
+	public void tearDown() {
+		deleteDirectory(directory);
+	}
+
+	@Test
+	public void testMappedMatchesLines() throws IOException {
+		// ASCII only: the lines mode decodes with the platform's charset
+		File dump = writeDump(directory, 50, "text");
+		for(int pagesPerBlock : new int[] { 1, 7, 50, 100 }) {
+			List<byte[]> lines = split(directory, dump, "lines", pagesPerBlock, 1);
+			List<byte[]> mapped = split(directory, dump, "mapped", pagesPerBlock, 1);
+
+			assertEquals(50 / pagesPerBlock + 1, lines.size());
+			assertEquals(lines.size(), mapped.size());
+			for(int i = 0; i < lines.size(); ++i) {
+				assertArrayEquals("file " + i + " of " + pagesPerBlock
+						+ " pages per block", lines.get(i), mapped.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Writes a dump of pages of different lengths.
+	 *
+	 * @param text
+	 *            a word repeated in the texts of the pages
+	 */
+	static File writeDump(File directory, int pages, String text)
+			throws IOException {
+		StringBuilder xml = new StringBuilder("<mediawiki>" + NEWLINE);
+		for(int i = 1; i <= pages; ++i) {
+			xml.append("<page>").append(NEWLINE);
+			xml.append("<title>Page ").append(i).append("</title>")
+					.append(NEWLINE);
+			xml.append("<text>");
+			for(int j = 0; j < i % 5 * 20; ++j) {
+				xml.append(text).append(j % 10 == 9 ? NEWLINE : " ");
+			}
+			xml.append("</text>").append(NEWLINE);
+			xml.append("</page>").append(NEWLINE);
+		}
+		xml.append("</mediawiki>").append(NEWLINE);
+
+		File dump = new File(directory, "dump.xml");
+		OutputStream out = new FileOutputStream(dump);
+		try {
+			out.write(xml.toString().getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return dump;
+	}
+
+	/**
+	 * Splits a dump with a Splitter, into files named after the mode.
+	 *
+	 * @return the contents of the files written, in order
+	 */
+	static List<byte[]> split(File directory, File dump, String mode,
+			int pagesPerBlock, int threads) throws IOException {
+		String base = new File(directory, mode + "-").getPath();
+		Properties properties = new Properties();
+		properties.setProperty("fileName", dump.getPath());
+		properties.setProperty("baseOutputName", base);
+		properties.setProperty("logOutputName", log(directory, mode).getPath());
+		properties.setProperty("pagesPerBlock", "" + pagesPerBlock);
+		properties.setProperty("splitMode", mode);
+		properties.setProperty("splitThreads", "" + threads);
+		properties.setProperty("needResume", "false");
+
+		deleteFiles(base);
+		new Splitter(properties).split();
+		return readFiles(base);
+	}
+
+	/** The log file of a split into files named after the mode */
+	static File log(File directory, String mode) {
+		return new File(directory, mode + ".log");
+	}
+
+	/** Reads the files written by a split, in order */
+	static List<byte[]> readFiles(String base) throws IOException {
+		List<byte[]> files = Lists.newArrayList();
+		for(int i = 0; new File(base + i + ".xml").exists(); ++i) {
+			files.add(read(new File(base + i + ".xml")));
+		}
+		return files;
+	}
+
+	static byte[] read(File file) throws IOException {
+		byte[] bytes = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try {
+			int n = 0;
+			while(n < bytes.length) {
+				n += in.read(bytes, n, bytes.length - n);
+			}
+		} finally {
+			in.close();
+		}
+		return bytes;
+	}
+
+	static void deleteFiles(String base) {
+		for(int i = 0; new File(base + i + ".xml").delete(); ++i) {
+		}
+	}
+
+	static File makeDirectory() throws IOException {
+		File directory = File.createTempFile("split", "");
+		if(!directory.delete() || !directory.mkdir()) {
+			throw new IOException("Could not make " + directory);
+		}
+		return directory;
+	}
+
+	static void deleteDirectory(File directory) {
+		for(File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
 }